@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.api;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/** JSON Serialization class for a REST response delivering several secrets at once. */
+@AutoValue public abstract class BatchSecretDeliveryResponse {
+  BatchSecretDeliveryResponse() {} // prevent sub-classing
+
+  /**
+   * Static factory method used by Jackson for deserialization
+   */
+  @JsonCreator public static BatchSecretDeliveryResponse of(
+      @JsonProperty("secrets") List<Item> secrets) {
+    return new AutoValue_BatchSecretDeliveryResponse(ImmutableList.copyOf(secrets));
+  }
+
+  /** One entry per requested secret, in request order. */
+  @JsonProperty("secrets") public abstract ImmutableList<Item> secrets();
+
+  /** Outcome for one requested secret, with the HTTP status a single fetch would have had. */
+  @AutoValue public abstract static class Item {
+    Item() {} // prevent sub-classing
+
+    public static Item found(String name, SecretDeliveryResponse secret) {
+      return of(name, 200, secret);
+    }
+
+    public static Item failed(String name, int status) {
+      return of(name, status, null);
+    }
+
+    /**
+     * Static factory method used by Jackson for deserialization
+     */
+    @JsonCreator public static Item of(
+        @JsonProperty("name") String name,
+        @JsonProperty("status") int status,
+        @JsonProperty("secret") @Nullable SecretDeliveryResponse secret) {
+      return new AutoValue_BatchSecretDeliveryResponse_Item(name, status, secret);
+    }
+
+    /** @return requested name, including the version if one was requested. */
+    @JsonProperty("name") public abstract String name();
+    @JsonProperty("status") public abstract int status();
+    @JsonProperty("secret") @Nullable public abstract SecretDeliveryResponse secret();
+  }
+}
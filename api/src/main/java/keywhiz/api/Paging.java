@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.api;
+
+/**
+ * Conventions shared by listings which page with a cursor. A paged request passes {@link #LIMIT}
+ * and, after the first page, the {@link #NEXT_CURSOR_HEADER} value of the previous response as
+ * {@link #CURSOR}. The last page carries no cursor header.
+ */
+public final class Paging {
+  /** Query parameter bounding the number of items in a page. */
+  public static final String LIMIT = "limit";
+
+  /** Query parameter resuming a listing after the previous page. */
+  public static final String CURSOR = "cursor";
+
+  /** Response header holding the cursor of the next page. */
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+  /** Largest accepted page. */
+  public static final int MAX_LIMIT = 1000;
+
+  private Paging() {}
+}
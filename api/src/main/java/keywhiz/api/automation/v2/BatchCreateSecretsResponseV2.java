@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.api.automation.v2;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/** Outcome of creating several secrets with one request. */
+@AutoValue public abstract class BatchCreateSecretsResponseV2 {
+  BatchCreateSecretsResponseV2() {} // prevent sub-classing
+
+  /**
+   * Static factory method used by Jackson for deserialization
+   */
+  @JsonCreator public static BatchCreateSecretsResponseV2 of(
+      @JsonProperty("secrets") List<Item> secrets) {
+    return new AutoValue_BatchCreateSecretsResponseV2(ImmutableList.copyOf(secrets));
+  }
+
+  /** One entry per requested secret, in request order. */
+  @JsonProperty("secrets") public abstract ImmutableList<Item> secrets();
+
+  /** Outcome for one requested secret, with the HTTP status a single create would have had. */
+  @AutoValue public abstract static class Item {
+    Item() {} // prevent sub-classing
+
+    public static Item created(String name, String version) {
+      return of(name, 201, version);
+    }
+
+    public static Item failed(String name, int status) {
+      return of(name, status, null);
+    }
+
+    /**
+     * Static factory method used by Jackson for deserialization
+     */
+    @JsonCreator public static Item of(
+        @JsonProperty("name") String name,
+        @JsonProperty("status") int status,
+        @JsonProperty("version") @Nullable String version) {
+      return new AutoValue_BatchCreateSecretsResponseV2_Item(name, status, version);
+    }
+
+    @JsonProperty("name") public abstract String name();
+    @JsonProperty("status") public abstract int status();
+
+    /** @return version of the created secret, empty if unversioned. */
+    @JsonProperty("version") @Nullable public abstract String version();
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.api.automation.v2;
+
+import com.google.common.collect.ImmutableList;
+import keywhiz.api.automation.v2.BatchCreateSecretsResponseV2.Item;
+import org.junit.Test;
+
+import static keywhiz.testing.JsonHelpers.asJson;
+import static keywhiz.testing.JsonHelpers.fromJson;
+import static keywhiz.testing.JsonHelpers.jsonFixture;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchCreateSecretsResponseV2Test {
+  private static final BatchCreateSecretsResponseV2 response = BatchCreateSecretsResponseV2.of(
+      ImmutableList.of(
+          Item.created("secret1", ""),
+          Item.created("secret2", "0be68f903f8b7d86"),
+          Item.failed("secret3", 409)));
+
+  @Test public void serializesCorrectly() throws Exception {
+    assertThat(asJson(response))
+        .isEqualTo(jsonFixture("fixtures/v2/batchCreateSecretsResponse.json"));
+  }
+
+  @Test public void deserializesCorrectly() throws Exception {
+    assertThat(fromJson(jsonFixture("fixtures/v2/batchCreateSecretsResponse.json"),
+        BatchCreateSecretsResponseV2.class)).isEqualTo(response);
+  }
+}
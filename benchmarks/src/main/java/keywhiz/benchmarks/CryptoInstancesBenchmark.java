@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.benchmarks;
+
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import keywhiz.hkdf.CryptoInstances;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares looking up a fresh {@link Mac} or {@link Cipher} per operation with borrowing one from
+ * {@link CryptoInstances}, for the providers CryptoModule uses: BouncyCastle for content encryption
+ * and key derivation, SunJCE for cookie encryption.
+ *
+ * The operations mirror the hot paths: an HMAC-SHA256 over a short derivation input as in
+ * Hkdf.expand, and an AES-GCM decryption of a small secret as in ContentCryptographer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class CryptoInstancesBenchmark {
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+  private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+
+  @Param({"BC", "SunJCE"})
+  public String providerName;
+
+  @Param({"64", "4096"})
+  public int contentBytes;
+
+  private Provider provider;
+  private SecretKeySpec macKey;
+  private SecretKeySpec cipherKey;
+  private GCMParameterSpec gcmParameters;
+  private byte[] macInput;
+  private byte[] ciphertext;
+
+  @Setup public void setUp() throws GeneralSecurityException {
+    if (Security.getProvider("BC") == null) {
+      Security.addProvider(new BouncyCastleProvider());
+    }
+    provider = Security.getProvider(providerName);
+
+    SecureRandom random = new SecureRandom();
+    byte[] key = new byte[32];
+    random.nextBytes(key);
+    macKey = new SecretKeySpec(key, MAC_ALGORITHM);
+    cipherKey = new SecretKeySpec(key, "AES");
+    byte[] nonce = new byte[12];
+    random.nextBytes(nonce);
+    gcmParameters = new GCMParameterSpec(128, nonce);
+
+    macInput = new byte[64];
+    random.nextBytes(macInput);
+    byte[] content = new byte[contentBytes];
+    random.nextBytes(content);
+    Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM, provider);
+    cipher.init(Cipher.ENCRYPT_MODE, cipherKey, gcmParameters);
+    ciphertext = cipher.doFinal(content);
+  }
+
+  @Benchmark public byte[] macFresh() throws GeneralSecurityException {
+    Mac mac = Mac.getInstance(MAC_ALGORITHM, provider);
+    mac.init(macKey);
+    return mac.doFinal(macInput);
+  }
+
+  @Benchmark public byte[] macPooled() throws GeneralSecurityException {
+    Mac mac = CryptoInstances.mac(MAC_ALGORITHM, provider);
+    mac.init(macKey);
+    return mac.doFinal(macInput);
+  }
+
+  @Benchmark public byte[] decryptFresh() throws GeneralSecurityException {
+    Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM, provider);
+    cipher.init(Cipher.DECRYPT_MODE, cipherKey, gcmParameters);
+    return cipher.doFinal(ciphertext);
+  }
+
+  @Benchmark public byte[] decryptPooled() throws GeneralSecurityException {
+    Cipher cipher = CryptoInstances.cipher(CIPHER_ALGORITHM, provider);
+    cipher.init(Cipher.DECRYPT_MODE, cipherKey, gcmParameters);
+    return cipher.doFinal(ciphertext);
+  }
+}
@@ -20,6 +20,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import javax.ws.rs.core.HttpHeaders;
@@ -29,6 +30,7 @@ import keywhiz.api.CreateGroupRequest;
 import keywhiz.api.CreateSecretRequest;
 import keywhiz.api.GroupDetailResponse;
 import keywhiz.api.LoginRequest;
+import keywhiz.api.Paging;
 import keywhiz.api.SecretDetailResponse;
 import keywhiz.api.model.Client;
 import keywhiz.api.model.Group;
@@ -53,6 +55,7 @@ import static java.lang.String.format;
  */
 public class KeywhizClient {
   public static final MediaType JSON = MediaType.parse("application/json");
+  private static final int PAGE_SIZE = 500;
 
   public static class MalformedRequestException extends IOException {
 
@@ -120,8 +123,7 @@ public class KeywhizClient {
   }
 
   public List<Group> allGroups() throws IOException {
-    String response = httpGet(baseUrl.resolve("/admin/groups/"));
-    return mapper.readValue(response, new TypeReference<List<Group>>() {});
+    return httpGetAllPages(baseUrl.resolve("/admin/groups/"), new TypeReference<List<Group>>() {});
   }
 
   public GroupDetailResponse createGroup(String name, String description) throws IOException {
@@ -140,8 +142,8 @@ public class KeywhizClient {
   }
 
   public List<SanitizedSecret> allSecrets() throws IOException {
-    String response = httpGet(baseUrl.resolve("/admin/secrets?nameOnly=1"));
-    return mapper.readValue(response, new TypeReference<List<SanitizedSecret>>() {});
+    return httpGetAllPages(baseUrl.resolve("/admin/secrets?nameOnly=1"),
+        new TypeReference<List<SanitizedSecret>>() {});
   }
 
   public SecretDetailResponse createSecret(String name, String description, byte[] content, boolean withVersion,
@@ -183,8 +185,8 @@ public class KeywhizClient {
   }
 
   public List<Client> allClients() throws IOException {
-    String httpResponse = httpGet(baseUrl.resolve("/admin/clients/"));
-    return mapper.readValue(httpResponse, new TypeReference<List<Client>>() {});
+    return httpGetAllPages(baseUrl.resolve("/admin/clients/"),
+        new TypeReference<List<Client>>() {});
   }
 
   public ClientDetailResponse createClient(String name) throws IOException {
@@ -283,6 +285,10 @@ public class KeywhizClient {
   }
 
   private String httpGet(HttpUrl url) throws IOException {
+    return httpGetResponse(url).body().string();
+  }
+
+  private Response httpGetResponse(HttpUrl url) throws IOException {
     Request request = new Request.Builder()
         .url(url)
         .get()
@@ -290,7 +296,28 @@ public class KeywhizClient {
 
     Response response = client.newCall(request).execute();
     throwOnCommonError(response);
-    return response.body().string();
+    return response;
+  }
+
+  /**
+   * Fetches a listing a page at a time, following the cursor header until the last page. Servers
+   * which do not page return everything in the first response, without a cursor.
+   */
+  private <T> List<T> httpGetAllPages(HttpUrl url, TypeReference<List<T>> type)
+      throws IOException {
+    List<T> items = new ArrayList<>();
+    String cursor = null;
+    do {
+      HttpUrl.Builder page = url.newBuilder()
+          .addQueryParameter(Paging.LIMIT, Integer.toString(PAGE_SIZE));
+      if (cursor != null) {
+        page.addQueryParameter(Paging.CURSOR, cursor);
+      }
+      Response response = httpGetResponse(page.build());
+      cursor = response.header(Paging.NEXT_CURSOR_HEADER);
+      items.addAll(mapper.readValue(response.body().string(), type));
+    } while (cursor != null);
+    return items;
   }
 
   private String httpPost(HttpUrl url, Object content) throws IOException {
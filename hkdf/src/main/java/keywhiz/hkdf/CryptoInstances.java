@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.hkdf;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Per-thread pool of {@link Mac} and {@link Cipher} instances. Looking up an implementation through
+ * the JCA provider framework is comparatively expensive, so hot paths reuse one instance per
+ * thread, algorithm and provider.
+ *
+ * A pooled instance must be initialized before every use, which discards any state left by a
+ * previous caller. It must not be held across a call which may borrow the same algorithm on the
+ * same thread.
+ */
+public final class CryptoInstances {
+  private static final ThreadLocal<Map<String, Object>> INSTANCES =
+      ThreadLocal.withInitial(HashMap::new);
+
+  private CryptoInstances() {}
+
+  /**
+   * @param algorithm standard Mac algorithm name
+   * @param provider provider of the implementation
+   * @return this thread's Mac instance for the algorithm and provider
+   */
+  public static Mac mac(String algorithm, Provider provider) throws NoSuchAlgorithmException {
+    requireNonNull(provider);
+    String key = "Mac:" + algorithm + ":" + provider.getName();
+    Map<String, Object> instances = INSTANCES.get();
+    Mac mac = (Mac) instances.get(key);
+    if (mac == null) {
+      mac = Mac.getInstance(algorithm, provider);
+      instances.put(key, mac);
+    }
+    return mac;
+  }
+
+  /**
+   * @param transformation standard Cipher transformation
+   * @param provider provider of the implementation, or null for the preferred installed provider
+   * @return this thread's Cipher instance for the transformation and provider
+   */
+  public static Cipher cipher(String transformation, @Nullable Provider provider)
+      throws NoSuchAlgorithmException, NoSuchPaddingException {
+    String key = "Cipher:" + transformation + ":" + (provider == null ? "" : provider.getName());
+    Map<String, Object> instances = INSTANCES.get();
+    Cipher cipher = (Cipher) instances.get(key);
+    if (cipher == null) {
+      cipher = (provider == null) ?
+          Cipher.getInstance(transformation) : Cipher.getInstance(transformation, provider);
+      instances.put(key, cipher);
+    }
+    return cipher;
+  }
+}
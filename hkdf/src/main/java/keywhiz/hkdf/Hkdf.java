@@ -176,7 +176,7 @@ public class Hkdf {
   private Mac initMac(SecretKey key) {
     Mac mac;
     try {
-      mac = Mac.getInstance(hash.getAlgorithm(), provider);
+      mac = CryptoInstances.mac(hash.getAlgorithm(), provider);
       mac.init(key);
       return mac;
     } catch (NoSuchAlgorithmException e) {
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.hkdf;
+
+import com.sun.crypto.provider.SunJCE;
+import java.security.Provider;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CryptoInstancesTest {
+  private static final Provider PROVIDER = new SunJCE();
+
+  @Test public void reusesInstancesOnSameThread() throws Exception {
+    Mac mac = CryptoInstances.mac("HmacSHA256", PROVIDER);
+    assertThat(CryptoInstances.mac("HmacSHA256", PROVIDER)).isSameAs(mac);
+
+    Cipher cipher = CryptoInstances.cipher("AES/GCM/NoPadding", PROVIDER);
+    assertThat(CryptoInstances.cipher("AES/GCM/NoPadding", PROVIDER)).isSameAs(cipher);
+  }
+
+  @Test public void separatesAlgorithms() throws Exception {
+    assertThat(CryptoInstances.mac("HmacSHA256", PROVIDER))
+        .isNotSameAs(CryptoInstances.mac("HmacSHA1", PROVIDER));
+    assertThat(CryptoInstances.cipher("AES/GCM/NoPadding", PROVIDER))
+        .isNotSameAs(CryptoInstances.cipher("AES/GCM/NoPadding", null));
+  }
+
+  @Test public void separatesThreads() throws Exception {
+    Mac mac = CryptoInstances.mac("HmacSHA256", PROVIDER);
+    AtomicReference<Mac> otherThreadMac = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      try {
+        otherThreadMac.set(CryptoInstances.mac("HmacSHA256", PROVIDER));
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    thread.start();
+    thread.join();
+
+    assertThat(otherThreadMac.get()).isNotNull().isNotSameAs(mac);
+  }
+}
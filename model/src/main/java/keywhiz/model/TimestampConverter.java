@@ -25,11 +25,11 @@ import org.jooq.Converter;
  */
 public class TimestampConverter implements Converter<Timestamp, Long> {
   @Override public Long from(Timestamp timestamp) {
-    return timestamp.toInstant().getEpochSecond();
+    return timestamp == null ? null : timestamp.toInstant().getEpochSecond();
   }
 
   @Override public Timestamp to(Long value) {
-    return Timestamp.from(Instant.ofEpochSecond(value));
+    return value == null ? null : Timestamp.from(Instant.ofEpochSecond(value));
   }
 
   @Override public Class<Timestamp> fromType() {
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import java.time.Clock;
+import java.util.SortedMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import keywhiz.service.config.HealthChecksConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the registered health checks on a background thread every interval and keeps the latest
+ * results, so frequent status probes don't each open database connections.
+ */
+public class CachedHealthChecks implements Managed {
+  private static final Logger logger = LoggerFactory.getLogger(CachedHealthChecks.class);
+
+  private final HealthCheckRegistry registry;
+  private final HealthChecksConfig config;
+  private final Clock clock;
+
+  private volatile Snapshot latest;
+  private ScheduledExecutorService executor;
+
+  public CachedHealthChecks(HealthCheckRegistry registry, HealthChecksConfig config, Clock clock) {
+    this.registry = registry;
+    this.config = config;
+    this.clock = clock;
+  }
+
+  @Override public void start() throws Exception {
+    long intervalMillis = config.getInterval().toMilliseconds();
+    executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("health-checks-%d").setDaemon(true).build());
+    executor.scheduleWithFixedDelay(this::tryRun, 0, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override public void stop() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @return results of the last run. Before the first background run completes, runs the checks on
+   * the calling thread.
+   */
+  public Snapshot latest() {
+    Snapshot snapshot = latest;
+    return (snapshot == null) ? run() : snapshot;
+  }
+
+  /** @return true if the snapshot is too old to report as current. */
+  public boolean isStale(Snapshot snapshot) {
+    return ageMillis(snapshot) > config.getMaxAge().toMilliseconds();
+  }
+
+  /** @return milliseconds since the snapshot was taken. */
+  public long ageMillis(Snapshot snapshot) {
+    return Math.max(0, clock.millis() - snapshot.checkedAtMillis());
+  }
+
+  private Snapshot run() {
+    Snapshot snapshot = new Snapshot(ImmutableSortedMap.copyOfSorted(registry.runHealthChecks()),
+        clock.millis());
+    latest = snapshot;
+    return snapshot;
+  }
+
+  private void tryRun() {
+    try {
+      run();
+    } catch (RuntimeException e) {
+      // Keeps the schedule alive; the last results age until maxAge reports them as stale.
+      logger.warn("Failed running health checks", e);
+    }
+  }
+
+  /** Health check results and when they were taken. */
+  public static class Snapshot {
+    private final SortedMap<String, HealthCheck.Result> results;
+    private final long checkedAtMillis;
+
+    Snapshot(SortedMap<String, HealthCheck.Result> results, long checkedAtMillis) {
+      this.results = results;
+      this.checkedAtMillis = checkedAtMillis;
+    }
+
+    public SortedMap<String, HealthCheck.Result> results() {
+      return results;
+    }
+
+    public long checkedAtMillis() {
+      return checkedAtMillis;
+    }
+  }
+}
@@ -27,7 +27,19 @@ import javax.validation.constraints.NotNull;
 import keywhiz.api.validation.ValidBase64;
 import keywhiz.auth.UserAuthenticatorFactory;
 import keywhiz.auth.cookie.CookieConfig;
+import keywhiz.service.config.AccessAuditConfig;
+import keywhiz.service.config.AclGraphConfig;
+import keywhiz.service.config.CiphertextConfig;
+import keywhiz.service.config.ClientCacheConfig;
+import keywhiz.service.config.ClientRegistrationConfig;
+import keywhiz.service.config.ClientSecretAccessConfig;
+import keywhiz.service.config.CryptoExecutorConfig;
+import keywhiz.service.config.DerivedKeyCacheConfig;
+import keywhiz.service.config.EncryptionVerificationConfig;
+import keywhiz.service.config.HealthChecksConfig;
 import keywhiz.service.config.KeyStoreConfig;
+import keywhiz.service.config.ReadReplicasConfig;
+import keywhiz.service.config.SecretWatchConfig;
 import keywhiz.service.config.Templates;
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotEmpty;
@@ -50,6 +62,11 @@ public class KeywhizConfig extends Configuration {
   @JsonProperty
   private TemplatedDataSourceFactory readonlyDatabase = new TemplatedDataSourceFactory();
 
+  @Valid
+  @NotNull
+  @JsonProperty
+  private ReadReplicasConfig readReplicas = new ReadReplicasConfig();
+
   @Valid
   @NotNull
   @JsonProperty
@@ -81,6 +98,61 @@ public class KeywhizConfig extends Configuration {
   @JsonProperty
   private String migrationsDir;
 
+  @Valid
+  @NotNull
+  @JsonProperty
+  private AclGraphConfig aclGraph = new AclGraphConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private ClientSecretAccessConfig clientSecretAccess = new ClientSecretAccessConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private DerivedKeyCacheConfig derivedKeyCache = new DerivedKeyCacheConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private EncryptionVerificationConfig encryptionVerification = new EncryptionVerificationConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private CiphertextConfig ciphertext = new CiphertextConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private ClientCacheConfig clientCache = new ClientCacheConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private ClientRegistrationConfig clientRegistration = new ClientRegistrationConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private SecretWatchConfig secretWatch = new SecretWatchConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private CryptoExecutorConfig cryptoExecutor = new CryptoExecutorConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private HealthChecksConfig healthChecks = new HealthChecksConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private AccessAuditConfig accessAudit = new AccessAuditConfig();
+
   public String getEnvironment() {
     return environment;
   }
@@ -111,6 +183,21 @@ public class KeywhizConfig extends Configuration {
     return readonlyDatabase;
   }
 
+  /**
+   * Customizes the replica database configs when requested. If the username for a replica is not
+   * set, the current user is set as the username.
+   *
+   * @return ReadReplicasConfig for readonly database replicas.
+   */
+  public ReadReplicasConfig getReadReplicasConfig() {
+    for (DataSourceFactory replica : readReplicas.getDatabases()) {
+      if (replica.getUser() == null) {
+        replica.setUser(USER_NAME.value());
+      }
+    }
+    return readReplicas;
+  }
+
   /**
    * Customizes the migrations directory.
    *
@@ -170,6 +257,57 @@ public class KeywhizConfig extends Configuration {
     return derivationProviderClass;
   }
 
+  /** @return Configuration for answering delivery authorization checks from memory. */
+  public AclGraphConfig getAclGraphConfig() {
+    return aclGraph;
+  }
+
+  public ClientSecretAccessConfig getClientSecretAccessConfig() {
+    return clientSecretAccess;
+  }
+
+  /** @return Configuration for caching keys derived for secret content encryption. */
+  public DerivedKeyCacheConfig getDerivedKeyCacheConfig() {
+    return derivedKeyCache;
+  }
+
+  /** @return Configuration for checking that newly encrypted secret content decrypts. */
+  public EncryptionVerificationConfig getEncryptionVerificationConfig() {
+    return encryptionVerification;
+  }
+
+  /** @return Configuration for the serialization format of encrypted secret content. */
+  public CiphertextConfig getCiphertextConfig() {
+    return ciphertext;
+  }
+
+  /** @return Configuration for caching clients resolved from certificate subjects. */
+  public ClientCacheConfig getClientCacheConfig() {
+    return clientCache;
+  }
+
+  /** @return Configuration for registering clients first seen with a valid certificate. */
+  public ClientRegistrationConfig getClientRegistrationConfig() {
+    return clientRegistration;
+  }
+
+  /** @return Configuration for clients long-polling for changes to their secrets. */
+  public SecretWatchConfig getSecretWatchConfig() {
+    return secretWatch;
+  }
+
+  public CryptoExecutorConfig getCryptoExecutorConfig() {
+    return cryptoExecutor;
+  }
+
+  public HealthChecksConfig getHealthChecksConfig() {
+    return healthChecks;
+  }
+
+  public AccessAuditConfig getAccessAuditConfig() {
+    return accessAudit;
+  }
+
   public static class TemplatedDataSourceFactory extends DataSourceFactory {
     @Override public String getPassword() {
       try {
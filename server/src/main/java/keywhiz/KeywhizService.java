@@ -35,12 +35,15 @@ import keywhiz.commands.DbSeedCommand;
 import keywhiz.commands.GenerateAesKeyCommand;
 import keywhiz.commands.MigrateCommand;
 import keywhiz.commands.PreviewMigrateCommand;
+import keywhiz.commands.RebuildClientSecretAccessCommand;
+import keywhiz.service.daos.CiphertextReencoder;
 import keywhiz.service.filters.CookieRenewingFilter;
 import keywhiz.service.filters.SecurityHeadersFilter;
 import keywhiz.service.providers.AuthResolver;
 import keywhiz.service.providers.AutomationClientAuthFactory;
 import keywhiz.service.providers.ClientAuthFactory;
 import keywhiz.service.providers.UserAuthFactory;
+import keywhiz.service.resources.BatchSecretDeliveryResource;
 import keywhiz.service.resources.SecretDeliveryResource;
 import keywhiz.service.resources.SecretsDeliveryResource;
 import keywhiz.service.resources.StatusResource;
@@ -56,6 +59,7 @@ import keywhiz.service.resources.automation.AutomationEnrollClientGroupResource;
 import keywhiz.service.resources.automation.AutomationGroupResource;
 import keywhiz.service.resources.automation.AutomationSecretAccessResource;
 import keywhiz.service.resources.automation.AutomationSecretResource;
+import keywhiz.service.resources.automation.v2.BatchSecretResource;
 import keywhiz.service.resources.automation.v2.ClientResource;
 import keywhiz.service.resources.automation.v2.GroupResource;
 import keywhiz.service.resources.automation.v2.SecretResource;
@@ -105,6 +109,7 @@ public class KeywhizService extends Application<KeywhizConfig> {
     bootstrap.addCommand(new DbSeedCommand());
     bootstrap.addCommand(new GenerateAesKeyCommand());
     bootstrap.addCommand(new AddUserCommand());
+    bootstrap.addCommand(new RebuildClientSecretAccessCommand());
 
     logger.debug("Registering bundles");
     bootstrap.addBundle(new Java8Bundle());
@@ -147,8 +152,10 @@ public class KeywhizService extends Application<KeywhizConfig> {
     jersey.register(injector.getInstance(MembershipResource.class));
     jersey.register(injector.getInstance(SecretsDeliveryResource.class));
     jersey.register(injector.getInstance(SecretResource.class));
+    jersey.register(injector.getInstance(BatchSecretResource.class));
     jersey.register(injector.getInstance(SecretsResource.class));
     jersey.register(injector.getInstance(SecretDeliveryResource.class));
+    jersey.register(injector.getInstance(BatchSecretDeliveryResource.class));
     jersey.register(injector.getInstance(SessionLoginResource.class));
     jersey.register(injector.getInstance(SessionLogoutResource.class));
     jersey.register(injector.getInstance(SessionMeResource.class));
@@ -159,6 +166,11 @@ public class KeywhizService extends Application<KeywhizConfig> {
     jersey.register(injector.getInstance(AutomationSecretAccessResource.class));
     jersey.register(injector.getInstance(StatusResource.class));
 
+    if (config.getCiphertextConfig().isReencode()) {
+      logger.debug("Registering ciphertext re-encoding job");
+      environment.lifecycle().manage(injector.getInstance(CiphertextReencoder.class));
+    }
+
     ManualStatusHealthCheck mshc = new ManualStatusHealthCheck();
     environment.healthChecks().register("manualStatus", mshc);
     environment.admin().addServlet("manualStatus", new ManualStatusServlet(mshc)).addMapping("/status/*");
@@ -27,19 +27,39 @@ import io.dropwizard.java8.auth.Authenticator;
 import io.dropwizard.setup.Environment;
 import java.sql.SQLException;
 import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
 import keywhiz.auth.BouncyCastle;
 import keywhiz.auth.User;
 import keywhiz.auth.cookie.CookieConfig;
 import keywhiz.auth.cookie.CookieModule;
 import keywhiz.auth.cookie.SessionCookie;
 import keywhiz.auth.xsrf.Xsrf;
+import keywhiz.service.audit.AccessAuditLog;
+import keywhiz.service.audit.AccessEventWriter;
+import keywhiz.service.audit.DatabaseAccessEventWriter;
+import keywhiz.service.audit.LogAccessEventWriter;
+import keywhiz.service.config.AccessAuditConfig;
+import keywhiz.service.config.CiphertextConfig;
+import keywhiz.service.config.ClientSecretAccessConfig;
+import keywhiz.service.config.ReadReplicasConfig;
 import keywhiz.service.config.Readonly;
+import keywhiz.service.config.SecretWatchConfig;
 import keywhiz.service.crypto.ContentCryptographer;
+import keywhiz.service.crypto.CryptoExecutor;
 import keywhiz.service.crypto.CryptoModule;
+import keywhiz.service.crypto.DerivedKeyCache;
+import keywhiz.service.crypto.EncryptionVerifier;
 import keywhiz.service.crypto.SecretTransformer;
+import keywhiz.service.daos.AclGraph;
+import keywhiz.service.daos.ClientCache;
+import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
+import keywhiz.service.daos.ClientRegistrar;
+import keywhiz.service.daos.SecretChangeBus;
 import keywhiz.service.daos.SecretController;
 import keywhiz.service.daos.SecretDAO.SecretDAOFactory;
 import keywhiz.utility.DSLContexts;
+import keywhiz.utility.ReplicaRoutingDataSource;
 import org.jooq.DSLContext;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -68,6 +88,8 @@ public class ServiceModule extends AbstractModule {
         .toInstance(config.getSessionCookieConfig());
     bind(CookieConfig.class).annotatedWith(Xsrf.class)
         .toInstance(config.getXsrfCookieConfig());
+    bind(SecretWatchConfig.class).toInstance(config.getSecretWatchConfig());
+    bind(ClientSecretAccessConfig.class).toInstance(config.getClientSecretAccessConfig());
 
     // TODO(justin): Consider https://github.com/HubSpot/dropwizard-guice.
     bind(Environment.class).toInstance(environment);
@@ -90,9 +112,21 @@ public class ServiceModule extends AbstractModule {
   }
 
   @Provides @Singleton @Readonly ManagedDataSource readonlyDataSource(Environment environment,
-      KeywhizConfig config) {
-    DataSourceFactory dataSourceFactory = config.getReadonlyDataSourceFactory();
-    ManagedDataSource dataSource = dataSourceFactory.build(environment.metrics(), "db-readonly");
+      KeywhizConfig config, ManagedDataSource primary, Clock clock) {
+    ReadReplicasConfig replicasConfig = config.getReadReplicasConfig();
+    ManagedDataSource dataSource;
+    if (replicasConfig.getDatabases().isEmpty()) {
+      DataSourceFactory dataSourceFactory = config.getReadonlyDataSourceFactory();
+      dataSource = dataSourceFactory.build(environment.metrics(), "db-readonly");
+    } else {
+      List<ManagedDataSource> replicas = new ArrayList<>();
+      for (int i = 0; i < replicasConfig.getDatabases().size(); i++) {
+        replicas.add(replicasConfig.getDatabases().get(i)
+            .build(environment.metrics(), "db-readonly-" + i));
+      }
+      dataSource = new ReplicaRoutingDataSource(primary, replicas, replicasConfig,
+          environment.metrics(), clock);
+    }
     environment.lifecycle().manage(dataSource);
 
     environment.healthChecks().register("db-readonly-health",
@@ -117,15 +151,87 @@ public class ServiceModule extends AbstractModule {
     return DSLContexts.databaseAgnostic(dataSource);
   }
 
+  @Provides @Singleton DerivedKeyCache derivedKeyCache(Environment environment,
+      KeywhizConfig config) {
+    return new DerivedKeyCache(config.getDerivedKeyCacheConfig(), environment.metrics());
+  }
+
+  @Provides @Singleton EncryptionVerifier encryptionVerifier(Environment environment,
+      KeywhizConfig config) {
+    return new EncryptionVerifier(config.getEncryptionVerificationConfig(), environment.metrics());
+  }
+
+  @Provides CiphertextConfig.Format ciphertextFormat(KeywhizConfig config) {
+    return config.getCiphertextConfig().getFormat();
+  }
+
   @Provides @Singleton SecretController secretController(SecretTransformer transformer,
-      ContentCryptographer cryptographer, SecretDAOFactory secretDAOFactory) {
-    return new SecretController(transformer, cryptographer, secretDAOFactory.readwrite());
+      ContentCryptographer cryptographer, SecretDAOFactory secretDAOFactory,
+      CryptoExecutor cryptoExecutor) {
+    return new SecretController(transformer, cryptographer, secretDAOFactory.readwrite(),
+        cryptoExecutor);
   }
 
   @Provides @Singleton
   @Readonly SecretController readonlySecretController(SecretTransformer transformer,
-      ContentCryptographer cryptographer, SecretDAOFactory secretDAOFactory) {
-    return new SecretController(transformer, cryptographer, secretDAOFactory.readonly());
+      ContentCryptographer cryptographer, SecretDAOFactory secretDAOFactory,
+      CryptoExecutor cryptoExecutor) {
+    return new SecretController(transformer, cryptographer, secretDAOFactory.readonly(),
+        cryptoExecutor);
+  }
+
+  @Provides @Singleton CryptoExecutor cryptoExecutor(Environment environment,
+      KeywhizConfig config) {
+    CryptoExecutor executor = new CryptoExecutor(config.getCryptoExecutorConfig());
+    environment.lifecycle().manage(executor);
+    return executor;
+  }
+
+  @Provides @Singleton CachedHealthChecks cachedHealthChecks(Environment environment,
+      KeywhizConfig config, Clock clock) {
+    CachedHealthChecks healthChecks = new CachedHealthChecks(environment.healthChecks(),
+        config.getHealthChecksConfig(), clock);
+    environment.lifecycle().manage(healthChecks);
+    return healthChecks;
+  }
+
+  @Provides @Singleton AccessAuditLog accessAuditLog(Environment environment,
+      KeywhizConfig config, DSLContext jooqContext, Clock clock) {
+    AccessAuditConfig auditConfig = config.getAccessAuditConfig();
+    AccessEventWriter writer = (auditConfig.getSink() == AccessAuditConfig.Sink.DATABASE) ?
+        new DatabaseAccessEventWriter(jooqContext) :
+        new LogAccessEventWriter();
+    AccessAuditLog auditLog = new AccessAuditLog(auditConfig, writer, environment.metrics(), clock);
+    environment.lifecycle().manage(auditLog);
+    return auditLog;
+  }
+
+  @Provides @Singleton AclGraph aclGraph(Environment environment, KeywhizConfig config,
+      @Readonly DSLContext readonlyJooqContext, Clock clock) {
+    AclGraph aclGraph = new AclGraph(readonlyJooqContext, config.getAclGraphConfig(), clock);
+    if (config.getAclGraphConfig().isEnabled()) {
+      environment.lifecycle().manage(aclGraph);
+    }
+    return aclGraph;
+  }
+
+  @Provides @Singleton ClientCache clientCache(Environment environment, KeywhizConfig config) {
+    return new ClientCache(config.getClientCacheConfig(), environment.metrics());
+  }
+
+  @Provides @Singleton ClientRegistrar clientRegistrar(Environment environment,
+      KeywhizConfig config, ClientDAOFactory clientDAOFactory) {
+    ClientRegistrar clientRegistrar = new ClientRegistrar(clientDAOFactory.readwrite(),
+        config.getClientRegistrationConfig());
+    environment.lifecycle().manage(clientRegistrar);
+    return clientRegistrar;
+  }
+
+  @Provides @Singleton SecretChangeBus secretChangeBus(Environment environment,
+      KeywhizConfig config) {
+    SecretChangeBus changeBus = new SecretChangeBus(config.getSecretWatchConfig().getThreads());
+    environment.lifecycle().manage(changeBus);
+    return changeBus;
   }
 
   @Provides @Singleton
@@ -31,6 +31,7 @@ import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import keywhiz.hkdf.CryptoInstances;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -85,7 +86,11 @@ public class GCMEncryptor {
 
   private byte[] gcm(boolean encrypt, byte[] input, byte[] nonce) throws AEADBadTagException {
     try {
-      Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
+      // GCM implementations refuse to re-initialize an instance for encryption with the key and
+      // nonce it last encrypted with, so only decryption borrows a pooled instance.
+      Cipher cipher = encrypt ?
+          Cipher.getInstance(ENCRYPTION_ALGORITHM) :
+          CryptoInstances.cipher(ENCRYPTION_ALGORITHM, null);
       SecretKey secretKey = new SecretKeySpec(key, KEY_ALGORITHM);
 
       GCMParameterSpec gcmParameters = new GCMParameterSpec(TAG_BITS, nonce);
@@ -21,6 +21,7 @@ import io.dropwizard.setup.Bootstrap;
 import java.time.OffsetDateTime;
 import javax.sql.DataSource;
 import keywhiz.KeywhizConfig;
+import keywhiz.service.daos.ClientSecretAccess;
 import keywhiz.service.daos.UserDAO;
 import keywhiz.utility.DSLContexts;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -148,6 +149,8 @@ public class DbSeedCommand extends ConfiguredCommand<KeywhizConfig> {
         .values(668L, 917L, 772L, OffsetDateTime.parse("2012-06-21T14:38:09Z").toEpochSecond(), OffsetDateTime.parse("2012-06-21T14:38:09Z").toEpochSecond())
         .execute();
 
+    ClientSecretAccess.rebuild(dslContext);
+
     new UserDAO(dslContext).createUserAt(
       defaultUser, defaultPassword,
       OffsetDateTime.parse("2012-06-22T14:38:09Z"),
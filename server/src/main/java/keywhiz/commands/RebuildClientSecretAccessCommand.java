@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.commands;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.setup.Bootstrap;
+import javax.sql.DataSource;
+import keywhiz.KeywhizConfig;
+import keywhiz.service.daos.ClientSecretAccess;
+import keywhiz.utility.DSLContexts;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.jooq.DSLContext;
+
+/**
+ * Recomputes the client_secret_access table from memberships and accessgrants. Safe to run against
+ * a live database, e.g. before enabling clientSecretAccess or after editing ACLs by hand.
+ */
+public class RebuildClientSecretAccessCommand extends ConfiguredCommand<KeywhizConfig> {
+  public RebuildClientSecretAccessCommand() {
+    super("rebuild-client-secret-access",
+        "Recomputes the materialized client to secret access table.");
+  }
+
+  @Override protected void run(Bootstrap<KeywhizConfig> bootstrap, Namespace namespace,
+      KeywhizConfig config) throws Exception {
+    DataSource dataSource = config.getDataSourceFactory()
+        .build(new MetricRegistry(), "rebuild-access-datasource");
+
+    DSLContext dslContext = DSLContexts.databaseAgnostic(dataSource);
+    int rows = ClientSecretAccess.rebuild(dslContext);
+    System.out.format("Rebuilt client_secret_access with %d rows.%n", rows);
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.audit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import keywhiz.service.audit.AccessEvent.Action;
+import keywhiz.service.audit.AccessEvent.Outcome;
+import keywhiz.service.config.AccessAuditConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static keywhiz.service.config.AccessAuditConfig.Sink.NONE;
+
+/**
+ * Records secret deliveries without blocking request threads on I/O.
+ *
+ * Request threads append events to a bounded lock-free ring buffer; a single writer thread drains
+ * it every flush interval and hands the events to the sink in batches. When the writer falls
+ * behind and the buffer is full, new events are dropped rather than slowing down deliveries, and
+ * counted in the {@code dropped} meter.
+ */
+public class AccessAuditLog implements Managed {
+  private static final Logger logger = LoggerFactory.getLogger(AccessAuditLog.class);
+
+  private final AccessAuditConfig config;
+  private final AccessEventWriter writer;
+  private final Clock clock;
+  private final Ring ring;
+  private final Meter recorded;
+  private final Meter dropped;
+  private final Meter written;
+  private final Meter writeFailures;
+
+  private ScheduledExecutorService executor;
+
+  public AccessAuditLog(AccessAuditConfig config, AccessEventWriter writer, MetricRegistry metrics,
+      Clock clock) {
+    this.config = config;
+    this.writer = writer;
+    this.clock = clock;
+    this.ring = new Ring(config.getBufferSize());
+    this.recorded = metrics.meter(MetricRegistry.name(AccessAuditLog.class, "recorded"));
+    this.dropped = metrics.meter(MetricRegistry.name(AccessAuditLog.class, "dropped"));
+    this.written = metrics.meter(MetricRegistry.name(AccessAuditLog.class, "written"));
+    this.writeFailures = metrics.meter(MetricRegistry.name(AccessAuditLog.class, "write-failures"));
+    metrics.register(MetricRegistry.name(AccessAuditLog.class, "pending"),
+        (Gauge<Long>) ring::size);
+  }
+
+  @Override public void start() throws Exception {
+    long intervalMillis = config.getFlushInterval().toMilliseconds();
+    executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("access-audit-%d").setDaemon(true).build());
+    executor.scheduleWithFixedDelay(this::drain, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override public void stop() throws Exception {
+    if (executor != null) {
+      executor.shutdown();
+      executor.awaitTermination(config.getFlushInterval().toMilliseconds(), TimeUnit.MILLISECONDS);
+    }
+    drain(); // Whatever was recorded before shutdown.
+  }
+
+  /**
+   * Records a delivery attempt. Never blocks.
+   *
+   * @param client name of the requesting client
+   * @param action what the client attempted
+   * @param secret requested secret name, or empty for listings
+   * @param outcome whether the secrets were delivered
+   */
+  public void record(String client, Action action, String secret, Outcome outcome) {
+    if (config.getSink() == NONE) {
+      return;
+    }
+    long now = clock.instant().getEpochSecond();
+    if (ring.offer(AccessEvent.of(now, client, action, secret, outcome))) {
+      recorded.mark();
+    } else {
+      dropped.mark();
+    }
+  }
+
+  /**
+   * Hands all buffered events to the sink, in batches. Synchronized so the final drain on stop
+   * cannot overlap a scheduled one, keeping a single consumer.
+   */
+  @VisibleForTesting synchronized void drain() {
+    List<AccessEvent> batch = new ArrayList<>(config.getBatchSize());
+    while (ring.drainTo(batch, config.getBatchSize()) > 0) {
+      try {
+        writer.write(batch);
+        written.mark(batch.size());
+      } catch (RuntimeException e) {
+        writeFailures.mark(batch.size());
+        logger.warn("Failed writing {} access events", batch.size(), e);
+      }
+      batch.clear();
+    }
+  }
+
+  /**
+   * Bounded multi-producer, single-consumer ring buffer. Producers claim a slot by advancing the
+   * tail with a compare-and-set, then publish the event into it; the consumer takes published
+   * events in order and clears their slots before advancing the head.
+   */
+  private static class Ring {
+    private final AtomicReferenceArray<AccessEvent> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+
+    Ring(int minCapacity) {
+      int capacity = Integer.highestOneBit(Math.max(1, minCapacity - 1)) << 1;
+      this.slots = new AtomicReferenceArray<>(capacity);
+      this.mask = capacity - 1;
+    }
+
+    boolean offer(AccessEvent event) {
+      long claimed;
+      do {
+        claimed = tail.get();
+        if (claimed - head >= slots.length()) {
+          return false;
+        }
+      } while (!tail.compareAndSet(claimed, claimed + 1));
+      slots.lazySet((int) (claimed & mask), event);
+      return true;
+    }
+
+    /** Moves up to max published events into sink, stopping at a claimed but unpublished slot. */
+    int drainTo(List<AccessEvent> sink, int max) {
+      int drained = 0;
+      long position = head;
+      while (drained < max) {
+        int index = (int) (position & mask);
+        AccessEvent event = slots.get(index);
+        if (event == null) {
+          break;
+        }
+        slots.lazySet(index, null);
+        sink.add(event);
+        position++;
+        drained++;
+      }
+      head = position;
+      return drained;
+    }
+
+    long size() {
+      return Math.max(0, tail.get() - head);
+    }
+  }
+}
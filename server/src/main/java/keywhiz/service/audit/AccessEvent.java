@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.audit;
+
+import com.google.auto.value.AutoValue;
+
+/** A client's attempt to read secrets through a delivery endpoint. */
+@AutoValue public abstract class AccessEvent {
+  public enum Action {
+    /** Read a single secret. */
+    READ,
+    /** Listed the secrets available to it. */
+    LIST
+  }
+
+  public enum Outcome {
+    /** The secrets were delivered. */
+    GRANTED,
+    /** The client already held the current version, so nothing was delivered. */
+    NOT_MODIFIED,
+    DENIED,
+    NOT_FOUND,
+    /** Access was allowed but the response could not be generated. */
+    FAILED
+  }
+
+  /**
+   * @param occurredAt epoch seconds of the attempt, like other timestamps in the schema
+   * @param client name of the requesting client
+   * @param action what the client attempted
+   * @param secret requested secret name, with version if any, or empty for listings
+   * @param outcome whether the secrets were delivered
+   */
+  public static AccessEvent of(long occurredAt, String client, Action action, String secret,
+      Outcome outcome) {
+    return new AutoValue_AccessEvent(occurredAt, client, action, secret, outcome);
+  }
+
+  public abstract long occurredAt();
+  public abstract String client();
+  public abstract Action action();
+  public abstract String secret();
+  public abstract Outcome outcome();
+}
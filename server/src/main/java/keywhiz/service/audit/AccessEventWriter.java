@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.audit;
+
+import java.util.List;
+
+/** Destination of access events, called by {@link AccessAuditLog} from its writer thread only. */
+public interface AccessEventWriter {
+  /**
+   * @param events batch of events, oldest first
+   * @throws RuntimeException if the batch could not be written, in which case it is dropped
+   */
+  void write(List<AccessEvent> events);
+}
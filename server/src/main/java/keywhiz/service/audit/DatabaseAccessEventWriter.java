@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.audit;
+
+import java.util.List;
+import keywhiz.jooq.tables.records.AccessAuditRecord;
+import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep5;
+
+import static keywhiz.jooq.tables.AccessAudit.ACCESS_AUDIT;
+
+/** Writes each batch of access events to the access_audit table in a single insert. */
+public class DatabaseAccessEventWriter implements AccessEventWriter {
+  private final DSLContext dslContext;
+
+  /** @param dslContext read/write jOOQ context */
+  public DatabaseAccessEventWriter(DSLContext dslContext) {
+    this.dslContext = dslContext;
+  }
+
+  @Override public void write(List<AccessEvent> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    InsertValuesStep5<AccessAuditRecord, Long, String, String, String, String> insert = dslContext
+        .insertInto(ACCESS_AUDIT, ACCESS_AUDIT.OCCURREDAT, ACCESS_AUDIT.CLIENT,
+            ACCESS_AUDIT.ACTION, ACCESS_AUDIT.SECRET, ACCESS_AUDIT.OUTCOME);
+    for (AccessEvent event : events) {
+      insert = insert.values(event.occurredAt(), event.client(), event.action().name(),
+          event.secret(), event.outcome().name());
+    }
+    insert.execute();
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.audit;
+
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes access events, one line each, to the {@code keywhiz.audit} logger. Rotation and
+ * retention follow the configured logging appenders.
+ */
+public class LogAccessEventWriter implements AccessEventWriter {
+  private static final Logger logger = LoggerFactory.getLogger("keywhiz.audit");
+
+  @Override public void write(List<AccessEvent> events) {
+    for (AccessEvent event : events) {
+      logger.info("occurredAt={} client={} action={} secret={} outcome={}",
+          event.occurredAt(), event.client(), event.action(), event.secret(),
+          event.outcome());
+    }
+  }
+}
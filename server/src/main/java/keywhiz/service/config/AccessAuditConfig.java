@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.config;
+
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/** Configuration parameters for the audit trail of secret deliveries. */
+public class AccessAuditConfig {
+  public enum Sink {
+    /** One line per event on the keywhiz.audit logger. */
+    LOG,
+    /** Rows in the access_audit table. */
+    DATABASE,
+    /** Events are not recorded. */
+    NONE
+  }
+
+  @NotNull
+  private Sink sink = Sink.LOG;
+
+  /**
+   * Events buffered between request threads and the writer, rounded up to a power of two. Events
+   * arriving while the buffer is full are dropped and counted.
+   */
+  @Min(1)
+  private int bufferSize = 65536;
+
+  /** Most events handed to the sink at once. */
+  @Min(1)
+  private int batchSize = 500;
+
+  /** How long the writer waits between draining the buffer. */
+  @NotNull
+  private Duration flushInterval = Duration.seconds(1);
+
+  public Sink getSink() {
+    return sink;
+  }
+
+  public void setSink(Sink sink) {
+    this.sink = sink;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public Duration getFlushInterval() {
+    return flushInterval;
+  }
+
+  public void setFlushInterval(Duration flushInterval) {
+    this.flushInterval = flushInterval;
+  }
+}
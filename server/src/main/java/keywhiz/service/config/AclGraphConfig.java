@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.config;
+
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.NotNull;
+
+/** Configuration parameters for the in-memory client-to-secret authorization graph. */
+public class AclGraphConfig {
+  /** Answer delivery authorization checks from memory instead of the database. */
+  private boolean enabled = false;
+
+  /** How often the graph is fully reloaded to pick up changes made by other servers. */
+  @NotNull
+  private Duration refreshInterval = Duration.seconds(30);
+
+  /**
+   * Upper bound on the age of the graph. When the last successful load is older than this, for
+   * example because the database is unreachable, authorization falls back to the database.
+   */
+  @NotNull
+  private Duration maxStaleness = Duration.minutes(2);
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public Duration getRefreshInterval() {
+    return refreshInterval;
+  }
+
+  public void setRefreshInterval(Duration refreshInterval) {
+    this.refreshInterval = refreshInterval;
+  }
+
+  public Duration getMaxStaleness() {
+    return maxStaleness;
+  }
+
+  public void setMaxStaleness(Duration maxStaleness) {
+    this.maxStaleness = maxStaleness;
+  }
+}
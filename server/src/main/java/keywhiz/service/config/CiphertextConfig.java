@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.config;
+
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/** Configuration for how encrypted secret content is serialized in the database. */
+public class CiphertextConfig {
+  public enum Format {
+    /** JSON object with base64 content and IV, readable by all server versions. */
+    JSON,
+    /** Single base64 string of a versioned binary envelope. */
+    COMPACT
+  }
+
+  /** Format written for new content. Content in either format can always be decrypted. */
+  @NotNull
+  private Format format = Format.JSON;
+
+  /** Re-encode existing content stored in another format, in the background. */
+  private boolean reencode = false;
+
+  /** Rows examined per re-encoding batch. */
+  @Min(1)
+  private int reencodeBatchSize = 100;
+
+  /** Delay between re-encoding batches. */
+  @NotNull
+  private Duration reencodeInterval = Duration.seconds(1);
+
+  public Format getFormat() {
+    return format;
+  }
+
+  public void setFormat(Format format) {
+    this.format = format;
+  }
+
+  public boolean isReencode() {
+    return reencode;
+  }
+
+  public void setReencode(boolean reencode) {
+    this.reencode = reencode;
+  }
+
+  public int getReencodeBatchSize() {
+    return reencodeBatchSize;
+  }
+
+  public void setReencodeBatchSize(int reencodeBatchSize) {
+    this.reencodeBatchSize = reencodeBatchSize;
+  }
+
+  public Duration getReencodeInterval() {
+    return reencodeInterval;
+  }
+
+  public void setReencodeInterval(Duration reencodeInterval) {
+    this.reencodeInterval = reencodeInterval;
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.config;
+
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/** Configuration parameters for caching clients resolved from certificate subjects. */
+public class ClientCacheConfig {
+  /** Maximum number of certificate subjects held in memory. Zero disables the cache. */
+  @Min(0)
+  private long maximumSize = 10_000;
+
+  /**
+   * How long a resolved client stays cached. Changes made to clients outside of this server, such
+   * as disabling one directly in the database, take up to this long to be noticed.
+   */
+  @NotNull
+  private Duration expireAfterWrite = Duration.seconds(30);
+
+  public long getMaximumSize() {
+    return maximumSize;
+  }
+
+  public void setMaximumSize(long maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  public Duration getExpireAfterWrite() {
+    return expireAfterWrite;
+  }
+
+  public void setExpireAfterWrite(Duration expireAfterWrite) {
+    this.expireAfterWrite = expireAfterWrite;
+  }
+}
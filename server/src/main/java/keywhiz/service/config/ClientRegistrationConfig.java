@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.config;
+
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/** Configuration parameters for registering clients first seen with a valid certificate. */
+public class ClientRegistrationConfig {
+  /** Maximum number of clients created by one insert. */
+  @Min(1)
+  private int batchSize = 100;
+
+  /** How often pending registrations are written to the database. */
+  @NotNull
+  private Duration flushInterval = Duration.milliseconds(250);
+
+  /** How long a request from a new client waits for its registration before failing. */
+  @NotNull
+  private Duration timeout = Duration.seconds(5);
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public Duration getFlushInterval() {
+    return flushInterval;
+  }
+
+  public void setFlushInterval(Duration flushInterval) {
+    this.flushInterval = flushInterval;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.config;
+
+import javax.validation.constraints.Min;
+
+/** Configuration parameters for decrypting lists of secrets in parallel. */
+public class CryptoExecutorConfig {
+  /** Threads shared by all requests for decryption. 0 decrypts on the request thread only. */
+  @Min(0)
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Most threads, counting the request thread, one request decrypts on at once, so a large listing
+   * cannot occupy the whole pool.
+   */
+  @Min(1)
+  private int maxParallelismPerRequest = 4;
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  public int getMaxParallelismPerRequest() {
+    return maxParallelismPerRequest;
+  }
+
+  public void setMaxParallelismPerRequest(int maxParallelismPerRequest) {
+    this.maxParallelismPerRequest = maxParallelismPerRequest;
+  }
+}
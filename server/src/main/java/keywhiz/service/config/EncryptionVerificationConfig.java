@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.config;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/** Configuration for decrypting freshly encrypted secret content to check it round-trips. */
+public class EncryptionVerificationConfig {
+  public enum Mode {
+    /** Verify every encryption. */
+    ALWAYS,
+    /** Verify a random sample of encryptions, see {@link #getSamplePercent()}. */
+    SAMPLED,
+    /** Never verify. */
+    OFF
+  }
+
+  @NotNull
+  private Mode mode = Mode.ALWAYS;
+
+  /** Percentage of encryptions verified in {@link Mode#SAMPLED} mode. */
+  @Min(0) @Max(100)
+  private int samplePercent = 10;
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public void setMode(Mode mode) {
+    this.mode = mode;
+  }
+
+  public int getSamplePercent() {
+    return samplePercent;
+  }
+
+  public void setSamplePercent(int samplePercent) {
+    this.samplePercent = samplePercent;
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.service.config;
+
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.NotNull;
+
+/** Configuration parameters for health checks reported by /_status. */
+public class HealthChecksConfig {
+  /** How often health checks run in the background. /_status serves the latest results. */
+  @NotNull
+  private Duration interval = Duration.seconds(10);
+
+  /**
+   * Oldest results /_status reports as they are. Older results, for example because the checks
+   * are hanging, are reported as critical.
+   */
+  @NotNull
+  private Duration maxAge = Duration.minutes(1);
+
+  public Duration getInterval() {
+    return interval;
+  }
+
+  public void setInterval(Duration interval) {
+    this.interval = interval;
+  }
+
+  public Duration getMaxAge() {
+    return maxAge;
+  }
+
+  public void setMaxAge(Duration maxAge) {
+    this.maxAge = maxAge;
+  }
+}
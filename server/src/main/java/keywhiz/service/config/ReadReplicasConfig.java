@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.service.config;
+
+import io.dropwizard.util.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import keywhiz.KeywhizConfig.TemplatedDataSourceFactory;
+
+/** Configuration parameters for spreading readonly queries across several database replicas. */
+public class ReadReplicasConfig {
+  /** How a replica is chosen for each connection among those recent enough. */
+  public enum Selection {
+    /** Take turns. */
+    ROUND_ROBIN,
+    /** Prefer the replica with the fewest connections currently handed out. */
+    LEAST_LOADED
+  }
+
+  /** Replicas serving readonly queries. When empty, readonlyDatabase alone is used. */
+  @Valid
+  @NotNull
+  private List<TemplatedDataSourceFactory> databases = new ArrayList<>();
+
+  @NotNull
+  private Selection selection = Selection.ROUND_ROBIN;
+
+  /** How often a heartbeat is written to the primary and read back from each replica. */
+  @NotNull
+  private Duration heartbeatInterval = Duration.seconds(1);
+
+  /**
+   * Replicas whose last heartbeat is older than this, or could not be read, are skipped. When no
+   * replica qualifies, readonly queries go to the primary. Heartbeats age between measurements, so
+   * this should comfortably exceed heartbeatInterval.
+   */
+  @NotNull
+  private Duration maxLag = Duration.seconds(5);
+
+  public List<TemplatedDataSourceFactory> getDatabases() {
+    return databases;
+  }
+
+  public void setDatabases(List<TemplatedDataSourceFactory> databases) {
+    this.databases = databases;
+  }
+
+  public Selection getSelection() {
+    return selection;
+  }
+
+  public void setSelection(Selection selection) {
+    this.selection = selection;
+  }
+
+  public Duration getHeartbeatInterval() {
+    return heartbeatInterval;
+  }
+
+  public void setHeartbeatInterval(Duration heartbeatInterval) {
+    this.heartbeatInterval = heartbeatInterval;
+  }
+
+  public Duration getMaxLag() {
+    return maxLag;
+  }
+
+  public void setMaxLag(Duration maxLag) {
+    this.maxLag = maxLag;
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.config;
+
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/** Configuration parameters for clients long-polling for changes to their secrets. */
+public class SecretWatchConfig {
+  /** Longest a watch request is held open before answering that nothing changed. */
+  @NotNull
+  private Duration maxTimeout = Duration.seconds(60);
+
+  /**
+   * How often a held watch re-checks the database even without a local change notification, which
+   * picks up changes made through other servers.
+   */
+  @NotNull
+  private Duration recheckInterval = Duration.seconds(5);
+
+  /** Number of threads re-checking held watches. */
+  @Min(1)
+  private int threads = 4;
+
+  public Duration getMaxTimeout() {
+    return maxTimeout;
+  }
+
+  public void setMaxTimeout(Duration maxTimeout) {
+    this.maxTimeout = maxTimeout;
+  }
+
+  public Duration getRecheckInterval() {
+    return recheckInterval;
+  }
+
+  public void setRecheckInterval(Duration recheckInterval) {
+    this.recheckInterval = recheckInterval;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+}
@@ -25,6 +25,8 @@ import com.google.common.base.MoreObjects;
 import com.google.common.base.Throwables;
 import io.dropwizard.jackson.Jackson;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -38,10 +40,11 @@ import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 import javax.inject.Inject;
 import keywhiz.auth.Subtles;
+import keywhiz.hkdf.CryptoInstances;
 import keywhiz.hkdf.Hkdf;
+import keywhiz.service.config.CiphertextConfig.Format;
 import keywhiz.service.crypto.CryptoModule.Derivation;
 import keywhiz.service.crypto.CryptoModule.Encryption;
 import org.slf4j.Logger;
@@ -57,8 +60,9 @@ import static javax.crypto.Cipher.ENCRYPT_MODE;
 /**
  * Cryptographer which encrypts/decrypts secret content.
  *
- * Encryption keys are derived using a provided info tag. Encrypted content is serialized as JSON
- * with the necessary parameters for decryption.
+ * Encryption keys are derived using a provided info tag. Encrypted content is serialized, together
+ * with the necessary parameters for decryption, either as JSON or as a compact binary envelope;
+ * see {@link Format}. Derived keys may be cached, see {@link DerivedKeyCache}.
  */
 public class ContentCryptographer {
   private static final Logger logger = LoggerFactory.getLogger(ContentCryptographer.class);
@@ -67,19 +71,33 @@ public class ContentCryptographer {
   private static final int TAG_BITS = 128;
   private static final int NONCE_BYTES = 12;
   private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+  private static final byte COMPACT_VERSION = 1;
 
   private final SecretKey key;
   private final Provider derivationProvider;
   private final Provider encryptionProvider;
   private final SecureRandom random;
+  private final DerivedKeyCache derivedKeyCache;
+  private final EncryptionVerifier verifier;
+  private final Format format;
+
+  public ContentCryptographer(SecretKey key, Provider derivationProvider,
+      Provider encryptionProvider, SecureRandom random) {
+    this(key, derivationProvider, encryptionProvider, random, DerivedKeyCache.disabled(),
+        EncryptionVerifier.always(), Format.JSON);
+  }
 
   @Inject public ContentCryptographer(@Derivation SecretKey key,
       @Derivation Provider derivationProvider,
-      @Encryption Provider encryptionProvider, SecureRandom random) {
+      @Encryption Provider encryptionProvider, SecureRandom random,
+      DerivedKeyCache derivedKeyCache, EncryptionVerifier verifier, Format format) {
     this.key = key;
     this.derivationProvider = derivationProvider;
     this.encryptionProvider = encryptionProvider;
     this.random = random;
+    this.derivedKeyCache = derivedKeyCache;
+    this.verifier = verifier;
+    this.format = format;
   }
 
   public class Encrypter {
@@ -93,7 +111,7 @@ public class ContentCryptographer {
      * Encrypts content under a derived key.
      *
      * @param plaintextBase64 plaintext content to encrypt, which is expected to be base64-encoded
-     * @return serialized JSON containing ciphertext and parameters necessary for decryption
+     * @return serialized ciphertext and parameters necessary for decryption
      */
     public String encrypt(String plaintextBase64) {
       Base64.Decoder decoder = getDecoder();
@@ -103,20 +121,18 @@ public class ContentCryptographer {
       random.nextBytes(nonce);
 
       byte[] ciphertext = gcm(Mode.ENCRYPT, derivationInfo, nonce, plaintext);
-      Crypted crypted = Crypted.of(derivationInfo, ciphertext, nonce);
-      String encryptedJson;
-      try {
-        encryptedJson = MAPPER.writeValueAsString(crypted);
-      } catch (JsonProcessingException e) {
-        throw Throwables.propagate(e);
-      }
+      String encrypted = new Envelope(derivationInfo, nonce, ciphertext).serialize(format);
 
-      if (!Subtles.secureCompare(decoder.decode(decrypt(encryptedJson)), plaintext)) {
-        logger.warn("Decryption of (just encrypted) data does not match original! [name={}]",
-            derivationInfo);
+      if (verifier.shouldVerify()) {
+        boolean matched = Subtles.secureCompare(decoder.decode(decrypt(encrypted)), plaintext);
+        verifier.record(matched);
+        if (!matched) {
+          logger.warn("Decryption of (just encrypted) data does not match original! [name={}]",
+              derivationInfo);
+        }
       }
 
-      return encryptedJson;
+      return encrypted;
     }
   }
 
@@ -134,31 +150,52 @@ public class ContentCryptographer {
   /**
    * Decrypts content previously encrypted by {@link ContentCryptographer}.
    *
-   * @param ciphertextJson JSON from prior {@link Encrypter#encrypt} call
+   * @param ciphertext output of a prior {@link Encrypter#encrypt} call, in either {@link Format}
    * @return original base64 plaintext without padding
    */
-  public String decrypt(String ciphertextJson) {
-    Crypted crypted;
-    try {
-      crypted = MAPPER.readValue(ciphertextJson, Crypted.class);
-    } catch (IOException e) {
-      throw new IllegalArgumentException("Cannot deserialize Crypted json", e);
-    }
-
-    byte[] plaintext = gcm(Mode.DECRYPT, crypted.derivationInfo(), crypted.ivBytes(), crypted.contentBytes());
+  public String decrypt(String ciphertext) {
+    Envelope envelope = Envelope.parse(ciphertext);
+    byte[] plaintext = gcm(Mode.DECRYPT, envelope.derivationInfo, envelope.nonce, envelope.content);
     return getEncoder().encodeToString(plaintext);
   }
 
+  /**
+   * @param ciphertext output of a prior {@link Encrypter#encrypt} call, in either {@link Format}
+   * @return true if the ciphertext is serialized in the format new content is written in
+   */
+  public boolean isCurrentFormat(String ciphertext) {
+    return Envelope.formatOf(ciphertext) == format;
+  }
+
+  /**
+   * Re-serializes ciphertext in the format new content is written in. The content is not
+   * decrypted, so no key derivation takes place.
+   *
+   * @param ciphertext output of a prior {@link Encrypter#encrypt} call, in either {@link Format}
+   * @return equivalent ciphertext in the current format
+   */
+  public String reencode(String ciphertext) {
+    if (isCurrentFormat(ciphertext)) {
+      return ciphertext;
+    }
+    return Envelope.parse(ciphertext).serialize(format);
+  }
+
   private SecretKey deriveKey(int blockSize, String info) {
-    Hkdf hkdf = Hkdf.usingProvider(derivationProvider);
-    byte[] infoBytes = info.getBytes(UTF_8);
-    byte[] derivedKeyBytes = hkdf.expand(key, infoBytes, blockSize);
-    return new SecretKeySpec(derivedKeyBytes, KEY_ALGORITHM);
+    // The block size is fixed by ENCRYPTION_ALGORITHM, so the info tag alone identifies a key.
+    return derivedKeyCache.get(info, KEY_ALGORITHM, i -> {
+      Hkdf hkdf = Hkdf.usingProvider(derivationProvider);
+      return hkdf.expand(key, i.getBytes(UTF_8), blockSize);
+    });
   }
 
   private byte[] gcm(Mode mode, String info, byte[] nonce, byte[] data) {
     try {
-      Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM, encryptionProvider);
+      // GCM implementations refuse to re-initialize an instance for encryption with the key and
+      // nonce it last encrypted with, so only the decrypt path borrows a pooled instance.
+      Cipher cipher = (mode == Mode.DECRYPT) ?
+          CryptoInstances.cipher(ENCRYPTION_ALGORITHM, encryptionProvider) :
+          Cipher.getInstance(ENCRYPTION_ALGORITHM, encryptionProvider);
       SecretKey derivedKey = deriveKey(cipher.getBlockSize(), info);
       GCMParameterSpec gcmParameters = new GCMParameterSpec(TAG_BITS, nonce);
       cipher.init(mode.cipherMode, derivedKey, gcmParameters);
@@ -168,6 +205,79 @@ public class ContentCryptographer {
     }
   }
 
+  /**
+   * Parameters and ciphertext of one encryption, independent of how they are serialized.
+   *
+   * The compact serialization is the base64 encoding of a version byte, the length of the UTF-8
+   * derivation info as an unsigned short, the derivation info, the nonce and the ciphertext
+   * including the GCM tag. Base64 never starts with '{', which tells it apart from JSON.
+   */
+  private static final class Envelope {
+    final String derivationInfo;
+    final byte[] nonce;
+    final byte[] content;
+
+    Envelope(String derivationInfo, byte[] nonce, byte[] content) {
+      this.derivationInfo = derivationInfo;
+      this.nonce = nonce;
+      this.content = content;
+    }
+
+    static Format formatOf(String serialized) {
+      return serialized.startsWith("{") ? Format.JSON : Format.COMPACT;
+    }
+
+    static Envelope parse(String serialized) {
+      if (formatOf(serialized) == Format.JSON) {
+        Crypted crypted;
+        try {
+          crypted = MAPPER.readValue(serialized, Crypted.class);
+        } catch (IOException e) {
+          throw new IllegalArgumentException("Cannot deserialize Crypted json", e);
+        }
+        return new Envelope(crypted.derivationInfo(), crypted.ivBytes(), crypted.contentBytes());
+      }
+
+      try {
+        ByteBuffer buffer = ByteBuffer.wrap(getDecoder().decode(serialized));
+        byte version = buffer.get();
+        if (version != COMPACT_VERSION) {
+          throw new IllegalArgumentException("Unknown ciphertext envelope version " + version);
+        }
+        byte[] info = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(info);
+        byte[] nonce = new byte[NONCE_BYTES];
+        buffer.get(nonce);
+        byte[] content = new byte[buffer.remaining()];
+        buffer.get(content);
+        return new Envelope(new String(info, UTF_8), nonce, content);
+      } catch (BufferUnderflowException e) {
+        throw new IllegalArgumentException("Truncated ciphertext envelope", e);
+      }
+    }
+
+    String serialize(Format format) {
+      switch (format) {
+        case JSON:
+          try {
+            return MAPPER.writeValueAsString(Crypted.of(derivationInfo, content, nonce));
+          } catch (JsonProcessingException e) {
+            throw Throwables.propagate(e);
+          }
+        case COMPACT:
+          byte[] info = derivationInfo.getBytes(UTF_8);
+          checkArgument(info.length <= 0xFFFF, "Derivation info too long for compact envelope");
+          checkArgument(nonce.length == NONCE_BYTES, "Unexpected nonce length %s", nonce.length);
+          ByteBuffer buffer = ByteBuffer.allocate(3 + info.length + nonce.length + content.length);
+          buffer.put(COMPACT_VERSION).putShort((short) info.length).put(info).put(nonce)
+              .put(content);
+          return getEncoder().encodeToString(buffer.array());
+        default:
+          throw new IllegalArgumentException("Unknown ciphertext format " + format);
+      }
+    }
+  }
+
   /**
    * Non-public value type representing JSON serialized fields for encrypted data.
    */
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.crypto;
+
+import com.google.common.base.Throwables;
+import io.dropwizard.lifecycle.Managed;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+import keywhiz.service.config.CryptoExecutorConfig;
+
+/**
+ * Dedicated work-stealing pool for CPU-bound crypto over lists, kept apart from request threads and
+ * from the common pool.
+ *
+ * Each call splits its list into at most maxParallelismPerRequest contiguous chunks. The calling
+ * thread works on the first chunk itself, so a call always progresses even when the pool is busy
+ * with other requests.
+ */
+public class CryptoExecutor implements Managed {
+  private final ForkJoinPool pool;
+  private final int maxParallelism;
+
+  public CryptoExecutor(CryptoExecutorConfig config) {
+    if (config.getThreads() == 0) {
+      this.pool = null;
+      this.maxParallelism = 1;
+    } else {
+      this.pool = new ForkJoinPool(config.getThreads(), CryptoExecutor::newThread, null, true);
+      this.maxParallelism = config.getMaxParallelismPerRequest();
+    }
+  }
+
+  @Override public void start() throws Exception {}
+
+  @Override public void stop() throws Exception {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * @param inputs items to map
+   * @param function mapping, safe to call concurrently
+   * @return mapped items, in the order of inputs
+   */
+  public <T, R> List<R> map(List<T> inputs, Function<T, R> function) {
+    int chunks = Math.min(maxParallelism, inputs.size());
+    if (chunks <= 1) {
+      return mapSerially(inputs, function);
+    }
+
+    int chunkSize = (inputs.size() + chunks - 1) / chunks;
+    List<CompletableFuture<List<R>>> forked = new ArrayList<>(chunks - 1);
+    for (int start = chunkSize; start < inputs.size(); start += chunkSize) {
+      List<T> chunk = inputs.subList(start, Math.min(start + chunkSize, inputs.size()));
+      forked.add(CompletableFuture.supplyAsync(() -> mapSerially(chunk, function), pool));
+    }
+
+    List<R> results = new ArrayList<>(inputs.size());
+    results.addAll(mapSerially(inputs.subList(0, chunkSize), function));
+    for (CompletableFuture<List<R>> future : forked) {
+      try {
+        results.addAll(future.join());
+      } catch (CompletionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+    return results;
+  }
+
+  private static <T, R> List<R> mapSerially(List<T> inputs, Function<T, R> function) {
+    List<R> results = new ArrayList<>(inputs.size());
+    for (T input : inputs) {
+      results.add(function.apply(input));
+    }
+    return results;
+  }
+
+  private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+    thread.setName("crypto-" + thread.getPoolIndex());
+    thread.setDaemon(true);
+    return thread;
+  }
+}
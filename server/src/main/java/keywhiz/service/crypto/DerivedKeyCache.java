@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.crypto;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import keywhiz.service.config.DerivedKeyCacheConfig;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Bounded cache of key material derived per derivation info tag, so hot secrets skip HKDF.
+ *
+ * Cached key bytes are owned by the cache and zeroed when evicted, expired or replaced. Callers
+ * receive their own short-lived {@link SecretKey} copy, so zeroing never races with a cipher
+ * that is still being initialized.
+ */
+public class DerivedKeyCache {
+  private final Cache<String, CachedKey> cache;
+  private final Meter hits;
+  private final Meter misses;
+
+  public DerivedKeyCache(DerivedKeyCacheConfig config, MetricRegistry metrics) {
+    this.hits = metrics.meter(name(DerivedKeyCache.class, "hits"));
+    this.misses = metrics.meter(name(DerivedKeyCache.class, "misses"));
+    if (config.getMaximumSize() == 0) {
+      this.cache = null;
+    } else {
+      this.cache = CacheBuilder.newBuilder()
+          .maximumSize(config.getMaximumSize())
+          .expireAfterWrite(config.getExpireAfterWrite().toMilliseconds(), TimeUnit.MILLISECONDS)
+          .removalListener((RemovalListener<String, CachedKey>) n -> n.getValue().destroy())
+          .build();
+    }
+  }
+
+  /** @return a cache which always derives, for callers without configuration. */
+  public static DerivedKeyCache disabled() {
+    DerivedKeyCacheConfig config = new DerivedKeyCacheConfig();
+    config.setMaximumSize(0);
+    return new DerivedKeyCache(config, new MetricRegistry());
+  }
+
+  /**
+   * @param info derivation info tag
+   * @param algorithm algorithm name of the returned key
+   * @param derivation derives raw key bytes for an info tag on a cache miss
+   * @return key for the info tag
+   */
+  public SecretKey get(String info, String algorithm, Function<String, byte[]> derivation) {
+    if (cache != null) {
+      CachedKey cached = cache.getIfPresent(info);
+      SecretKey key = (cached == null) ? null : cached.copy(algorithm);
+      if (key != null) {
+        hits.mark();
+        return key;
+      }
+    }
+
+    misses.mark();
+    byte[] derived = derivation.apply(info);
+    SecretKey key = new SecretKeySpec(derived, algorithm);
+    if (cache != null) {
+      cache.put(info, new CachedKey(derived));
+    } else {
+      Arrays.fill(derived, (byte) 0);
+    }
+    return key;
+  }
+
+  /** Drops and zeroes all cached keys. */
+  public void invalidateAll() {
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  @VisibleForTesting long size() {
+    return (cache == null) ? 0 : cache.size();
+  }
+
+  private static class CachedKey {
+    private final byte[] bytes;
+    private boolean destroyed = false;
+
+    CachedKey(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    synchronized SecretKey copy(String algorithm) {
+      return destroyed ? null : new SecretKeySpec(bytes, algorithm);
+    }
+
+    synchronized void destroy() {
+      Arrays.fill(bytes, (byte) 0);
+      destroyed = true;
+    }
+  }
+}
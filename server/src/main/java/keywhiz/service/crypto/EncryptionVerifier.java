@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.crypto;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import java.util.concurrent.ThreadLocalRandom;
+import keywhiz.service.config.EncryptionVerificationConfig;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Decides which encryptions {@link ContentCryptographer} verifies by decrypting them again, and
+ * counts the outcomes.
+ */
+public class EncryptionVerifier {
+  private final EncryptionVerificationConfig config;
+  private final Counter verified;
+  private final Counter mismatched;
+
+  public EncryptionVerifier(EncryptionVerificationConfig config, MetricRegistry metrics) {
+    this.config = config;
+    this.verified = metrics.counter(name(EncryptionVerifier.class, "verified"));
+    this.mismatched = metrics.counter(name(EncryptionVerifier.class, "mismatched"));
+  }
+
+  /** @return a verifier which checks every encryption, for callers without configuration. */
+  public static EncryptionVerifier always() {
+    return new EncryptionVerifier(new EncryptionVerificationConfig(), new MetricRegistry());
+  }
+
+  /** @return true if the current encryption should be verified. */
+  public boolean shouldVerify() {
+    switch (config.getMode()) {
+      case ALWAYS:
+        return true;
+      case SAMPLED:
+        return ThreadLocalRandom.current().nextInt(100) < config.getSamplePercent();
+      default:
+        return false;
+    }
+  }
+
+  /** @param matched whether the decrypted content matched the original plaintext */
+  public void record(boolean matched) {
+    verified.inc();
+    if (!matched) {
+      mismatched.inc();
+    }
+  }
+}
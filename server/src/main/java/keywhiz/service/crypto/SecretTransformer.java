@@ -17,12 +17,14 @@
 package keywhiz.service.crypto;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 import javax.inject.Inject;
 import keywhiz.api.model.Secret;
 import keywhiz.api.model.SecretContent;
 import keywhiz.api.model.SecretSeries;
 import keywhiz.api.model.SecretSeriesAndContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -30,22 +32,35 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * Transforms DB content to Secret model, performing crypto when needed.
  */
 public class SecretTransformer {
+  private static final Logger logger = LoggerFactory.getLogger(SecretTransformer.class);
+
   private final ContentCryptographer cryptographer;
+  private final CryptoExecutor executor;
 
-  @Inject public SecretTransformer(ContentCryptographer cryptographer) {
+  @Inject public SecretTransformer(ContentCryptographer cryptographer, CryptoExecutor executor) {
     this.cryptographer = cryptographer;
+    this.executor = executor;
   }
 
   /**
    * Transform DB content to a Secret model.
    */
   public Secret transform(SecretSeriesAndContent seriesAndContent) {
+    checkNotNull(seriesAndContent);
+    return transform(seriesAndContent,
+        cryptographer.decrypt(seriesAndContent.content().encryptedContent()));
+  }
+
+  /**
+   * Transform DB content whose plaintext is already known to a Secret model, without decrypting.
+   *
+   * @param secretContent base64-encoded plaintext of the content
+   */
+  public Secret transform(SecretSeriesAndContent seriesAndContent, String secretContent) {
     checkNotNull(seriesAndContent);
     SecretSeries series = seriesAndContent.series();
     SecretContent content = seriesAndContent.content();
 
-    final String secretContent = cryptographer.decrypt(content.encryptedContent());
-
     return new Secret(
         series.id(),
         series.name(),
@@ -62,9 +77,24 @@ public class SecretTransformer {
   }
 
   /**
-   * Transform a list of DB content to Secret models.
+   * Transform a list of DB content to Secret models, decrypting in parallel on the crypto executor.
    */
   public List<Secret> transform(List<SecretSeriesAndContent> seriesAndContents) {
-    return seriesAndContents.stream().map(this::transform).collect(Collectors.toList());
+    return executor.map(seriesAndContents, this::transform);
+  }
+
+  /**
+   * Like {@link #transform(List)}, except that content failing to transform yields an empty entry
+   * rather than failing the whole list.
+   */
+  public List<Optional<Secret>> transformEach(List<SecretSeriesAndContent> seriesAndContents) {
+    return executor.map(seriesAndContents, seriesAndContent -> {
+      try {
+        return Optional.of(transform(seriesAndContent));
+      } catch (RuntimeException e) {
+        logger.error("Failed transforming secret {}", seriesAndContent.series().name(), e);
+        return Optional.empty();
+      }
+    });
   }
 }
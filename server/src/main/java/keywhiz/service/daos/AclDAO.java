@@ -16,12 +16,30 @@
 
 package keywhiz.service.daos;
 
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.sql.SQLException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import keywhiz.api.model.Client;
 import keywhiz.api.model.Group;
@@ -30,14 +48,21 @@ import keywhiz.api.model.Secret;
 import keywhiz.api.model.SecretContent;
 import keywhiz.api.model.SecretSeries;
 import keywhiz.api.model.SecretSeriesAndContent;
+import keywhiz.jooq.tables.records.AccessgrantsRecord;
 import keywhiz.jooq.tables.records.SecretsRecord;
+import keywhiz.service.config.ClientSecretAccessConfig;
 import keywhiz.service.config.Readonly;
 import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
 import keywhiz.service.daos.GroupDAO.GroupDAOFactory;
 import keywhiz.service.daos.SecretContentDAO.SecretContentDAOFactory;
 import keywhiz.service.daos.SecretSeriesDAO.SecretSeriesDAOFactory;
+import org.jooq.Condition;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStep4;
+import org.jooq.Record;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +71,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
 import static keywhiz.jooq.tables.Accessgrants.ACCESSGRANTS;
+import static keywhiz.jooq.tables.ClientSecretAccess.CLIENT_SECRET_ACCESS;
 import static keywhiz.jooq.tables.Clients.CLIENTS;
 import static keywhiz.jooq.tables.Groups.GROUPS;
 import static keywhiz.jooq.tables.Memberships.MEMBERSHIPS;
@@ -55,6 +81,25 @@ import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
 public class AclDAO {
   private static final Logger logger = LoggerFactory.getLogger(AclDAO.class);
 
+  /** 1 if the client of the current row may read the secret of the current row, 0 otherwise. */
+  private static final Field<Integer> AUTHORIZED = DSL.decode()
+      .when(DSL.exists(DSL.selectOne()
+          .from(ACCESSGRANTS)
+          .join(MEMBERSHIPS).on(ACCESSGRANTS.GROUPID.eq(MEMBERSHIPS.GROUPID))
+          .where(ACCESSGRANTS.SECRETID.eq(SECRETS.ID)
+              .and(MEMBERSHIPS.CLIENTID.eq(CLIENTS.ID)))), DSL.inline(1))
+      .otherwise(DSL.inline(0))
+      .as("authorized");
+
+  /** Like {@link #AUTHORIZED}, answered by a single client_secret_access primary key probe. */
+  private static final Field<Integer> AUTHORIZED_MATERIALIZED = DSL.decode()
+      .when(DSL.exists(DSL.selectOne()
+          .from(CLIENT_SECRET_ACCESS)
+          .where(CLIENT_SECRET_ACCESS.CLIENTID.eq(CLIENTS.ID)
+              .and(CLIENT_SECRET_ACCESS.SECRETID.eq(SECRETS.ID)))), DSL.inline(1))
+      .otherwise(DSL.inline(0))
+      .as("authorized");
+
   private final DSLContext dslContext;
   private final ClientDAOFactory clientDAOFactory;
   private final GroupDAOFactory groupDAOFactory;
@@ -63,11 +108,17 @@ public class AclDAO {
   private final ClientMapper clientMapper;
   private final GroupMapper groupMapper;
   private final SecretSeriesMapper secretSeriesMapper;
+  private final SecretSeriesAndContentMapper secretSeriesAndContentMapper;
+  private final AclGraph aclGraph;
+  private final SecretChangeBus changeBus;
+  private final boolean useClientSecretAccess;
 
   private AclDAO(DSLContext dslContext, ClientDAOFactory clientDAOFactory,
       GroupDAOFactory groupDAOFactory, SecretContentDAOFactory secretContentDAOFactory,
       SecretSeriesDAOFactory secretSeriesDAOFactory, ClientMapper clientMapper,
-      GroupMapper groupMapper, SecretSeriesMapper secretSeriesMapper) {
+      GroupMapper groupMapper, SecretSeriesMapper secretSeriesMapper,
+      SecretSeriesAndContentMapper secretSeriesAndContentMapper, AclGraph aclGraph,
+      SecretChangeBus changeBus, boolean useClientSecretAccess) {
     this.dslContext = dslContext;
     this.clientDAOFactory = clientDAOFactory;
     this.groupDAOFactory = groupDAOFactory;
@@ -76,9 +127,14 @@ public class AclDAO {
     this.clientMapper = clientMapper;
     this.groupMapper = groupMapper;
     this.secretSeriesMapper = secretSeriesMapper;
+    this.secretSeriesAndContentMapper = secretSeriesAndContentMapper;
+    this.aclGraph = aclGraph;
+    this.changeBus = changeBus;
+    this.useClientSecretAccess = useClientSecretAccess;
   }
 
   public void findAndAllowAccess(long secretId, long groupId) {
+    List<Long> members = new ArrayList<>();
     dslContext.transaction(configuration -> {
       GroupDAO groupDAO = groupDAOFactory.using(configuration);
       SecretSeriesDAO secretSeriesDAO = secretSeriesDAOFactory.using(configuration);
@@ -98,10 +154,14 @@ public class AclDAO {
       }
 
       allowAccess(configuration, secretId, groupId);
+      members.addAll(ClientSecretAccess.members(configuration, ImmutableList.of(groupId)));
     });
+    aclGraph.allowAccess(secretId, groupId);
+    changeBus.publish(members);
   }
 
   public void findAndRevokeAccess(long secretId, long groupId) {
+    List<Long> members = new ArrayList<>();
     dslContext.transaction(configuration -> {
       GroupDAO groupDAO = groupDAOFactory.using(configuration);
       SecretSeriesDAO secretSeriesDAO = secretSeriesDAOFactory.using(configuration);
@@ -121,7 +181,10 @@ public class AclDAO {
       }
 
       revokeAccess(configuration, secretId, groupId);
+      members.addAll(ClientSecretAccess.members(configuration, ImmutableList.of(groupId)));
     });
+    aclGraph.revokeAccess(secretId, groupId);
+    changeBus.publish(members);
   }
 
   public void findAndEnrollClient(long clientId, long groupId) {
@@ -145,6 +208,8 @@ public class AclDAO {
 
       enrollClient(configuration, clientId, groupId);
     });
+    aclGraph.enrollClient(clientId, groupId);
+    changeBus.publish(ImmutableList.of(clientId));
   }
 
   public void findAndEvictClient(long clientId, long groupId) {
@@ -168,25 +233,163 @@ public class AclDAO {
 
       evictClient(configuration, clientId, groupId);
     });
+    aclGraph.evictClient(clientId, groupId);
+    changeBus.publish(ImmutableList.of(clientId));
   }
 
-  public ImmutableSet<SanitizedSecret> getSanitizedSecretsFor(Group group) {
-    checkNotNull(group);
+  /**
+   * Grants a secret to, and revokes it from, groups by name in a single transaction. Unknown group
+   * names are ignored.
+   *
+   * @param secretId id of the secret series
+   * @param allowGroups names of groups to grant the secret to
+   * @param revokeGroups names of groups to revoke the secret from
+   */
+  public void findAndModifyAccess(long secretId, Set<String> allowGroups,
+      Set<String> revokeGroups) {
+    List<Long> allowed = new ArrayList<>();
+    List<Long> revoked = new ArrayList<>();
+    List<Long> members = new ArrayList<>();
+    dslContext.transaction(configuration -> {
+      SecretSeriesDAO secretSeriesDAO = secretSeriesDAOFactory.using(configuration);
+      if (!secretSeriesDAO.getSecretSeriesById(secretId).isPresent()) {
+        logger.info("Failure to modify access for secretId {}: secretId not found.", secretId);
+        throw new IllegalStateException(format("SecretId %d doesn't exist.", secretId));
+      }
 
-    ImmutableSet.Builder<SanitizedSecret> set = ImmutableSet.builder();
+      allowed.addAll(groupIdsFor(configuration, allowGroups));
+      revoked.addAll(groupIdsFor(configuration, revokeGroups));
+      allowAccess(configuration, secretId, allowed);
+      revokeAccess(configuration, secretId, revoked);
+      members.addAll(ClientSecretAccess.members(configuration,
+          ImmutableList.<Long>builder().addAll(allowed).addAll(revoked).build()));
+    });
+    allowed.forEach(groupId -> aclGraph.allowAccess(secretId, groupId));
+    revoked.forEach(groupId -> aclGraph.revokeAccess(secretId, groupId));
+    changeBus.publish(members);
+  }
 
-    return dslContext.transactionResult(configuration -> {
-      SecretContentDAO secretContentDAO = secretContentDAOFactory.using(configuration);
+  /**
+   * Enrolls a client in, and evicts it from, groups by name in a single transaction. Unknown group
+   * names are ignored.
+   *
+   * @param clientId id of the client
+   * @param enrollGroups names of groups to enroll the client in
+   * @param evictGroups names of groups to evict the client from
+   */
+  public void findAndModifyMemberships(long clientId, Set<String> enrollGroups,
+      Set<String> evictGroups) {
+    List<Long> enrolled = new ArrayList<>();
+    List<Long> evicted = new ArrayList<>();
+    dslContext.transaction(configuration -> {
+      ClientDAO clientDAO = clientDAOFactory.using(configuration);
+      if (!clientDAO.getClientById(clientId).isPresent()) {
+        logger.info("Failure to modify memberships for clientId {}: clientId not found.", clientId);
+        throw new IllegalStateException(format("ClientId %d doesn't exist.", clientId));
+      }
 
-      for (SecretSeries series : getSecretSeriesFor(configuration, group)) {
-        for (SecretContent content : secretContentDAO.getSecretContentsBySecretId(series.id())) {
-          SecretSeriesAndContent seriesAndContent = SecretSeriesAndContent.of(series, content);
-          set.add(SanitizedSecret.fromSecretSeriesAndContent(seriesAndContent));
-        }
+      enrolled.addAll(groupIdsFor(configuration, enrollGroups));
+      evicted.addAll(groupIdsFor(configuration, evictGroups));
+      enrollClient(configuration, clientId, enrolled);
+      evictClient(configuration, clientId, evicted);
+    });
+    enrolled.forEach(groupId -> aclGraph.enrollClient(clientId, groupId));
+    evicted.forEach(groupId -> aclGraph.evictClient(clientId, groupId));
+    if (!enrolled.isEmpty() || !evicted.isEmpty()) {
+      changeBus.publish(ImmutableList.of(clientId));
+    }
+  }
+
+  /**
+   * Grants secrets to groups by name within the transaction of the {@link Configuration} this DAO
+   * was created with, using one insert for all new grants. Unknown group names are ignored. Pass
+   * the result to {@link #accessAllowed} once the transaction committed.
+   *
+   * @param groupsBySecret names of the groups to grant each secret series to
+   * @return ids of the groups each secret series is granted to
+   */
+  ImmutableSetMultimap<Long, Long> allowAccess(SetMultimap<Long, String> groupsBySecret) {
+    if (groupsBySecret.isEmpty()) {
+      return ImmutableSetMultimap.of();
+    }
+
+    Map<String, Long> groupIds = dslContext
+        .select(GROUPS.NAME, GROUPS.ID)
+        .from(GROUPS)
+        .where(GROUPS.NAME.in(groupsBySecret.values()))
+        .fetchMap(GROUPS.NAME, GROUPS.ID);
+    ImmutableSetMultimap.Builder<Long, Long> builder = ImmutableSetMultimap.builder();
+    for (Map.Entry<Long, String> entry : groupsBySecret.entries()) {
+      Long groupId = groupIds.get(entry.getValue());
+      if (groupId != null) {
+        builder.put(entry.getKey(), groupId);
       }
+    }
+    ImmutableSetMultimap<Long, Long> grants = builder.build();
+    if (grants.isEmpty()) {
+      return grants;
+    }
 
-      return set.build();
+    // Taking every granted group with the first secret keeps the groups locked in id order.
+    Configuration configuration = dslContext.configuration();
+    Set<Long> grantedGroupIds = ImmutableSet.copyOf(grants.values());
+    for (long secretId : new TreeSet<>(grants.keySet())) {
+      ClientSecretAccess.lockSecret(configuration, secretId, grantedGroupIds);
+    }
+
+    long now = OffsetDateTime.now().toEpochSecond();
+    insertIfAbsent(configuration, jooq -> {
+      Set<Map.Entry<Long, Long>> existing = new HashSet<>(jooq
+          .select(ACCESSGRANTS.SECRETID, ACCESSGRANTS.GROUPID)
+          .from(ACCESSGRANTS)
+          .where(ACCESSGRANTS.SECRETID.in(grants.keySet()))
+          .fetch()
+          .map(r -> Maps.immutableEntry(r.value1(), r.value2())));
+      InsertValuesStep4<AccessgrantsRecord, Long, Long, Long, Long> insert = jooq
+          .insertInto(ACCESSGRANTS, ACCESSGRANTS.SECRETID, ACCESSGRANTS.GROUPID,
+              ACCESSGRANTS.CREATEDAT, ACCESSGRANTS.UPDATEDAT);
+      boolean inserting = false;
+      for (Map.Entry<Long, Long> grant : grants.entries()) {
+        if (!existing.contains(grant)) {
+          insert = insert.values(grant.getKey(), grant.getValue(), now, now);
+          inserting = true;
+        }
+      }
+      if (inserting) {
+        insert.execute();
+      }
     });
+
+    grants.keySet().forEach(secretId -> ClientSecretAccess.refreshSecret(configuration, secretId));
+    return grants;
+  }
+
+  /**
+   * Applies grants made by {@link #allowAccess(SetMultimap)} once their transaction committed.
+   *
+   * @param grants ids of the groups each secret series was granted to
+   */
+  void accessAllowed(SetMultimap<Long, Long> grants) {
+    grants.entries().forEach(grant -> aclGraph.allowAccess(grant.getKey(), grant.getValue()));
+  }
+
+  public ImmutableSet<SanitizedSecret> getSanitizedSecretsFor(Group group) {
+    checkNotNull(group);
+
+    ImmutableSet.Builder<SanitizedSecret> set = ImmutableSet.builder();
+    Cursors.forEach(dslContext
+        .select(SECRETS.fields())
+        .select(SECRETS_CONTENT.fields())
+        .from(SECRETS)
+        .join(SECRETS_CONTENT).on(SECRETS.ID.eq(SECRETS_CONTENT.SECRETID))
+        .whereExists(DSL.selectOne()
+            .from(ACCESSGRANTS)
+            .join(GROUPS).on(GROUPS.ID.eq(ACCESSGRANTS.GROUPID))
+            .where(ACCESSGRANTS.SECRETID.eq(SECRETS.ID)
+                .and(GROUPS.NAME.eq(group.getName())))),
+        secretSeriesAndContentMapper,
+        secret -> set.add(SanitizedSecret.fromSecretSeriesAndContent(secret)));
+    return set.build();
   }
 
   public Set<Group> getGroupsFor(Secret secret) {
@@ -201,6 +404,23 @@ public class AclDAO {
     return new HashSet<>(r);
   }
 
+  /**
+   * @return groups with access to each secret series, keyed by series id, read with a single join.
+   * Series without any group are absent.
+   */
+  public ImmutableSetMultimap<Long, Group> getGroupsBySecretId() {
+    ImmutableSetMultimap.Builder<Long, Group> groups = ImmutableSetMultimap.builder();
+    dslContext
+        .select(ACCESSGRANTS.SECRETID)
+        .select(GROUPS.fields())
+        .from(GROUPS)
+        .join(ACCESSGRANTS).on(GROUPS.ID.eq(ACCESSGRANTS.GROUPID))
+        .fetch()
+        .forEach(r -> groups.put(r.getValue(ACCESSGRANTS.SECRETID),
+            groupMapper.map(r.into(GROUPS))));
+    return groups.build();
+  }
+
   public Set<Group> getGroupsFor(Client client) {
     List<Group> r = dslContext
         .select(GROUPS.fields())
@@ -228,31 +448,57 @@ public class AclDAO {
   public ImmutableSet<SanitizedSecret> getSanitizedSecretsFor(Client client) {
     checkNotNull(client);
 
-    // In the past, the two data fetches below were wrapped in a transaction. The transaction was
-    // removed because jOOQ transactions doesn't play well with MySQL readonly connections
-    // (see https://github.com/jOOQ/jOOQ/issues/3955).
-    //
-    // A possible work around is to write a transaction manager (see http://git.io/vkuFM)
-    //
-    // Removing the transaction however seems to be simpler and safe. The first data fetch's
-    // secret.id is used for the second data fetch.
-    //
-    // A third way to work around this issue is to write a SQL join. Jooq makes it relatively easy,
-    // but such joins hurt code re-use.
-    SecretContentDAO secretContentDAO = secretContentDAOFactory.using(dslContext.configuration());
+    // A single statement, so no transaction is needed.
+    ImmutableSet.Builder<SanitizedSecret> set = ImmutableSet.builder();
+    Cursors.forEach(dslContext
+        .select(SECRETS.fields())
+        .select(SECRETS_CONTENT.fields())
+        .from(SECRETS)
+        .join(SECRETS_CONTENT).on(SECRETS.ID.eq(SECRETS_CONTENT.SECRETID))
+        .where(visibleTo(client)),
+        secretSeriesAndContentMapper,
+        secret -> set.add(SanitizedSecret.fromSecretSeriesAndContent(secret)));
+    return set.build();
+  }
 
-    ImmutableSet.Builder<SanitizedSecret> sanitizedSet = ImmutableSet.builder();
+  /**
+   * Fingerprints the secrets visible to a client without fetching them. Secret contents are never
+   * changed in place in a way visible to clients, so the ids of the visible versions together with
+   * their update times identify the result of {@link #getSanitizedSecretsFor(Client)}.
+   *
+   * @param client client to fingerprint visible secrets for
+   * @return hash which differs whenever the secrets visible to the client differ
+   */
+  public HashCode getSecretsFingerprintFor(Client client) {
+    checkNotNull(client);
 
-    for (SecretSeries series : getSecretSeriesFor(dslContext.configuration(), client)) {
-      for (SecretContent content : secretContentDAO.getSecretContentsBySecretId(series.id())) {
-        SecretSeriesAndContent seriesAndContent = SecretSeriesAndContent.of(series, content);
-        sanitizedSet.add(SanitizedSecret.fromSecretSeriesAndContent(seriesAndContent));
-      }
-    }
-    return sanitizedSet.build();
+    Hasher hasher = Hashing.sha256().newHasher();
+    dslContext
+        .select(SECRETS_CONTENT.ID, SECRETS_CONTENT.UPDATEDAT, SECRETS.UPDATEDAT)
+        .from(SECRETS)
+        .join(SECRETS_CONTENT).on(SECRETS.ID.eq(SECRETS_CONTENT.SECRETID))
+        .where(visibleTo(client))
+        .orderBy(SECRETS_CONTENT.ID)
+        .fetch()
+        .forEach(r -> hasher
+            .putLong(r.value1())
+            .putLong(r.value2())
+            .putLong(r.value3()));
+    return hasher.hash();
   }
 
   public Set<Client> getClientsFor(Secret secret) {
+    if (useClientSecretAccess) {
+      return new HashSet<>(dslContext
+          .select(CLIENTS.fields())
+          .from(CLIENTS)
+          .join(CLIENT_SECRET_ACCESS).on(CLIENTS.ID.eq(CLIENT_SECRET_ACCESS.CLIENTID))
+          .join(SECRETS).on(SECRETS.ID.eq(CLIENT_SECRET_ACCESS.SECRETID))
+          .where(SECRETS.NAME.eq(secret.getName()))
+          .fetchInto(CLIENTS)
+          .map(clientMapper));
+    }
+
     List<Client> r = dslContext
         .select(CLIENTS.fields())
         .from(CLIENTS)
@@ -265,6 +511,61 @@ public class AclDAO {
     return new HashSet<>(r);
   }
 
+  /** Names of the groups with access to a secret, without loading the groups. */
+  public ImmutableSet<String> getGroupNamesFor(Secret secret) {
+    return ImmutableSet.copyOf(dslContext
+        .select(GROUPS.NAME)
+        .from(GROUPS)
+        .join(ACCESSGRANTS).on(GROUPS.ID.eq(ACCESSGRANTS.GROUPID))
+        .join(SECRETS).on(ACCESSGRANTS.SECRETID.eq(SECRETS.ID))
+        .where(SECRETS.NAME.eq(secret.getName()))
+        .fetch(GROUPS.NAME));
+  }
+
+  /** Names of the groups a client is a member of, without loading the groups. */
+  public ImmutableSet<String> getGroupNamesFor(Client client) {
+    return ImmutableSet.copyOf(dslContext
+        .select(GROUPS.NAME)
+        .from(GROUPS)
+        .join(MEMBERSHIPS).on(GROUPS.ID.eq(MEMBERSHIPS.GROUPID))
+        .join(CLIENTS).on(CLIENTS.ID.eq(MEMBERSHIPS.CLIENTID))
+        .where(CLIENTS.NAME.eq(client.getName()))
+        .fetch(GROUPS.NAME));
+  }
+
+  /** Names of the members of a group, without loading the clients. */
+  public ImmutableSet<String> getClientNamesFor(Group group) {
+    return ImmutableSet.copyOf(dslContext
+        .select(CLIENTS.NAME)
+        .from(CLIENTS)
+        .join(MEMBERSHIPS).on(CLIENTS.ID.eq(MEMBERSHIPS.CLIENTID))
+        .join(GROUPS).on(GROUPS.ID.eq(MEMBERSHIPS.GROUPID))
+        .where(GROUPS.NAME.eq(group.getName()))
+        .fetch(CLIENTS.NAME));
+  }
+
+  /** Names of the secrets a group has access to, without loading series or contents. */
+  public ImmutableSet<String> getSecretNamesFor(Group group) {
+    checkNotNull(group);
+    return ImmutableSet.copyOf(dslContext
+        .select(SECRETS.NAME)
+        .from(SECRETS)
+        .join(ACCESSGRANTS).on(ACCESSGRANTS.SECRETID.eq(SECRETS.ID))
+        .join(GROUPS).on(GROUPS.ID.eq(ACCESSGRANTS.GROUPID))
+        .where(GROUPS.NAME.eq(group.getName()).and(hasContent()))
+        .fetch(SECRETS.NAME));
+  }
+
+  /** Names of the secrets visible to a client, without loading series or contents. */
+  public ImmutableSet<String> getSecretNamesFor(Client client) {
+    checkNotNull(client);
+    return ImmutableSet.copyOf(dslContext
+        .select(SECRETS.NAME)
+        .from(SECRETS)
+        .where(visibleTo(client).and(hasContent()))
+        .fetch(SECRETS.NAME));
+  }
+
   public Optional<SanitizedSecret> getSanitizedSecretFor(Client client, String name, String version) {
     checkNotNull(client);
     checkArgument(!name.isEmpty());
@@ -299,85 +600,342 @@ public class AclDAO {
     return Optional.of(SanitizedSecret.fromSecretSeriesAndContent(seriesAndContent));
   }
 
-  protected void allowAccess(Configuration configuration, long secretId, long groupId) {
-    long now = OffsetDateTime.now().toEpochSecond();
+  /**
+   * Looks up everything needed to deliver a secret to a client in a single statement: whether the
+   * client exists, the secret series and content, and whether the client may read it. When the
+   * {@link AclGraph} is fresh, authorization is answered from memory instead.
+   *
+   * @param client client requesting the secret
+   * @param name name of SecretSeries
+   * @param version version of the secret content, empty for unversioned secrets
+   * @return lookup result, which distinguishes unauthorized from not found.
+   */
+  public DeliveryLookup getSecretForDelivery(Client client, String name, String version) {
+    checkNotNull(client);
+    checkArgument(!name.isEmpty());
+    checkNotNull(version);
 
-    boolean assigned = 0 < DSL.using(configuration)
-        .fetchCount(ACCESSGRANTS,
-            ACCESSGRANTS.SECRETID.eq(secretId).and(
-            ACCESSGRANTS.GROUPID.eq(groupId)));
-    if (assigned) {
-      return;
+    boolean useAclGraph = aclGraph.isFresh();
+    Field<Integer> authorizedField = useClientSecretAccess ? AUTHORIZED_MATERIALIZED : AUTHORIZED;
+
+    List<Field<?>> fields = new ArrayList<>();
+    fields.add(CLIENTS.ID);
+    fields.addAll(Arrays.asList(SECRETS.fields()));
+    fields.addAll(Arrays.asList(SECRETS_CONTENT.fields()));
+    if (!useAclGraph) {
+      fields.add(authorizedField);
     }
 
-    DSL.using(configuration)
-        .insertInto(ACCESSGRANTS)
-        .set(ACCESSGRANTS.SECRETID, secretId)
-        .set(ACCESSGRANTS.GROUPID, groupId)
-        .set(ACCESSGRANTS.CREATEDAT, now)
-        .set(ACCESSGRANTS.UPDATEDAT, now)
-        .execute();
+    // Driving from clients keeps a row for existing clients even when the secret is missing.
+    Record r = dslContext
+        .select(fields)
+        .from(CLIENTS)
+        .leftOuterJoin(SECRETS).on(SECRETS.NAME.eq(name))
+        .leftOuterJoin(SECRETS_CONTENT).on(SECRETS_CONTENT.SECRETID.eq(SECRETS.ID)
+            .and(SECRETS_CONTENT.VERSION.eq(version)))
+        .where(CLIENTS.NAME.eq(client.getName()))
+        .fetchOne();
+
+    if (r == null) {
+      return DeliveryLookup.of(false, false, null);
+    }
+    if (r.getValue(SECRETS_CONTENT.ID) == null) {
+      return DeliveryLookup.of(true, false, null);
+    }
+
+    SecretSeriesAndContent secret = secretSeriesAndContentMapper.map(r);
+    boolean authorized = useAclGraph ?
+        aclGraph.canRead(r.getValue(CLIENTS.ID), secret.series().id()) :
+        r.getValue(authorizedField) == 1;
+    return DeliveryLookup.of(true, authorized, secret);
+  }
+
+  /**
+   * Batch form of {@link #getSecretForDelivery(Client, String, String)}, resolving every requested
+   * secret and its authorization in a single statement.
+   *
+   * @param client client requesting the secrets
+   * @param namesAndVersions pairs of SecretSeries name and content version, empty for unversioned
+   * @return lookup result for each requested pair
+   */
+  public ImmutableMap<Map.Entry<String, String>, DeliveryLookup> getSecretsForDelivery(
+      Client client, Set<Map.Entry<String, String>> namesAndVersions) {
+    checkNotNull(client);
+    if (namesAndVersions.isEmpty()) {
+      return ImmutableMap.of();
+    }
+
+    boolean useAclGraph = aclGraph.isFresh();
+    Field<Integer> authorizedField = useClientSecretAccess ? AUTHORIZED_MATERIALIZED : AUTHORIZED;
+
+    List<Field<?>> fields = new ArrayList<>();
+    fields.add(CLIENTS.ID);
+    fields.addAll(Arrays.asList(SECRETS.fields()));
+    fields.addAll(Arrays.asList(SECRETS_CONTENT.fields()));
+    if (!useAclGraph) {
+      fields.add(authorizedField);
+    }
+
+    Set<String> names = new HashSet<>();
+    Condition requested = DSL.falseCondition();
+    for (Map.Entry<String, String> nameAndVersion : namesAndVersions) {
+      checkArgument(!nameAndVersion.getKey().isEmpty());
+      names.add(nameAndVersion.getKey());
+      requested = requested.or(SECRETS.NAME.eq(nameAndVersion.getKey())
+          .and(SECRETS_CONTENT.VERSION.eq(checkNotNull(nameAndVersion.getValue()))));
+    }
+
+    // Same shape as the single lookup: driving from clients keeps a row for an existing client.
+    List<Record> rows = dslContext
+        .select(fields)
+        .from(CLIENTS)
+        .leftOuterJoin(SECRETS).on(SECRETS.NAME.in(names))
+        .leftOuterJoin(SECRETS_CONTENT).on(SECRETS_CONTENT.SECRETID.eq(SECRETS.ID)
+            .and(requested))
+        .where(CLIENTS.NAME.eq(client.getName()))
+        .fetch();
+    boolean clientExists = !rows.isEmpty();
+
+    Map<Map.Entry<String, String>, DeliveryLookup> found = new HashMap<>();
+    for (Record r : rows) {
+      if (r.getValue(SECRETS_CONTENT.ID) == null) {
+        continue;
+      }
+      SecretSeriesAndContent secret = secretSeriesAndContentMapper.map(r);
+      boolean authorized = useAclGraph ?
+          aclGraph.canRead(r.getValue(CLIENTS.ID), secret.series().id()) :
+          r.getValue(authorizedField) == 1;
+      found.put(Maps.immutableEntry(r.getValue(SECRETS.NAME), r.getValue(SECRETS_CONTENT.VERSION)),
+          DeliveryLookup.of(true, authorized, secret));
+    }
+
+    ImmutableMap.Builder<Map.Entry<String, String>, DeliveryLookup> lookups =
+        ImmutableMap.builder();
+    for (Map.Entry<String, String> nameAndVersion : namesAndVersions) {
+      DeliveryLookup lookup = found.get(nameAndVersion);
+      lookups.put(nameAndVersion,
+          (lookup == null) ? DeliveryLookup.of(clientExists, false, null) : lookup);
+    }
+    return lookups.build();
+  }
+
+  protected void allowAccess(Configuration configuration, long secretId, long groupId) {
+    ClientSecretAccess.lockSecret(configuration, secretId, ImmutableList.of(groupId));
+    long now = OffsetDateTime.now().toEpochSecond();
+
+    // Insert-if-absent in a single statement; accessgrants_groupid_secretid_idx rejects duplicates
+    // from concurrent callers.
+    insertIfAbsent(configuration, jooq -> jooq
+        .insertInto(ACCESSGRANTS, ACCESSGRANTS.SECRETID, ACCESSGRANTS.GROUPID,
+            ACCESSGRANTS.CREATEDAT, ACCESSGRANTS.UPDATEDAT)
+        .select(DSL.select(
+            DSL.val(secretId, ACCESSGRANTS.SECRETID),
+            DSL.val(groupId, ACCESSGRANTS.GROUPID),
+            DSL.val(now, ACCESSGRANTS.CREATEDAT),
+            DSL.val(now, ACCESSGRANTS.UPDATEDAT))
+            .whereNotExists(DSL.selectOne()
+                .from(ACCESSGRANTS)
+                .where(ACCESSGRANTS.SECRETID.eq(secretId)
+                    .and(ACCESSGRANTS.GROUPID.eq(groupId)))))
+        .execute());
+    ClientSecretAccess.refreshSecret(configuration, secretId);
   }
 
   protected void revokeAccess(Configuration configuration, long secretId, long groupId) {
+    ClientSecretAccess.lockSecret(configuration, secretId, ImmutableList.of(groupId));
     DSL.using(configuration)
         .delete(ACCESSGRANTS)
         .where(ACCESSGRANTS.SECRETID.eq(secretId)
             .and(ACCESSGRANTS.GROUPID.eq(groupId)))
         .execute();
+    // Denied from now on. The public methods apply it again after commit, in case a concurrent
+    // reload read the edge before it was committed.
+    aclGraph.revokeAccess(secretId, groupId);
+    ClientSecretAccess.refreshSecret(configuration, secretId);
   }
 
   protected void enrollClient(Configuration configuration, long clientId, long groupId) {
+    ClientSecretAccess.lockClients(configuration, ImmutableList.of(clientId),
+        ImmutableList.of(groupId));
     long now = OffsetDateTime.now().toEpochSecond();
 
-    boolean enrolled = 0 < DSL.using(configuration)
-        .fetchCount(MEMBERSHIPS,
-            MEMBERSHIPS.GROUPID.eq(groupId).and(
-            MEMBERSHIPS.CLIENTID.eq(clientId)));
-    if (enrolled) {
+    // Insert-if-absent in a single statement; memberships_clientid_groupid_idx rejects duplicates
+    // from concurrent callers.
+    insertIfAbsent(configuration, jooq -> jooq
+        .insertInto(MEMBERSHIPS, MEMBERSHIPS.GROUPID, MEMBERSHIPS.CLIENTID,
+            MEMBERSHIPS.CREATEDAT, MEMBERSHIPS.UPDATEDAT)
+        .select(DSL.select(
+            DSL.val(groupId, MEMBERSHIPS.GROUPID),
+            DSL.val(clientId, MEMBERSHIPS.CLIENTID),
+            DSL.val(now, MEMBERSHIPS.CREATEDAT),
+            DSL.val(now, MEMBERSHIPS.UPDATEDAT))
+            .whereNotExists(DSL.selectOne()
+                .from(MEMBERSHIPS)
+                .where(MEMBERSHIPS.GROUPID.eq(groupId)
+                    .and(MEMBERSHIPS.CLIENTID.eq(clientId)))))
+        .execute());
+    ClientSecretAccess.refreshClient(configuration, clientId);
+  }
+
+  protected void evictClient(Configuration configuration, long clientId, long groupId) {
+    ClientSecretAccess.lockClients(configuration, ImmutableList.of(clientId),
+        ImmutableList.of(groupId));
+    DSL.using(configuration)
+        .delete(MEMBERSHIPS)
+        .where(MEMBERSHIPS.CLIENTID.eq(clientId)
+            .and(MEMBERSHIPS.GROUPID.eq(groupId)))
+        .execute();
+    aclGraph.evictClient(clientId, groupId);
+    ClientSecretAccess.refreshClient(configuration, clientId);
+  }
+
+  protected void allowAccess(Configuration configuration, long secretId,
+      Collection<Long> groupIds) {
+    if (groupIds.isEmpty()) {
       return;
     }
+    ClientSecretAccess.lockSecret(configuration, secretId, groupIds);
+    long now = OffsetDateTime.now().toEpochSecond();
+
+    // One insert-if-absent for all groups, reading group ids from the groups table so a group
+    // deleted concurrently is skipped rather than violating the foreign key.
+    insertIfAbsent(configuration, jooq -> jooq
+        .insertInto(ACCESSGRANTS, ACCESSGRANTS.SECRETID, ACCESSGRANTS.GROUPID,
+            ACCESSGRANTS.CREATEDAT, ACCESSGRANTS.UPDATEDAT)
+        .select(DSL.select(
+            DSL.val(secretId, ACCESSGRANTS.SECRETID),
+            GROUPS.ID,
+            DSL.val(now, ACCESSGRANTS.CREATEDAT),
+            DSL.val(now, ACCESSGRANTS.UPDATEDAT))
+            .from(GROUPS)
+            .where(GROUPS.ID.in(groupIds))
+            .andNotExists(DSL.selectOne()
+                .from(ACCESSGRANTS)
+                .where(ACCESSGRANTS.SECRETID.eq(secretId)
+                    .and(ACCESSGRANTS.GROUPID.eq(GROUPS.ID)))))
+        .execute());
+    ClientSecretAccess.refreshSecret(configuration, secretId);
+  }
 
+  protected void revokeAccess(Configuration configuration, long secretId,
+      Collection<Long> groupIds) {
+    if (groupIds.isEmpty()) {
+      return;
+    }
+    ClientSecretAccess.lockSecret(configuration, secretId, groupIds);
     DSL.using(configuration)
-        .insertInto(MEMBERSHIPS)
-        .set(MEMBERSHIPS.GROUPID, groupId)
-        .set(MEMBERSHIPS.CLIENTID, clientId)
-        .set(MEMBERSHIPS.CREATEDAT, now)
-        .set(MEMBERSHIPS.UPDATEDAT, now)
+        .delete(ACCESSGRANTS)
+        .where(ACCESSGRANTS.SECRETID.eq(secretId)
+            .and(ACCESSGRANTS.GROUPID.in(groupIds)))
         .execute();
+    groupIds.forEach(groupId -> aclGraph.revokeAccess(secretId, groupId));
+    ClientSecretAccess.refreshSecret(configuration, secretId);
   }
 
-  protected void evictClient(Configuration configuration, long clientId, long groupId) {
+  protected void enrollClient(Configuration configuration, long clientId,
+      Collection<Long> groupIds) {
+    if (groupIds.isEmpty()) {
+      return;
+    }
+    ClientSecretAccess.lockClients(configuration, ImmutableList.of(clientId), groupIds);
+    long now = OffsetDateTime.now().toEpochSecond();
+
+    insertIfAbsent(configuration, jooq -> jooq
+        .insertInto(MEMBERSHIPS, MEMBERSHIPS.GROUPID, MEMBERSHIPS.CLIENTID,
+            MEMBERSHIPS.CREATEDAT, MEMBERSHIPS.UPDATEDAT)
+        .select(DSL.select(
+            GROUPS.ID,
+            DSL.val(clientId, MEMBERSHIPS.CLIENTID),
+            DSL.val(now, MEMBERSHIPS.CREATEDAT),
+            DSL.val(now, MEMBERSHIPS.UPDATEDAT))
+            .from(GROUPS)
+            .where(GROUPS.ID.in(groupIds))
+            .andNotExists(DSL.selectOne()
+                .from(MEMBERSHIPS)
+                .where(MEMBERSHIPS.GROUPID.eq(GROUPS.ID)
+                    .and(MEMBERSHIPS.CLIENTID.eq(clientId)))))
+        .execute());
+    ClientSecretAccess.refreshClient(configuration, clientId);
+  }
+
+  protected void evictClient(Configuration configuration, long clientId,
+      Collection<Long> groupIds) {
+    if (groupIds.isEmpty()) {
+      return;
+    }
+    ClientSecretAccess.lockClients(configuration, ImmutableList.of(clientId), groupIds);
     DSL.using(configuration)
         .delete(MEMBERSHIPS)
         .where(MEMBERSHIPS.CLIENTID.eq(clientId)
-            .and(MEMBERSHIPS.GROUPID.eq(groupId)))
+            .and(MEMBERSHIPS.GROUPID.in(groupIds)))
         .execute();
+    groupIds.forEach(groupId -> aclGraph.evictClient(clientId, groupId));
+    ClientSecretAccess.refreshClient(configuration, clientId);
   }
 
-  protected ImmutableSet<SecretSeries> getSecretSeriesFor(Configuration configuration, Group group) {
-    List<SecretSeries> r = DSL.using(configuration)
-        .select(SECRETS.fields())
-        .from(SECRETS)
-        .join(ACCESSGRANTS).on(SECRETS.ID.eq(ACCESSGRANTS.SECRETID))
-        .join(GROUPS).on(GROUPS.ID.eq(ACCESSGRANTS.GROUPID))
-        .where(GROUPS.NAME.eq(group.getName()))
-        .fetchInto(SECRETS)
-        .map(secretSeriesMapper);
-    return ImmutableSet.copyOf(r);
+  /**
+   * Runs an insert-if-absent in a nested transaction. If a concurrent transaction committed one of
+   * the rows first, the unique index rejects the insert; only the nested transaction is rolled
+   * back and the insert is run once more, now skipping the rows which are already present.
+   */
+  private static void insertIfAbsent(Configuration configuration, Consumer<DSLContext> insert) {
+    try {
+      DSL.using(configuration).transaction(nested -> insert.accept(DSL.using(nested)));
+    } catch (DataAccessException e) {
+      if (!isUniqueViolation(e)) {
+        throw e;
+      }
+      logger.info("Concurrent insert of ACL rows, retrying: {}", e.getMessage());
+      DSL.using(configuration).transaction(nested -> insert.accept(DSL.using(nested)));
+    }
   }
 
-  protected ImmutableSet<SecretSeries> getSecretSeriesFor(Configuration configuration, Client client) {
-    List<SecretSeries> r = DSL.using(configuration)
-        .select(SECRETS.fields())
-        .from(SECRETS)
-        .join(ACCESSGRANTS).on(SECRETS.ID.eq(ACCESSGRANTS.SECRETID))
+  private static boolean isUniqueViolation(DataAccessException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SQLException) {
+        SQLException sqlException = (SQLException) cause;
+        // PostgreSQL and H2 report 23505; MySQL reports 23000 with ER_DUP_ENTRY (1062).
+        return "23505".equals(sqlException.getSQLState())
+            || ("23000".equals(sqlException.getSQLState()) && sqlException.getErrorCode() == 1062);
+      }
+    }
+    return false;
+  }
+
+  /** Resolves group names to ids in one query, dropping names with no group. */
+  private static List<Long> groupIdsFor(Configuration configuration, Set<String> names) {
+    if (names.isEmpty()) {
+      return ImmutableList.of();
+    }
+    return DSL.using(configuration)
+        .select(GROUPS.ID)
+        .from(GROUPS)
+        .where(GROUPS.NAME.in(names))
+        .fetch(GROUPS.ID);
+  }
+
+  /** Secret series without any content are not listed as secrets. */
+  private static Condition hasContent() {
+    return DSL.exists(DSL.selectOne()
+        .from(SECRETS_CONTENT)
+        .where(SECRETS_CONTENT.SECRETID.eq(SECRETS.ID)));
+  }
+
+  /** @return condition on {@code SECRETS.ID} matching secrets the client may read. */
+  private Condition visibleTo(Client client) {
+    if (useClientSecretAccess) {
+      return DSL.exists(DSL.selectOne()
+          .from(CLIENT_SECRET_ACCESS)
+          .join(CLIENTS).on(CLIENTS.ID.eq(CLIENT_SECRET_ACCESS.CLIENTID))
+          .where(CLIENT_SECRET_ACCESS.SECRETID.eq(SECRETS.ID)
+              .and(CLIENTS.NAME.eq(client.getName()))));
+    }
+    return DSL.exists(DSL.selectOne()
+        .from(ACCESSGRANTS)
         .join(MEMBERSHIPS).on(ACCESSGRANTS.GROUPID.eq(MEMBERSHIPS.GROUPID))
         .join(CLIENTS).on(CLIENTS.ID.eq(MEMBERSHIPS.CLIENTID))
-        .where(CLIENTS.NAME.eq(client.getName()))
-        .fetchInto(SECRETS)
-        .map(secretSeriesMapper);
-    return ImmutableSet.copyOf(r);
+        .where(ACCESSGRANTS.SECRETID.eq(SECRETS.ID)
+            .and(CLIENTS.NAME.eq(client.getName()))));
   }
 
   /**
@@ -388,6 +946,17 @@ public class AclDAO {
    * table should be used to determine the exception.
    */
   protected Optional<SecretSeries> getSecretSeriesFor(Configuration configuration, Client client, String name) {
+    if (useClientSecretAccess) {
+      SecretsRecord r = DSL.using(configuration)
+          .select(SECRETS.fields())
+          .from(SECRETS)
+          .join(CLIENT_SECRET_ACCESS).on(SECRETS.ID.eq(CLIENT_SECRET_ACCESS.SECRETID))
+          .join(CLIENTS).on(CLIENTS.ID.eq(CLIENT_SECRET_ACCESS.CLIENTID))
+          .where(SECRETS.NAME.eq(name).and(CLIENTS.NAME.eq(client.getName())).and(hasContent()))
+          .fetchOneInto(SECRETS);
+      return Optional.ofNullable(r).map(secretSeriesMapper::map);
+    }
+
     SecretsRecord r = DSL.using(configuration)
         .select(SECRETS.fields())
         .from(SECRETS)
@@ -401,6 +970,24 @@ public class AclDAO {
     return Optional.ofNullable(r).map(secretSeriesMapper::map);
   }
 
+  /** Result of {@link #getSecretForDelivery(Client, String, String)}. */
+  @AutoValue public static abstract class DeliveryLookup {
+    public static DeliveryLookup of(boolean clientExists, boolean authorized,
+        @Nullable SecretSeriesAndContent secret) {
+      return new AutoValue_AclDAO_DeliveryLookup(clientExists, authorized,
+          Optional.ofNullable(secret));
+    }
+
+    /** @return true if the client exists in the database. */
+    public abstract boolean clientExists();
+
+    /** @return true if the secret exists and the client may read it. */
+    public abstract boolean authorized();
+
+    /** @return the secret series and content, regardless of authorization, if it exists. */
+    public abstract Optional<SecretSeriesAndContent> secret();
+  }
+
   public static class AclDAOFactory implements DAOFactory<AclDAO> {
     private final DSLContext jooq;
     private final DSLContext readonlyJooq;
@@ -411,12 +998,18 @@ public class AclDAO {
     private final ClientMapper clientMapper;
     private final GroupMapper groupMapper;
     private final SecretSeriesMapper secretSeriesMapper;
+    private final SecretSeriesAndContentMapper secretSeriesAndContentMapper;
+    private final AclGraph aclGraph;
+    private final SecretChangeBus changeBus;
+    private final ClientSecretAccessConfig clientSecretAccessConfig;
 
     @Inject public AclDAOFactory(DSLContext jooq, @Readonly DSLContext readonlyJooq,
         ClientDAOFactory clientDAOFactory, GroupDAOFactory groupDAOFactory,
         SecretContentDAOFactory secretContentDAOFactory,
         SecretSeriesDAOFactory secretSeriesDAOFactory, ClientMapper clientMapper,
-        GroupMapper groupMapper, SecretSeriesMapper secretSeriesMapper) {
+        GroupMapper groupMapper, SecretSeriesMapper secretSeriesMapper,
+        SecretSeriesAndContentMapper secretSeriesAndContentMapper, AclGraph aclGraph,
+        SecretChangeBus changeBus, ClientSecretAccessConfig clientSecretAccessConfig) {
       this.jooq = jooq;
       this.readonlyJooq = readonlyJooq;
       this.clientDAOFactory = clientDAOFactory;
@@ -426,22 +1019,29 @@ public class AclDAO {
       this.clientMapper = clientMapper;
       this.groupMapper = groupMapper;
       this.secretSeriesMapper = secretSeriesMapper;
+      this.secretSeriesAndContentMapper = secretSeriesAndContentMapper;
+      this.aclGraph = aclGraph;
+      this.changeBus = changeBus;
+      this.clientSecretAccessConfig = clientSecretAccessConfig;
     }
 
     @Override public AclDAO readwrite() {
       return new AclDAO(jooq, clientDAOFactory, groupDAOFactory, secretContentDAOFactory,
-          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper);
+          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper,
+          secretSeriesAndContentMapper, aclGraph, changeBus, clientSecretAccessConfig.isEnabled());
     }
 
     @Override public AclDAO readonly() {
       return new AclDAO(readonlyJooq, clientDAOFactory, groupDAOFactory, secretContentDAOFactory,
-          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper);
+          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper,
+          secretSeriesAndContentMapper, aclGraph, changeBus, clientSecretAccessConfig.isEnabled());
     }
 
     @Override public AclDAO using(Configuration configuration) {
       DSLContext dslContext = DSL.using(checkNotNull(configuration));
       return new AclDAO(dslContext, clientDAOFactory, groupDAOFactory, secretContentDAOFactory,
-          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper);
+          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper,
+          secretSeriesAndContentMapper, aclGraph, changeBus, clientSecretAccessConfig.isEnabled());
     }
   }
 }
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import keywhiz.service.config.AclGraphConfig;
+import org.jooq.DSLContext;
+import org.jooq.Record2;
+import org.jooq.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static keywhiz.jooq.tables.Accessgrants.ACCESSGRANTS;
+import static keywhiz.jooq.tables.Memberships.MEMBERSHIPS;
+
+/**
+ * In-memory index of client→groups and group→secrets adjacency, used to answer "may client X read
+ * secret Y" without joining memberships and accessgrants in the database.
+ *
+ * The graph is loaded at startup and fully reloaded every refresh interval, which picks up changes
+ * made through other servers. Changes made through this server's DAOs are applied once committed,
+ * including the edges dropped by deleting a group, client or secret. Revocations are additionally
+ * applied as soon as they are written, so a revoked client is denied even before the commit.
+ * Callers must check {@link #isFresh()} before trusting an answer; once the last successful load is
+ * older than the configured maximum staleness, the database is authoritative.
+ */
+public class AclGraph implements Managed {
+  private static final Logger logger = LoggerFactory.getLogger(AclGraph.class);
+  private static final long[] EMPTY = new long[0];
+
+  private final DSLContext dslContext;
+  private final AclGraphConfig config;
+  private final Clock clock;
+
+  // Adjacency lists are sorted long[] arrays, replaced copy-on-write when edges change.
+  private volatile Map<Long, long[]> clientGroups = new ConcurrentHashMap<>();
+  private volatile Map<Long, long[]> groupSecrets = new ConcurrentHashMap<>();
+  private volatile long loadedAtMillis = -1;
+
+  // Edge changes applied while a reload is in progress, replayed onto the reloaded graph.
+  private final List<Runnable> pendingChanges = new ArrayList<>();
+  private boolean reloading = false;
+
+  private ScheduledExecutorService executor;
+
+  public AclGraph(DSLContext dslContext, AclGraphConfig config, Clock clock) {
+    this.dslContext = dslContext;
+    this.config = config;
+    this.clock = clock;
+  }
+
+  @Override public void start() throws Exception {
+    reload();
+    long intervalMillis = config.getRefreshInterval().toMilliseconds();
+    executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("acl-graph-%d").setDaemon(true).build());
+    executor.scheduleWithFixedDelay(this::tryReload, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override public void stop() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /** @return true if the graph is enabled and recent enough to answer authorization checks. */
+  public boolean isFresh() {
+    if (!config.isEnabled() || loadedAtMillis < 0) {
+      return false;
+    }
+    return clock.millis() - loadedAtMillis <= config.getMaxStaleness().toMilliseconds();
+  }
+
+  /**
+   * @param clientId id of the client requesting access
+   * @param secretId id of the secret series
+   * @return true if the client is a member of a group granted access to the secret
+   */
+  public boolean canRead(long clientId, long secretId) {
+    Map<Long, long[]> secretsByGroup = groupSecrets;
+    for (long groupId : clientGroups.getOrDefault(clientId, EMPTY)) {
+      if (Arrays.binarySearch(secretsByGroup.getOrDefault(groupId, EMPTY), secretId) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Loads the whole graph from the database, replacing the current one. */
+  public void reload() {
+    synchronized (this) {
+      reloading = true;
+    }
+
+    Map<Long, long[]> newClientGroups;
+    Map<Long, long[]> newGroupSecrets;
+    try {
+      newClientGroups = adjacency(dslContext
+          .select(MEMBERSHIPS.CLIENTID, MEMBERSHIPS.GROUPID)
+          .from(MEMBERSHIPS)
+          .fetch());
+      newGroupSecrets = adjacency(dslContext
+          .select(ACCESSGRANTS.GROUPID, ACCESSGRANTS.SECRETID)
+          .from(ACCESSGRANTS)
+          .fetch());
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        reloading = false;
+        pendingChanges.clear();
+      }
+      throw e;
+    }
+
+    synchronized (this) {
+      clientGroups = newClientGroups;
+      groupSecrets = newGroupSecrets;
+      pendingChanges.forEach(Runnable::run);
+      pendingChanges.clear();
+      reloading = false;
+      loadedAtMillis = clock.millis();
+    }
+    logger.debug("Loaded ACL graph: {} clients, {} groups", newClientGroups.size(),
+        newGroupSecrets.size());
+  }
+
+  void allowAccess(long secretId, long groupId) {
+    change(() -> groupSecrets.compute(groupId, (k, v) -> with(v, secretId)));
+  }
+
+  void revokeAccess(long secretId, long groupId) {
+    change(() -> groupSecrets.computeIfPresent(groupId, (k, v) -> without(v, secretId)));
+  }
+
+  void enrollClient(long clientId, long groupId) {
+    change(() -> clientGroups.compute(clientId, (k, v) -> with(v, groupId)));
+  }
+
+  void evictClient(long clientId, long groupId) {
+    change(() -> clientGroups.computeIfPresent(clientId, (k, v) -> without(v, groupId)));
+  }
+
+  /** Drops a deleted group and every edge to or from it. */
+  void removeGroup(long groupId) {
+    change(() -> {
+      groupSecrets.remove(groupId);
+      clientGroups.keySet().forEach(clientId ->
+          clientGroups.computeIfPresent(clientId, (k, v) -> without(v, groupId)));
+    });
+  }
+
+  /** Drops a deleted client and its memberships. */
+  void removeClient(long clientId) {
+    change(() -> clientGroups.remove(clientId));
+  }
+
+  /** Drops the grants of a deleted secret series. */
+  void removeSecret(long secretId) {
+    change(() -> groupSecrets.keySet().forEach(groupId ->
+        groupSecrets.computeIfPresent(groupId, (k, v) -> without(v, secretId))));
+  }
+
+  @VisibleForTesting long[] groupsOf(long clientId) {
+    return clientGroups.getOrDefault(clientId, EMPTY);
+  }
+
+  private void tryReload() {
+    try {
+      reload();
+    } catch (DataAccessException e) {
+      logger.warn("Failed reloading ACL graph, last loaded at {}", loadedAtMillis, e);
+    }
+  }
+
+  private synchronized void change(Runnable change) {
+    change.run();
+    if (reloading) {
+      pendingChanges.add(change);
+    }
+  }
+
+  private static Map<Long, long[]> adjacency(Iterable<Record2<Long, Long>> edges) {
+    Map<Long, List<Long>> lists = new HashMap<>();
+    edges.forEach(edge -> lists.computeIfAbsent(edge.value1(), k -> new ArrayList<>())
+        .add(edge.value2()));
+
+    Map<Long, long[]> adjacency = new ConcurrentHashMap<>(lists.size());
+    lists.forEach((from, to) ->
+        adjacency.put(from, LongStream.of(Longs.toArray(to)).sorted().distinct().toArray()));
+    return adjacency;
+  }
+
+  private static long[] with(long[] array, long value) {
+    if (array == null) {
+      return new long[] {value};
+    }
+    int index = Arrays.binarySearch(array, value);
+    if (index >= 0) {
+      return array;
+    }
+    int insertAt = -index - 1;
+    long[] result = new long[array.length + 1];
+    System.arraycopy(array, 0, result, 0, insertAt);
+    result[insertAt] = value;
+    System.arraycopy(array, insertAt, result, insertAt + 1, array.length - insertAt);
+    return result;
+  }
+
+  private static long[] without(long[] array, long value) {
+    int index = Arrays.binarySearch(array, value);
+    if (index < 0) {
+      return array;
+    }
+    if (array.length == 1) {
+      return null; // Removes the mapping.
+    }
+    long[] result = new long[array.length - 1];
+    System.arraycopy(array, 0, result, 0, index);
+    System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+    return result;
+  }
+}
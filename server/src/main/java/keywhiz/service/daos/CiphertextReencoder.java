@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import keywhiz.KeywhizConfig;
+import keywhiz.service.config.CiphertextConfig;
+import keywhiz.service.crypto.ContentCryptographer;
+import keywhiz.service.daos.SecretContentDAO.SecretContentDAOFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background job which rewrites existing secret content into the configured ciphertext format.
+ *
+ * Content is re-serialized without being decrypted. Rows are visited once in id order; a row
+ * changed concurrently is left alone, since anything written now is already in the current format.
+ */
+public class CiphertextReencoder implements Managed {
+  private static final Logger logger = LoggerFactory.getLogger(CiphertextReencoder.class);
+
+  private final SecretContentDAO secretContentDAO;
+  private final ContentCryptographer cryptographer;
+  private final CiphertextConfig config;
+
+  private ScheduledExecutorService executor;
+  private long lastId = 0;
+  private long reencoded = 0;
+
+  @Inject public CiphertextReencoder(SecretContentDAOFactory secretContentDAOFactory,
+      ContentCryptographer cryptographer, KeywhizConfig config) {
+    this(secretContentDAOFactory.readwrite(), cryptographer, config.getCiphertextConfig());
+  }
+
+  @VisibleForTesting CiphertextReencoder(SecretContentDAO secretContentDAO,
+      ContentCryptographer cryptographer, CiphertextConfig config) {
+    this.secretContentDAO = secretContentDAO;
+    this.cryptographer = cryptographer;
+    this.config = config;
+  }
+
+  @Override public void start() throws Exception {
+    long intervalMillis = config.getReencodeInterval().toMilliseconds();
+    executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("ciphertext-reencoder-%d")
+        .setDaemon(true)
+        .build());
+    executor.scheduleWithFixedDelay(this::tryRunBatch, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override public void stop() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Re-encodes the next batch of rows.
+   *
+   * @return false once all rows have been visited
+   */
+  @VisibleForTesting boolean runBatch() {
+    Map<Long, String> contents =
+        secretContentDAO.getEncryptedContentsAfter(lastId, config.getReencodeBatchSize());
+    if (contents.isEmpty()) {
+      return false;
+    }
+
+    for (Map.Entry<Long, String> entry : contents.entrySet()) {
+      String content = entry.getValue();
+      if (!cryptographer.isCurrentFormat(content)) {
+        String replacement = cryptographer.reencode(content);
+        if (secretContentDAO.replaceEncryptedContent(entry.getKey(), content, replacement)) {
+          reencoded++;
+        }
+      }
+      lastId = entry.getKey();
+    }
+    return true;
+  }
+
+  private void tryRunBatch() {
+    try {
+      if (!runBatch()) {
+        logger.info("Finished re-encoding secret content, {} rows rewritten", reencoded);
+        executor.shutdown();
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Failed re-encoding secret content after id {}", lastId, e);
+    }
+  }
+}
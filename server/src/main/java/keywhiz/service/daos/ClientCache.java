@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import keywhiz.api.model.Client;
+import keywhiz.service.config.ClientCacheConfig;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Bounded, short-lived cache of {@link Client}s keyed by certificate subject, so authenticating a
+ * request neither parses the subject nor queries the database on a hit.
+ *
+ * Cached clients carry their enabled and automationAllowed flags as loaded; callers check them on
+ * every request. Subjects resolving to no client are cached as well, until {@link #put} replaces
+ * them once the client is registered. {@link ClientDAO} invalidates entries when it deletes a
+ * client; other changes are picked up when entries expire.
+ */
+public class ClientCache {
+  private final Cache<String, Optional<Client>> cache;
+  private final Meter hits;
+  private final Meter misses;
+
+  public ClientCache(ClientCacheConfig config, MetricRegistry metrics) {
+    this.hits = metrics.meter(name(ClientCache.class, "hits"));
+    this.misses = metrics.meter(name(ClientCache.class, "misses"));
+    if (config.getMaximumSize() == 0) {
+      this.cache = null;
+    } else {
+      this.cache = CacheBuilder.newBuilder()
+          .maximumSize(config.getMaximumSize())
+          .expireAfterWrite(config.getExpireAfterWrite().toMilliseconds(), TimeUnit.MILLISECONDS)
+          .build();
+    }
+  }
+
+  /** @return a cache which always loads, for callers without configuration. */
+  public static ClientCache disabled() {
+    ClientCacheConfig config = new ClientCacheConfig();
+    config.setMaximumSize(0);
+    return new ClientCache(config, new MetricRegistry());
+  }
+
+  /**
+   * @param subject certificate subject presented by the client
+   * @param loader resolves a subject to a client on a cache miss
+   * @return client for the subject, or empty if the loader found none
+   */
+  public Optional<Client> get(String subject, Function<String, Optional<Client>> loader) {
+    if (cache != null) {
+      Optional<Client> client = cache.getIfPresent(subject);
+      if (client != null) {
+        hits.mark();
+        return client;
+      }
+    }
+
+    misses.mark();
+    Optional<Client> client = loader.apply(subject);
+    if (cache != null) {
+      cache.put(subject, client);
+    }
+    return client;
+  }
+
+  /**
+   * @param subject certificate subject presented by the client
+   * @param client client the subject now resolves to
+   */
+  public void put(String subject, Client client) {
+    if (cache != null) {
+      cache.put(subject, Optional.of(client));
+    }
+  }
+
+  /**
+   * Drops every cached subject resolving to the named client.
+   *
+   * @param clientName name of the client which changed
+   */
+  public void invalidate(String clientName) {
+    if (cache != null) {
+      cache.asMap().values()
+          .removeIf(client -> client.isPresent() && client.get().getName().equals(clientName));
+    }
+  }
+
+  /** Drops all cached clients. */
+  public void invalidateAll() {
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  @VisibleForTesting long size() {
+    return (cache == null) ? 0 : cache.size();
+  }
+}
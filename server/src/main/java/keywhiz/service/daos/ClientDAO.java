@@ -16,16 +16,23 @@
 
 package keywhiz.service.daos;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import java.time.OffsetDateTime;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import keywhiz.api.model.Client;
 import keywhiz.jooq.tables.records.ClientsRecord;
 import keywhiz.service.config.Readonly;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep8;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -35,10 +42,17 @@ import static keywhiz.jooq.tables.Memberships.MEMBERSHIPS;
 public class ClientDAO {
   private final DSLContext dslContext;
   private final ClientMapper clientMapper;
+  private final ClientCache clientCache;
+  private final AclGraph aclGraph;
+  private final SecretChangeBus changeBus;
 
-  private ClientDAO(DSLContext dslContext, ClientMapper clientMapper) {
+  private ClientDAO(DSLContext dslContext, ClientMapper clientMapper, ClientCache clientCache,
+      AclGraph aclGraph, SecretChangeBus changeBus) {
     this.dslContext = dslContext;
     this.clientMapper = clientMapper;
+    this.clientCache = clientCache;
+    this.aclGraph = aclGraph;
+    this.changeBus = changeBus;
   }
 
   public long createClient(String name, String user, String description) {
@@ -59,8 +73,61 @@ public class ClientDAO {
     return r.getId();
   }
 
+  /**
+   * Creates the named clients which do not exist yet, using one multi-row insert when possible.
+   *
+   * @param names names of clients to create
+   * @param user creator of the clients
+   * @param description description for every created client
+   * @return names of the clients this call created
+   */
+  public ImmutableSet<String> createClientsIfAbsent(Set<String> names, String user,
+      String description) {
+    if (names.isEmpty()) {
+      return ImmutableSet.of();
+    }
+
+    Set<String> absent = new HashSet<>(names);
+    absent.removeAll(dslContext
+        .select(CLIENTS.NAME)
+        .from(CLIENTS)
+        .where(CLIENTS.NAME.in(names))
+        .fetch(CLIENTS.NAME));
+    if (absent.isEmpty()) {
+      return ImmutableSet.of();
+    }
+
+    long now = OffsetDateTime.now().toEpochSecond();
+    InsertValuesStep8<ClientsRecord, String, String, Long, String, Long, String, Boolean, Boolean>
+        insert = dslContext.insertInto(CLIENTS, CLIENTS.NAME, CLIENTS.CREATEDBY,
+        CLIENTS.CREATEDAT, CLIENTS.UPDATEDBY, CLIENTS.UPDATEDAT, CLIENTS.DESCRIPTION,
+        CLIENTS.ENABLED, CLIENTS.AUTOMATIONALLOWED);
+    for (String name : absent) {
+      insert = insert.values(name, user, now, user, now, description, true, false);
+    }
+
+    try {
+      insert.execute();
+      return ImmutableSet.copyOf(absent);
+    } catch (DataAccessException e) {
+      // Another server created some of the clients concurrently; insert the rest one at a time.
+      ImmutableSet.Builder<String> created = ImmutableSet.builder();
+      for (String name : absent) {
+        try {
+          createClient(name, user, description);
+          created.add(name);
+        } catch (DataAccessException duplicate) {
+          // Already created elsewhere.
+        }
+      }
+      return created.build();
+    }
+  }
+
   public void deleteClient(Client client) {
     dslContext.transaction(configuration -> {
+      ClientSecretAccess.lockClients(configuration, ImmutableList.of(client.getId()),
+          ImmutableList.of());
       DSL.using(configuration)
           .delete(CLIENTS)
           .where(CLIENTS.ID.eq(client.getId()))
@@ -70,7 +137,11 @@ public class ClientDAO {
           .delete(MEMBERSHIPS)
           .where(MEMBERSHIPS.CLIENTID.eq(client.getId()))
           .execute();
+      ClientSecretAccess.removeClient(configuration, client.getId());
     });
+    clientCache.invalidate(client.getName());
+    aclGraph.removeClient(client.getId());
+    changeBus.publish(ImmutableList.of(client.getId()));
   }
 
   public Optional<Client> getClient(String name) {
@@ -83,6 +154,19 @@ public class ClientDAO {
     return Optional.ofNullable(r).map(clientMapper::map);
   }
 
+  /**
+   * @param names names of the clients to get
+   * @return the named clients which exist
+   */
+  public ImmutableSet<Client> getClients(Set<String> names) {
+    List<Client> r = dslContext
+        .selectFrom(CLIENTS)
+        .where(CLIENTS.NAME.in(names))
+        .fetch()
+        .map(clientMapper);
+    return ImmutableSet.copyOf(r);
+  }
+
   public ImmutableSet<Client> getClients() {
     List<Client> r = dslContext
         .selectFrom(CLIENTS)
@@ -91,29 +175,78 @@ public class ClientDAO {
     return ImmutableSet.copyOf(r);
   }
 
+  /** @return names of all clients, read from the name index alone. */
+  public ImmutableSet<String> getClientNames() {
+    return ImmutableSet.copyOf(dslContext.select(CLIENTS.NAME).from(CLIENTS).fetch(CLIENTS.NAME));
+  }
+
+  /**
+   * @param afterId id of the last client on the previous page, 0 for the first page
+   * @param limit most clients on the page
+   * @return page of clients ordered by id
+   */
+  public Page<Client> getClients(long afterId, int limit) {
+    List<Client> r = dslContext
+        .selectFrom(CLIENTS)
+        .where(CLIENTS.ID.gt(afterId))
+        .orderBy(CLIENTS.ID)
+        .limit(limit + 1)
+        .fetch()
+        .map(clientMapper);
+    return Page.fromRows(r, limit, client -> Long.toString(client.getId()));
+  }
+
+  /**
+   * @param afterName name of the last client on the previous page, null for the first page
+   * @param limit most names on the page
+   * @return page of client names in name order
+   */
+  public Page<String> getClientNames(@Nullable String afterName, int limit) {
+    List<String> r = dslContext
+        .select(CLIENTS.NAME)
+        .from(CLIENTS)
+        .where(afterName == null ? DSL.trueCondition() : CLIENTS.NAME.gt(afterName))
+        .orderBy(CLIENTS.NAME)
+        .limit(limit + 1)
+        .fetch(CLIENTS.NAME);
+    return Page.fromRows(r, limit, name -> name);
+  }
+
+  /** Like {@link #getClients()}, handing each client to consumer as it is read. */
+  public void streamClients(Consumer<Client> consumer) {
+    Cursors.forEach(dslContext, jooq -> jooq.selectFrom(CLIENTS), clientMapper, consumer);
+  }
+
   public static class ClientDAOFactory implements DAOFactory<ClientDAO> {
     private final DSLContext jooq;
     private final DSLContext readonlyJooq;
     private final ClientMapper clientMapper;
+    private final ClientCache clientCache;
+    private final AclGraph aclGraph;
+    private final SecretChangeBus changeBus;
 
     @Inject public ClientDAOFactory(DSLContext jooq, @Readonly DSLContext readonlyJooq,
-        ClientMapper clientMapper) {
+        ClientMapper clientMapper, ClientCache clientCache, AclGraph aclGraph,
+        SecretChangeBus changeBus) {
       this.jooq = jooq;
       this.readonlyJooq = readonlyJooq;
       this.clientMapper = clientMapper;
+      this.clientCache = clientCache;
+      this.aclGraph = aclGraph;
+      this.changeBus = changeBus;
     }
 
     @Override public ClientDAO readwrite() {
-      return new ClientDAO(jooq, clientMapper);
+      return new ClientDAO(jooq, clientMapper, clientCache, aclGraph, changeBus);
     }
 
     @Override public ClientDAO readonly() {
-      return new ClientDAO(readonlyJooq, clientMapper);
+      return new ClientDAO(readonlyJooq, clientMapper, clientCache, aclGraph, changeBus);
     }
 
     @Override public ClientDAO using(Configuration configuration) {
       DSLContext dslContext = DSL.using(checkNotNull(configuration));
-      return new ClientDAO(dslContext, clientMapper);
+      return new ClientDAO(dslContext, clientMapper, clientCache, aclGraph, changeBus);
     }
   }
 }
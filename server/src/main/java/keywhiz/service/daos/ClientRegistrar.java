@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import keywhiz.api.model.Client;
+import keywhiz.service.config.ClientRegistrationConfig;
+import org.jooq.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Registers clients first seen with a valid certificate but without a database entry.
+ *
+ * Concurrent first sightings of a name are coalesced into one pending registration, and pending
+ * registrations are inserted in batches every flush interval. A request from a new client waits
+ * for the batch holding its registration and is then served the stored client, so every client
+ * is identified by its real id. If a batch fails, its registrations fail with it and are queued
+ * again the next time the clients are seen.
+ */
+public class ClientRegistrar implements Managed {
+  private static final Logger logger = LoggerFactory.getLogger(ClientRegistrar.class);
+
+  static final String CREATOR = "automatic";
+  static final String DESCRIPTION =
+      "Client created automatically from valid certificate authentication";
+
+  private final ClientDAO clientDAO;
+  private final ClientRegistrationConfig config;
+
+  // Names pending registration, mapped to the stored client once registered.
+  private final Map<String, CompletableFuture<Client>> pending = new ConcurrentHashMap<>();
+
+  private ScheduledExecutorService executor;
+
+  public ClientRegistrar(ClientDAO clientDAO, ClientRegistrationConfig config) {
+    this.clientDAO = clientDAO;
+    this.config = config;
+  }
+
+  @Override public void start() throws Exception {
+    long intervalMillis = config.getFlushInterval().toMilliseconds();
+    executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("client-registrar-%d").setDaemon(true).build());
+    executor.scheduleWithFixedDelay(this::flushAll, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override public void stop() throws Exception {
+    if (executor != null) {
+      executor.shutdown();
+      executor.awaitTermination(config.getFlushInterval().toMilliseconds(), TimeUnit.MILLISECONDS);
+    }
+    flushAll();
+  }
+
+  /**
+   * Registers a client with the next batch and waits for it, at most the configured timeout.
+   *
+   * @param name name of the client to register
+   * @return the stored client
+   * @throws DataAccessException if the registration failed or timed out
+   */
+  public Client register(String name) {
+    try {
+      return queue(name).get(config.getTimeout().toMilliseconds(), TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof DataAccessException) {
+        throw (DataAccessException) e.getCause();
+      }
+      throw new DataAccessException(format("Failed registering client %s", name), e.getCause());
+    } catch (TimeoutException e) {
+      throw new DataAccessException(format("Timed out registering client %s", name), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DataAccessException(format("Interrupted registering client %s", name), e);
+    }
+  }
+
+  /**
+   * Queues registration of a client, unless one is already pending for the name.
+   *
+   * @param name name of the client to register
+   * @return future completed with the stored client once its batch is committed
+   */
+  @VisibleForTesting CompletableFuture<Client> queue(String name) {
+    return pending.computeIfAbsent(name, n -> new CompletableFuture<>());
+  }
+
+  /**
+   * Inserts one batch of pending registrations.
+   *
+   * @return number of registrations taken off the pending set
+   */
+  @VisibleForTesting int flush() {
+    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    Iterator<String> names = pending.keySet().iterator();
+    for (int i = 0; i < config.getBatchSize() && names.hasNext(); i++) {
+      builder.add(names.next());
+    }
+    ImmutableSet<String> batch = builder.build();
+    if (batch.isEmpty()) {
+      return 0;
+    }
+
+    Map<String, Client> stored;
+    try {
+      ImmutableSet<String> created = clientDAO.createClientsIfAbsent(batch, CREATOR, DESCRIPTION);
+      logger.info("Registered {} new clients", created.size());
+      stored = clientDAO.getClients(batch).stream()
+          .collect(toMap(Client::getName, client -> client));
+    } catch (DataAccessException e) {
+      logger.warn("Failed registering {} clients", batch.size(), e);
+      batch.forEach(name -> pending.remove(name).completeExceptionally(e));
+      return batch.size();
+    }
+
+    for (String name : batch) {
+      CompletableFuture<Client> registration = pending.remove(name);
+      Client client = stored.get(name);
+      if (client != null) {
+        registration.complete(client);
+      } else {
+        // Deleted again before it could be read back.
+        registration.completeExceptionally(
+            new DataAccessException(format("Client %s vanished after registration", name)));
+      }
+    }
+    return batch.size();
+  }
+
+  private void flushAll() {
+    try {
+      while (flush() > 0) {
+        // Keep going until everything queued so far is written.
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Failed flushing client registrations", e);
+    }
+  }
+}
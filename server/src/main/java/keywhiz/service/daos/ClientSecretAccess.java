@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Collection;
+import java.util.List;
+import org.jooq.Condition;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.Record1;
+import org.jooq.Select;
+import org.jooq.impl.DSL;
+
+import static keywhiz.jooq.tables.Accessgrants.ACCESSGRANTS;
+import static keywhiz.jooq.tables.ClientSecretAccess.CLIENT_SECRET_ACCESS;
+import static keywhiz.jooq.tables.Clients.CLIENTS;
+import static keywhiz.jooq.tables.Groups.GROUPS;
+import static keywhiz.jooq.tables.Memberships.MEMBERSHIPS;
+import static keywhiz.jooq.tables.Secrets.SECRETS;
+
+/**
+ * Maintains client_secret_access, the materialized memberships ⋈ accessgrants join: one row per
+ * client and secret series the client may read, with the number of groups granting that access.
+ *
+ * Writers of memberships and accessgrants refresh the affected client or secret in the same
+ * transaction, recomputing its rows from the source tables. Before changing any edge they lock the
+ * client or secret row and every group row linking it to the other side ({@link #lockClients} and
+ * {@link #lockSecret}). Any two transactions which could both write the row of a client and secret
+ * then share the lock of a group connecting them, so the second one recomputes from the first one's
+ * committed edges. Concurrent writers may deadlock, in which case the database aborts one of them
+ * rather than leaving a stale row. {@link #rebuild(DSLContext)} recomputes the whole table after
+ * manual edits of the source tables.
+ */
+public final class ClientSecretAccess {
+  private ClientSecretAccess() {}
+
+  /**
+   * Locks a secret series, the groups granting it and the groups about to be granted or revoked.
+   * Must precede any change to the secret's grants in the same transaction.
+   */
+  static void lockSecret(Configuration configuration, long secretId, Collection<Long> groupIds) {
+    DSLContext jooq = DSL.using(configuration);
+    jooq.select(SECRETS.ID)
+        .from(SECRETS)
+        .where(SECRETS.ID.eq(secretId))
+        .forUpdate()
+        .fetch();
+    lockGroups(jooq, DSL.select(ACCESSGRANTS.GROUPID)
+        .from(ACCESSGRANTS)
+        .where(ACCESSGRANTS.SECRETID.eq(secretId)), groupIds);
+  }
+
+  /**
+   * Locks clients, the groups they are members of and the groups they are about to be enrolled in
+   * or evicted from. Must precede any change to the clients' memberships in the same transaction.
+   */
+  static void lockClients(Configuration configuration, Collection<Long> clientIds,
+      Collection<Long> groupIds) {
+    DSLContext jooq = DSL.using(configuration);
+    jooq.select(CLIENTS.ID)
+        .from(CLIENTS)
+        .where(CLIENTS.ID.in(clientIds))
+        .orderBy(CLIENTS.ID)
+        .forUpdate()
+        .fetch();
+    lockGroups(jooq, DSL.select(MEMBERSHIPS.GROUPID)
+        .from(MEMBERSHIPS)
+        .where(MEMBERSHIPS.CLIENTID.in(clientIds)), groupIds);
+  }
+
+  /**
+   * Locks a group, then its members as {@link #lockClients} does. Must precede deleting the group.
+   *
+   * @return ids of the group's members
+   */
+  static List<Long> lockMembers(Configuration configuration, long groupId) {
+    DSLContext jooq = DSL.using(configuration);
+    jooq.select(GROUPS.ID)
+        .from(GROUPS)
+        .where(GROUPS.ID.eq(groupId))
+        .forUpdate()
+        .fetch();
+    List<Long> members = jooq.select(MEMBERSHIPS.CLIENTID)
+        .from(MEMBERSHIPS)
+        .where(MEMBERSHIPS.GROUPID.eq(groupId))
+        .fetch(MEMBERSHIPS.CLIENTID);
+    lockClients(configuration, members, ImmutableList.of(groupId));
+    return members;
+  }
+
+  /** @return ids of the clients which may read any of some secret series. */
+  static List<Long> readers(Configuration configuration, Collection<Long> secretIds) {
+    return DSL.using(configuration)
+        .selectDistinct(MEMBERSHIPS.CLIENTID)
+        .from(MEMBERSHIPS)
+        .join(ACCESSGRANTS).on(ACCESSGRANTS.GROUPID.eq(MEMBERSHIPS.GROUPID))
+        .where(ACCESSGRANTS.SECRETID.in(secretIds))
+        .fetch(MEMBERSHIPS.CLIENTID);
+  }
+
+  /** @return ids of the clients which are members of any of some groups. */
+  static List<Long> members(Configuration configuration, Collection<Long> groupIds) {
+    return DSL.using(configuration)
+        .selectDistinct(MEMBERSHIPS.CLIENTID)
+        .from(MEMBERSHIPS)
+        .where(MEMBERSHIPS.GROUPID.in(groupIds))
+        .fetch(MEMBERSHIPS.CLIENTID);
+  }
+
+  /** Recomputes the clients which may read a secret series. */
+  static void refreshSecret(Configuration configuration, long secretId) {
+    DSLContext jooq = DSL.using(configuration);
+    jooq.delete(CLIENT_SECRET_ACCESS)
+        .where(CLIENT_SECRET_ACCESS.SECRETID.eq(secretId))
+        .execute();
+    insertReachable(jooq, ACCESSGRANTS.SECRETID.eq(secretId));
+  }
+
+  /** Recomputes the secret series a client may read. */
+  static void refreshClient(Configuration configuration, long clientId) {
+    refreshClients(configuration, ImmutableList.of(clientId));
+  }
+
+  /** Recomputes the secret series each of several clients may read. */
+  static void refreshClients(Configuration configuration, Collection<Long> clientIds) {
+    if (clientIds.isEmpty()) {
+      return;
+    }
+    DSLContext jooq = DSL.using(configuration);
+    jooq.delete(CLIENT_SECRET_ACCESS)
+        .where(CLIENT_SECRET_ACCESS.CLIENTID.in(clientIds))
+        .execute();
+    insertReachable(jooq, MEMBERSHIPS.CLIENTID.in(clientIds));
+  }
+
+  /** Drops all rows of a deleted client. */
+  static void removeClient(Configuration configuration, long clientId) {
+    DSL.using(configuration)
+        .delete(CLIENT_SECRET_ACCESS)
+        .where(CLIENT_SECRET_ACCESS.CLIENTID.eq(clientId))
+        .execute();
+  }
+
+  /** Drops all rows of a deleted secret series. */
+  static void removeSecret(Configuration configuration, long secretId) {
+    DSL.using(configuration)
+        .delete(CLIENT_SECRET_ACCESS)
+        .where(CLIENT_SECRET_ACCESS.SECRETID.eq(secretId))
+        .execute();
+  }
+
+  /**
+   * Recomputes the whole table from memberships and accessgrants in one transaction.
+   *
+   * @param dslContext read/write jOOQ context
+   * @return number of client and secret pairs with access
+   */
+  public static int rebuild(DSLContext dslContext) {
+    return dslContext.transactionResult(configuration -> {
+      DSLContext jooq = DSL.using(configuration);
+      jooq.delete(CLIENT_SECRET_ACCESS).execute();
+      return insertReachable(jooq, DSL.trueCondition());
+    });
+  }
+
+  /** Locks linked and explicitly named groups in id order, so lockers don't deadlock on groups. */
+  private static void lockGroups(DSLContext jooq, Select<Record1<Long>> linkedGroupIds,
+      Collection<Long> groupIds) {
+    jooq.select(GROUPS.ID)
+        .from(GROUPS)
+        .where(GROUPS.ID.in(linkedGroupIds).or(GROUPS.ID.in(groupIds)))
+        .orderBy(GROUPS.ID)
+        .forUpdate()
+        .fetch();
+  }
+
+  private static int insertReachable(DSLContext jooq, Condition condition) {
+    return jooq
+        .insertInto(CLIENT_SECRET_ACCESS, CLIENT_SECRET_ACCESS.CLIENTID,
+            CLIENT_SECRET_ACCESS.SECRETID, CLIENT_SECRET_ACCESS.REFCOUNT)
+        .select(DSL.select(MEMBERSHIPS.CLIENTID, ACCESSGRANTS.SECRETID,
+                DSL.count().cast(Long.class))
+            .from(MEMBERSHIPS)
+            .join(ACCESSGRANTS).on(ACCESSGRANTS.GROUPID.eq(MEMBERSHIPS.GROUPID))
+            .where(condition)
+            .groupBy(MEMBERSHIPS.CLIENTID, ACCESSGRANTS.SECRETID))
+        .execute();
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.RecordMapper;
+import org.jooq.ResultQuery;
+import org.jooq.impl.DSL;
+
+/**
+ * Runs queries through a jOOQ {@link Cursor}, handing rows to a consumer as they arrive instead of
+ * materializing the whole result.
+ *
+ * The cursor is read inside a transaction, without which PostgreSQL ignores the fetch size and
+ * buffers the result anyway. MySQL streams only with useCursorFetch=true on the connection URL.
+ * The transaction, and its pooled connection, stay open until the consumer has taken every row, so
+ * a consumer writing to a slow client holds them for as long as that client takes.
+ */
+final class Cursors {
+  static final int FETCH_SIZE = 1000;
+
+  private Cursors() {}
+
+  /**
+   * @param dslContext context to run the query in
+   * @param query builds the query from the transaction's context
+   * @param mapper maps each row
+   * @param consumer receives each mapped row, in result order
+   */
+  static <R extends Record, T> void forEach(DSLContext dslContext,
+      Function<DSLContext, ResultQuery<R>> query, RecordMapper<? super R, T> mapper,
+      Consumer<? super T> consumer) {
+    dslContext.transaction(configuration ->
+        forEach(query.apply(DSL.using(configuration)), mapper, consumer));
+  }
+
+  /**
+   * Like {@link #forEach(DSLContext, Function, RecordMapper, Consumer)}, but reads the cursor
+   * outside any transaction, as jOOQ transactions don't play well with MySQL readonly connections
+   * (see https://github.com/jOOQ/jOOQ/issues/3955). Rows are still mapped one at a time instead of
+   * through a materialized jOOQ Result, though PostgreSQL buffers them in the driver.
+   *
+   * @param query query to run
+   * @param mapper maps each row
+   * @param consumer receives each mapped row, in result order
+   */
+  static <R extends Record, T> void forEach(ResultQuery<R> query,
+      RecordMapper<? super R, T> mapper, Consumer<? super T> consumer) {
+    Cursor<R> cursor = query.fetchSize(FETCH_SIZE).fetchLazy();
+    try {
+      for (R record : cursor) {
+        consumer.accept(mapper.map(record));
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+}
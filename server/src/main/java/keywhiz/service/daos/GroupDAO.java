@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableSet;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import javax.inject.Inject;
 import keywhiz.api.model.Group;
 import keywhiz.jooq.tables.records.GroupsRecord;
@@ -36,10 +37,15 @@ import static keywhiz.jooq.tables.Memberships.MEMBERSHIPS;
 public class GroupDAO {
   private final DSLContext dslContext;
   private final GroupMapper groupMapper;
+  private final AclGraph aclGraph;
+  private final SecretChangeBus changeBus;
 
-  private GroupDAO(DSLContext dslContext, GroupMapper groupMapper) {
+  private GroupDAO(DSLContext dslContext, GroupMapper groupMapper, AclGraph aclGraph,
+      SecretChangeBus changeBus) {
     this.dslContext = dslContext;
     this.groupMapper = groupMapper;
+    this.aclGraph = aclGraph;
+    this.changeBus = changeBus;
   }
 
   public long createGroup(String name, String creator, String description) {
@@ -59,7 +65,8 @@ public class GroupDAO {
   }
 
   public void deleteGroup(Group group) {
-    dslContext.transaction(configuration -> {
+    List<Long> members = dslContext.transactionResult(configuration -> {
+      List<Long> clientIds = ClientSecretAccess.lockMembers(configuration, group.getId());
       DSL.using(configuration)
               .delete(GROUPS)
               .where(GROUPS.ID.eq(group.getId()))
@@ -72,7 +79,11 @@ public class GroupDAO {
               .delete(ACCESSGRANTS)
               .where(ACCESSGRANTS.GROUPID.eq(group.getId()))
               .execute();
+      ClientSecretAccess.refreshClients(configuration, clientIds);
+      return clientIds;
     });
+    aclGraph.removeGroup(group.getId());
+    changeBus.publish(members);
   }
 
   public Optional<Group> getGroup(String name) {
@@ -90,29 +101,59 @@ public class GroupDAO {
     return ImmutableSet.copyOf(r);
   }
 
+  /** @return names of all groups, read from the name index alone. */
+  public ImmutableSet<String> getGroupNames() {
+    return ImmutableSet.copyOf(dslContext.select(GROUPS.NAME).from(GROUPS).fetch(GROUPS.NAME));
+  }
+
+  /**
+   * @param afterId id of the last group on the previous page, 0 for the first page
+   * @param limit most groups on the page
+   * @return page of groups ordered by id
+   */
+  public Page<Group> getGroups(long afterId, int limit) {
+    List<Group> r = dslContext
+        .selectFrom(GROUPS)
+        .where(GROUPS.ID.gt(afterId))
+        .orderBy(GROUPS.ID)
+        .limit(limit + 1)
+        .fetch()
+        .map(groupMapper);
+    return Page.fromRows(r, limit, group -> Long.toString(group.getId()));
+  }
+
+  /** Like {@link #getGroups()}, handing each group to consumer as it is read. */
+  public void streamGroups(Consumer<Group> consumer) {
+    Cursors.forEach(dslContext, jooq -> jooq.selectFrom(GROUPS), groupMapper, consumer);
+  }
+
   public static class GroupDAOFactory implements DAOFactory<GroupDAO> {
     private final DSLContext jooq;
     private final DSLContext readonlyJooq;
     private final GroupMapper groupMapper;
+    private final AclGraph aclGraph;
+    private final SecretChangeBus changeBus;
 
     @Inject public GroupDAOFactory(DSLContext jooq, @Readonly DSLContext readonlyJooq,
-        GroupMapper groupMapper) {
+        GroupMapper groupMapper, AclGraph aclGraph, SecretChangeBus changeBus) {
       this.jooq = jooq;
       this.readonlyJooq = readonlyJooq;
       this.groupMapper = groupMapper;
+      this.aclGraph = aclGraph;
+      this.changeBus = changeBus;
     }
 
     @Override public GroupDAO readwrite() {
-      return new GroupDAO(jooq, groupMapper);
+      return new GroupDAO(jooq, groupMapper, aclGraph, changeBus);
     }
 
     @Override public GroupDAO readonly() {
-      return new GroupDAO(readonlyJooq, groupMapper);
+      return new GroupDAO(readonlyJooq, groupMapper, aclGraph, changeBus);
     }
 
     @Override public GroupDAO using(Configuration configuration) {
       DSLContext dslContext = DSL.using(checkNotNull(configuration));
-      return new GroupDAO(dslContext, groupMapper);
+      return new GroupDAO(dslContext, groupMapper, aclGraph, changeBus);
     }
   }
 }
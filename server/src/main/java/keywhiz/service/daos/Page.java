@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * One page of a listing ordered by a unique key, with the cursor to continue after it.
+ *
+ * @param <T> type of the listed items
+ */
+@AutoValue public abstract class Page<T> {
+  Page() {} // prevent sub-classing
+
+  public static <T> Page<T> of(List<T> items, Optional<String> next) {
+    return new AutoValue_Page<>(ImmutableList.copyOf(items), next);
+  }
+
+  /**
+   * @param rows up to limit + 1 rows; an extra row only signals that another page follows
+   * @param limit number of items in a full page
+   * @param cursor key of an item, to continue the listing after it
+   */
+  static <T> Page<T> fromRows(List<T> rows, int limit, Function<T, String> cursor) {
+    if (rows.size() <= limit) {
+      return of(rows, Optional.empty());
+    }
+    List<T> items = rows.subList(0, limit);
+    return of(items, Optional.of(cursor.apply(items.get(limit - 1))));
+  }
+
+  /** @return items of this page, in key order. */
+  public abstract ImmutableList<T> items();
+
+  /** @return cursor of the next page, or empty if this is the last one. */
+  public abstract Optional<String> next();
+
+  /** @return page with each item mapped, keeping the cursor. */
+  public <R> Page<R> map(Function<T, R> mapper) {
+    ImmutableList.Builder<R> items = ImmutableList.builder();
+    items().forEach(item -> items.add(mapper.apply(item)));
+    return of(items.build(), next());
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process notification of writes which may change the secrets visible to clients, fed by
+ * {@link SecretDAO}, {@link SecretSeriesDAO}, {@link AclDAO}, {@link GroupDAO} and {@link ClientDAO}
+ * once their transactions committed.
+ *
+ * Waiters are keyed by client id and a write only wakes the clients it affects. Notifications carry
+ * no further detail; waiters re-check whatever they are interested in. Waiters are completed, and so
+ * their dependent actions run, on a fixed pool of worker threads; the single timer thread only hands
+ * expired waits to the workers. Writes made through other servers are not published here, so
+ * waiters should not wait longer than they are willing to be stale.
+ */
+public class SecretChangeBus implements Managed {
+  private final ScheduledThreadPoolExecutor timer;
+  private final ExecutorService workers;
+  private final SetMultimap<Long, CompletableFuture<Boolean>> waiting = HashMultimap.create();
+
+  public SecretChangeBus(int threads) {
+    this.timer = new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder().setNameFormat("secret-change-timer-%d").setDaemon(true).build());
+    this.timer.setRemoveOnCancelPolicy(true);
+    this.workers = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("secret-change-bus-%d").setDaemon(true).build());
+  }
+
+  @Override public void start() throws Exception {}
+
+  @Override public void stop() throws Exception {
+    timer.shutdownNow();
+    workers.shutdownNow();
+  }
+
+  /**
+   * Wakes the waiters of some clients. Call after the change is committed.
+   *
+   * @param clientIds ids of the clients whose visible secrets may have changed
+   */
+  public void publish(Collection<Long> clientIds) {
+    List<CompletableFuture<Boolean>> woken = new ArrayList<>();
+    synchronized (this) {
+      if (waiting.isEmpty()) {
+        return;
+      }
+      clientIds.forEach(clientId -> woken.addAll(waiting.removeAll(clientId)));
+    }
+    woken.forEach(future -> workers.execute(() -> future.complete(true)));
+  }
+
+  /**
+   * Waits for the next change to a client's secrets without holding a thread. Dependent actions
+   * run on the bus's worker threads, never on the thread which published the change. Cancelling the
+   * returned future stops waiting and releases its timer.
+   *
+   * @param clientId id of the client to wait for
+   * @param maxWaitMillis how long to wait for a change at most
+   * @return future completed with true on a change, or with false once maxWaitMillis passed
+   */
+  public CompletableFuture<Boolean> nextChange(long clientId, long maxWaitMillis) {
+    CompletableFuture<Boolean> future = new CompletableFuture<>();
+    synchronized (this) {
+      waiting.put(clientId, future);
+    }
+    ScheduledFuture<?> expiry = timer.schedule(
+        () -> workers.execute(() -> future.complete(false)), maxWaitMillis, TimeUnit.MILLISECONDS);
+    future.whenComplete((changed, failure) -> {
+      expiry.cancel(false);
+      synchronized (this) {
+        waiting.remove(clientId, future);
+      }
+    });
+    return future;
+  }
+
+  @VisibleForTesting int pendingTimers() {
+    return timer.getQueue().size();
+  }
+}
@@ -20,6 +20,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
@@ -28,11 +29,13 @@ import javax.inject.Inject;
 import keywhiz.api.model.SecretContent;
 import keywhiz.jooq.tables.records.SecretsContentRecord;
 import keywhiz.service.config.Readonly;
+import keywhiz.service.daos.SecretDAO.NewSecret;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.impl.DSL;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toList;
 import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
 
 /**
@@ -50,8 +53,34 @@ public class SecretContentDAO {
     this.secretContentMapper = secretContentMapper;
   }
 
-  public long createSecretContent(long secretId, String encryptedContent, String version,
+  /** @return the created content, as it now reads from the database. */
+  public SecretContent createSecretContent(long secretId, String encryptedContent, String version,
       String creator, Map<String, String> metadata, long expiry) {
+    long now = OffsetDateTime.now().toEpochSecond();
+    SecretsContentRecord r = newSecretContentRecord(secretId, encryptedContent, version, creator,
+        metadata, expiry, now);
+    r.store();
+
+    return secretContentMapper.map(r);
+  }
+
+  /**
+   * Inserts several secret contents in one batch.
+   *
+   * @param secrets new secrets, each paired with the id of its series
+   */
+  void createSecretContents(List<Map.Entry<Long, NewSecret>> secrets) {
+    long now = OffsetDateTime.now().toEpochSecond();
+    List<SecretsContentRecord> records = secrets.stream()
+        .map(e -> newSecretContentRecord(e.getKey(), e.getValue().encryptedSecret(),
+            e.getValue().version(), e.getValue().creator(), e.getValue().metadata(),
+            e.getValue().expiry(), now))
+        .collect(toList());
+    dslContext.batchInsert(records).execute();
+  }
+
+  private SecretsContentRecord newSecretContentRecord(long secretId, String encryptedContent,
+      String version, String creator, Map<String, String> metadata, long expiry, long now) {
     SecretsContentRecord r = dslContext.newRecord(SECRETS_CONTENT);
 
     String jsonMetadata;
@@ -62,8 +91,6 @@ public class SecretContentDAO {
       throw Throwables.propagate(e);
     }
 
-    long now = OffsetDateTime.now().toEpochSecond();
-
     r.setSecretid(secretId);
     r.setEncryptedContent(encryptedContent);
     r.setVersion(version);
@@ -73,9 +100,7 @@ public class SecretContentDAO {
     r.setUpdatedat(now);
     r.setMetadata(jsonMetadata);
     r.setExpiry(expiry);
-    r.store();
-
-    return r.getId();
+    return r;
   }
 
   public Optional<SecretContent> getSecretContentById(long id) {
@@ -120,6 +145,43 @@ public class SecretContentDAO {
     return ImmutableList.copyOf(r);
   }
 
+  /**
+   * Pages through encrypted content in id order, without mapping full rows.
+   *
+   * @param afterId only rows with a greater id are returned
+   * @param limit maximum number of rows returned
+   * @return encrypted content by id, in ascending id order
+   */
+  public ImmutableMap<Long, String> getEncryptedContentsAfter(long afterId, int limit) {
+    ImmutableMap.Builder<Long, String> contents = ImmutableMap.builder();
+    dslContext
+        .select(SECRETS_CONTENT.ID, SECRETS_CONTENT.ENCRYPTED_CONTENT)
+        .from(SECRETS_CONTENT)
+        .where(SECRETS_CONTENT.ID.gt(afterId))
+        .orderBy(SECRETS_CONTENT.ID)
+        .limit(limit)
+        .fetch()
+        .forEach(r -> contents.put(r.value1(), r.value2()));
+    return contents.build();
+  }
+
+  /**
+   * Replaces the serialized encrypted content of a row, provided it was not changed since read.
+   *
+   * @param id id of the secrets_content row
+   * @param expected encrypted content as last read
+   * @param replacement equivalent encrypted content to store
+   * @return true if the row was updated
+   */
+  public boolean replaceEncryptedContent(long id, String expected, String replacement) {
+    return 1 == dslContext
+        .update(SECRETS_CONTENT)
+        .set(SECRETS_CONTENT.ENCRYPTED_CONTENT, replacement)
+        .where(SECRETS_CONTENT.ID.eq(id)
+            .and(SECRETS_CONTENT.ENCRYPTED_CONTENT.eq(expected)))
+        .execute();
+  }
+
   public static class SecretContentDAOFactory implements DAOFactory<SecretContentDAO> {
     private final DSLContext jooq;
     private final DSLContext readonlyJooq;
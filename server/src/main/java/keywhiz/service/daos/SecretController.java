@@ -16,29 +16,41 @@
 
 package keywhiz.service.daos;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import keywhiz.api.model.SanitizedSecret;
 import keywhiz.api.model.Secret;
+import keywhiz.api.model.SecretSeriesAndContent;
 import keywhiz.service.crypto.ContentCryptographer;
+import keywhiz.service.crypto.CryptoExecutor;
 import keywhiz.service.crypto.SecretTransformer;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Base64.getDecoder;
+import static java.util.Base64.getEncoder;
 import static java.util.stream.Collectors.toList;
 
 public class SecretController {
+  /** Secrets read and decrypted together while streaming, bounding memory held at once. */
+  @VisibleForTesting public static final int STREAM_BATCH_SIZE = 256;
+
   private final SecretTransformer transformer;
   private final ContentCryptographer cryptographer;
   private final SecretDAO secretDAO;
+  private final CryptoExecutor executor;
 
   public SecretController(SecretTransformer transformer, ContentCryptographer cryptographer,
-      SecretDAO secretDAO) {
+      SecretDAO secretDAO, CryptoExecutor executor) {
     this.transformer = transformer;
     this.cryptographer = cryptographer;
     this.secretDAO = secretDAO;
+    this.executor = executor;
   }
 
   /**
@@ -74,6 +86,39 @@ public class SecretController {
         .collect(toList());
   }
 
+  /**
+   * @param after cursor of the previous page, 0 for the first page
+   * @param limit most secrets on the page
+   * @return page of sanitized secrets
+   */
+  public Page<SanitizedSecret> getSanitizedSecrets(long after, int limit) {
+    return secretDAO.getSecrets(after, limit).map(SanitizedSecret::fromSecretSeriesAndContent);
+  }
+
+  /** Like {@link #getSanitizedSecrets()}, handing each secret to consumer as it is read. */
+  public void streamSanitizedSecrets(Consumer<SanitizedSecret> consumer) {
+    secretDAO.streamSecrets(s -> consumer.accept(SanitizedSecret.fromSecretSeriesAndContent(s)));
+  }
+
+  /**
+   * Hands every version of every secret to consumer. Secrets are read a page at a time, each page
+   * with its own query, and decrypted in parallel on the crypto executor once the page is read, so
+   * no transaction or connection is held while decrypting or while consumer runs. Versions created
+   * or deleted during the listing may or may not be included.
+   */
+  public void streamSecrets(Consumer<Secret> consumer) {
+    long after = 0;
+    Optional<String> next;
+    do {
+      Page<SecretSeriesAndContent> page = secretDAO.getSecrets(after, STREAM_BATCH_SIZE);
+      transformer.transform(page.items()).forEach(consumer);
+      next = page.next();
+      if (next.isPresent()) {
+        after = Long.parseLong(next.get());
+      }
+    } while (next.isPresent());
+  }
+
   /** @return all existing sanitized secrets. */
   public List<SanitizedSecret> getSecretsNameOnly() {
     return secretDAO.getSecretsNameOnly()
@@ -82,6 +127,21 @@ public class SecretController {
         .collect(toList());
   }
 
+  /**
+   * @param after cursor of the previous page, 0 for the first page
+   * @param limit most secrets on the page
+   * @return page of sanitized secrets with only id and name
+   */
+  public Page<SanitizedSecret> getSecretsNameOnly(long after, int limit) {
+    return secretDAO.getSecretsNameOnly(after, limit)
+        .map(s -> SanitizedSecret.of(s.getKey(), s.getValue()));
+  }
+
+  /** @return names of all secrets, without loading their contents. */
+  public Set<String> getSecretNames() {
+    return secretDAO.getSecretNames();
+  }
+
   /** @return all versions for this secret name. */
   public List<String> getVersionsForName(String name) {
     checkArgument(!name.isEmpty());
@@ -92,16 +152,30 @@ public class SecretController {
     checkArgument(!name.isEmpty());
     checkArgument(!secret.isEmpty());
     checkArgument(!creator.isEmpty());
-    String encryptedSecret = cryptographer.encryptionKeyDerivedFrom(name).encrypt(secret);
-    return new SecretBuilder(transformer, secretDAO, name, encryptedSecret, creator, expiry);
+    return new SecretBuilder(transformer, cryptographer, secretDAO, name, secret, creator, expiry);
+  }
+
+  /**
+   * Creates many secrets at once. Contents are encrypted in parallel on the crypto executor and all
+   * secrets are inserted, and granted to their groups, in one transaction.
+   *
+   * @param builders one builder per secret, from {@link #builder(String, String, String, long)}
+   * @param groups for each builder in order, names of the groups to grant the secret to
+   * @return for each builder in order, the id of the secret series created, or empty if that name
+   * and version already existed
+   */
+  public List<Optional<Long>> createSecrets(List<SecretBuilder> builders,
+      List<? extends Set<String>> groups) {
+    return secretDAO.createSecrets(executor.map(builders, SecretBuilder::encrypted), groups);
   }
 
   /** Builder to generate new secret series or versions with. */
   public static class SecretBuilder {
     private final SecretTransformer transformer;
+    private final ContentCryptographer cryptographer;
     private final SecretDAO secretDAO;
     private final String name;
-    private final String encryptedSecret;
+    private final String secret;
     private final String creator;
     private String description = "";
     private Map<String, String> metadata = ImmutableMap.of();
@@ -112,17 +186,19 @@ public class SecretController {
 
     /**
      * @param transformer
+     * @param cryptographer
      * @param secretDAO
      * @param name of secret series.
-     * @param encryptedSecret encrypted content of secret version
+     * @param secret base64-encoded content of secret version, encrypted when the secret is created
      * @param creator username responsible for creating this secret version.
      */
-    private SecretBuilder(SecretTransformer transformer, SecretDAO secretDAO, String name, String encryptedSecret,
-        String creator, long expiry) {
+    private SecretBuilder(SecretTransformer transformer, ContentCryptographer cryptographer,
+        SecretDAO secretDAO, String name, String secret, String creator, long expiry) {
       this.transformer = transformer;
+      this.cryptographer = cryptographer;
       this.secretDAO = secretDAO;
       this.name = name;
-      this.encryptedSecret = encryptedSecret;
+      this.secret = secret;
       this.creator = creator;
       this.expiry = expiry;
     }
@@ -183,9 +259,22 @@ public class SecretController {
      * @return an instance of the newly created secret.
      */
     public Secret build() {
-        secretDAO.createSecret(name, encryptedSecret, version, creator, metadata, expiry, description, type,
-            generationOptions);
-        return transformer.transform(secretDAO.getSecretByNameAndVersion(name, version).get());
+        SecretSeriesAndContent created = secretDAO.createSecret(name, encrypt(), version, creator,
+            metadata, expiry, description, type, generationOptions);
+        // The plaintext is at hand, so the new secret is not decrypted again. It is re-encoded to
+        // match the canonical base64 a later read would return.
+        String content = getEncoder().encodeToString(getDecoder().decode(secret));
+        return transformer.transform(created, content);
+    }
+
+    /** @return values for a batch insert, with the content encrypted. */
+    private SecretDAO.NewSecret encrypted() {
+      return SecretDAO.NewSecret.of(name, encrypt(), version, creator, metadata, expiry,
+          description, type);
+    }
+
+    private String encrypt() {
+      return cryptographer.encryptionKeyDerivedFrom(name).encrypt(secret);
     }
   }
 }
@@ -16,12 +16,23 @@
 
 package keywhiz.service.daos;
 
+import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import keywhiz.api.model.Secret;
@@ -30,6 +41,7 @@ import keywhiz.api.model.SecretSeries;
 import keywhiz.api.model.SecretSeriesAndContent;
 import keywhiz.jooq.tables.Secrets;
 import keywhiz.service.config.Readonly;
+import keywhiz.service.daos.AclDAO.AclDAOFactory;
 import keywhiz.service.daos.SecretContentDAO.SecretContentDAOFactory;
 import keywhiz.service.daos.SecretSeriesDAO.SecretSeriesDAOFactory;
 import org.jooq.Configuration;
@@ -38,7 +50,9 @@ import org.jooq.impl.DSL;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toSet;
 import static keywhiz.jooq.tables.Secrets.SECRETS;
+import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
 
 /**
  * Primary class to interact with {@link Secret}s.
@@ -50,37 +64,121 @@ public class SecretDAO {
   private final DSLContext dslContext;
   private final SecretContentDAOFactory secretContentDAOFactory;
   private final SecretSeriesDAOFactory secretSeriesDAOFactory;
+  private final AclDAOFactory aclDAOFactory;
+  private final SecretSeriesAndContentMapper secretSeriesAndContentMapper;
+  private final SecretChangeBus changeBus;
 
   private SecretDAO(DSLContext dslContext, SecretContentDAOFactory secretContentDAOFactory,
-      SecretSeriesDAOFactory secretSeriesDAOFactory) {
+      SecretSeriesDAOFactory secretSeriesDAOFactory, AclDAOFactory aclDAOFactory,
+      SecretSeriesAndContentMapper secretSeriesAndContentMapper, SecretChangeBus changeBus) {
     this.dslContext = dslContext;
     this.secretContentDAOFactory = secretContentDAOFactory;
     this.secretSeriesDAOFactory = secretSeriesDAOFactory;
+    this.aclDAOFactory = aclDAOFactory;
+    this.secretSeriesAndContentMapper = secretSeriesAndContentMapper;
+    this.changeBus = changeBus;
   }
 
+  /**
+   * @return the created secret, built from the inserted rows so it need not be read back.
+   */
   @VisibleForTesting
-  public long createSecret(String name, String encryptedSecret, String version,
+  public SecretSeriesAndContent createSecret(String name, String encryptedSecret, String version,
       String creator, Map<String, String> metadata, long expiry, String description, @Nullable String type,
       @Nullable Map<String, String> generationOptions) {
     // TODO(jlfwong): Should the description be updated...?
 
-    return dslContext.transactionResult(configuration -> {
+    List<Long> readers = new ArrayList<>();
+    SecretSeriesAndContent secret = dslContext.transactionResult(configuration -> {
       SecretContentDAO secretContentDAO = secretContentDAOFactory.using(configuration);
       SecretSeriesDAO secretSeriesDAO = secretSeriesDAOFactory.using(configuration);
 
       Optional<SecretSeries> secretSeries = secretSeriesDAO.getSecretSeriesByName(name);
-      long secretId;
+      SecretSeries series;
       if (secretSeries.isPresent()) {
-        secretId = secretSeries.get().id();
+        series = secretSeries.get();
       } else {
-        secretId = secretSeriesDAO.createSecretSeries(name, creator, description, type,
+        series = secretSeriesDAO.createSecretSeries(name, creator, description, type,
             generationOptions);
       }
 
-      secretContentDAO.createSecretContent(secretId, encryptedSecret, version, creator,
-          metadata, expiry);
-      return secretId;
+      SecretContent content = secretContentDAO.createSecretContent(series.id(), encryptedSecret,
+          version, creator, metadata, expiry);
+      readers.addAll(ClientSecretAccess.readers(configuration, ImmutableList.of(series.id())));
+      return SecretSeriesAndContent.of(series, content);
+    });
+    changeBus.publish(readers);
+    return secret;
+  }
+
+  /**
+   * Creates many secrets in one transaction, with one batch insert for the new series, one for the
+   * contents and one for their access grants.
+   *
+   * @param secrets secrets to create, with content already encrypted
+   * @param groups for each secret in order, names of the groups to grant it to if created
+   * @return for each secret in order, the id of its series, or empty if that name and version
+   * existed already or appeared earlier in the list
+   */
+  public ImmutableList<Optional<Long>> createSecrets(List<NewSecret> secrets,
+      List<? extends Set<String>> groups) {
+    checkArgument(secrets.size() == groups.size(), "one set of groups per secret");
+    if (secrets.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    List<Long> readers = new ArrayList<>();
+    List<SetMultimap<Long, Long>> granted = new ArrayList<>();
+    ImmutableList<Optional<Long>> ids =
+        dslContext.<ImmutableList<Optional<Long>>>transactionResult(configuration -> {
+      SecretContentDAO secretContentDAO = secretContentDAOFactory.using(configuration);
+      SecretSeriesDAO secretSeriesDAO = secretSeriesDAOFactory.using(configuration);
+
+      Set<String> names = secrets.stream().map(NewSecret::name).collect(toSet());
+      Map<String, Long> seriesIds = new HashMap<>(secretSeriesDAO.getSecretSeriesIds(names));
+
+      // The first secret for each missing name supplies the description and type of its series.
+      Map<String, NewSecret> newSeries = new LinkedHashMap<>();
+      secrets.stream()
+          .filter(s -> !seriesIds.containsKey(s.name()))
+          .forEach(s -> newSeries.putIfAbsent(s.name(), s));
+      if (!newSeries.isEmpty()) {
+        seriesIds.putAll(secretSeriesDAO.createSecretSeries(newSeries.values()));
+      }
+
+      Set<Map.Entry<Long, String>> versions = new HashSet<>();
+      DSL.using(configuration)
+          .select(SECRETS_CONTENT.SECRETID, SECRETS_CONTENT.VERSION)
+          .from(SECRETS_CONTENT)
+          .where(SECRETS_CONTENT.SECRETID.in(seriesIds.values()))
+          .fetch()
+          .forEach(r -> versions.add(new SimpleEntry<>(r.value1(), r.value2())));
+
+      ImmutableList.Builder<Optional<Long>> results = ImmutableList.builder();
+      List<Map.Entry<Long, NewSecret>> contents = new ArrayList<>();
+      ImmutableSetMultimap.Builder<Long, String> grants = ImmutableSetMultimap.builder();
+      for (int i = 0; i < secrets.size(); i++) {
+        NewSecret secret = secrets.get(i);
+        long secretId = seriesIds.get(secret.name());
+        if (versions.add(new SimpleEntry<>(secretId, secret.version()))) {
+          contents.add(new SimpleEntry<>(secretId, secret));
+          grants.putAll(secretId, groups.get(i));
+          results.add(Optional.of(secretId));
+        } else {
+          results.add(Optional.empty());
+        }
+      }
+      if (!contents.isEmpty()) {
+        secretContentDAO.createSecretContents(contents);
+        granted.add(aclDAOFactory.using(configuration).allowAccess(grants.build()));
+        readers.addAll(ClientSecretAccess.readers(configuration,
+            contents.stream().map(Map.Entry::getKey).collect(toSet())));
+      }
+      return results.build();
     });
+    granted.forEach(aclDAOFactory.using(dslContext.configuration())::accessAllowed);
+    changeBus.publish(readers);
+    return ids;
   }
 
   /**
@@ -193,19 +291,54 @@ public class SecretDAO {
 
   /** @return all existing secrets. */
   public ImmutableList<SecretSeriesAndContent> getSecrets() {
-    return dslContext.transactionResult(configuration -> {
-      SecretContentDAO secretContentDAO = secretContentDAOFactory.using(configuration);
-      SecretSeriesDAO secretSeriesDAO = secretSeriesDAOFactory.using(configuration);
+    ImmutableList.Builder<SecretSeriesAndContent> list = ImmutableList.builder();
+    Cursors.forEach(dslContext
+        .select(SECRETS.fields())
+        .select(SECRETS_CONTENT.fields())
+        .from(SECRETS)
+        .join(SECRETS_CONTENT).on(SECRETS.ID.eq(SECRETS_CONTENT.SECRETID)),
+        secretSeriesAndContentMapper, list::add);
+    return list.build();
+  }
 
-      ImmutableList.Builder<SecretSeriesAndContent> secretsBuilder = ImmutableList.builder();
+  /**
+   * @param afterContentId content id of the last secret on the previous page, 0 for the first page
+   * @param limit most secrets on the page
+   * @return page of secrets ordered by content id
+   */
+  public Page<SecretSeriesAndContent> getSecrets(long afterContentId, int limit) {
+    List<SecretSeriesAndContent> r = dslContext
+        .select(SECRETS.fields())
+        .select(SECRETS_CONTENT.fields())
+        .from(SECRETS)
+        .join(SECRETS_CONTENT).on(SECRETS.ID.eq(SECRETS_CONTENT.SECRETID))
+        .where(SECRETS_CONTENT.ID.gt(afterContentId))
+        .orderBy(SECRETS_CONTENT.ID)
+        .limit(limit + 1)
+        .fetch()
+        .map(secretSeriesAndContentMapper);
+    return Page.fromRows(r, limit, secret -> Long.toString(secret.content().id()));
+  }
 
-      secretSeriesDAO.getSecretSeries()
-          .forEach((series) -> secretContentDAO.getSecretContentsBySecretId(series.id())
-              .forEach(
-                  (content) -> secretsBuilder.add(SecretSeriesAndContent.of(series, content))));
+  /** Like {@link #getSecrets()}, handing each secret to consumer as it is read. */
+  public void streamSecrets(Consumer<SecretSeriesAndContent> consumer) {
+    Cursors.forEach(dslContext, jooq -> jooq
+        .select(SECRETS.fields())
+        .select(SECRETS_CONTENT.fields())
+        .from(SECRETS)
+        .join(SECRETS_CONTENT).on(SECRETS.ID.eq(SECRETS_CONTENT.SECRETID)),
+        secretSeriesAndContentMapper, consumer);
+  }
 
-      return secretsBuilder.build();
-    });
+  /** @return names of all secret series with at least one version. */
+  public ImmutableSet<String> getSecretNames() {
+    return ImmutableSet.copyOf(dslContext
+        .select(SECRETS.NAME)
+        .from(SECRETS)
+        .whereExists(DSL.selectOne()
+            .from(SECRETS_CONTENT)
+            .where(SECRETS_CONTENT.SECRETID.eq(SECRETS.ID)))
+        .fetch(SECRETS.NAME));
   }
 
   /**
@@ -219,6 +352,22 @@ public class SecretDAO {
     return ImmutableList.copyOf(results);
   }
 
+  /**
+   * @param afterId series id of the last secret on the previous page, 0 for the first page
+   * @param limit most secrets on the page
+   * @return page of id, name ordered by id
+   */
+  public Page<SimpleEntry<Long, String>> getSecretsNameOnly(long afterId, int limit) {
+    List<SimpleEntry<Long, String>> results = dslContext.select(SECRETS.ID, SECRETS.NAME)
+        .from(SECRETS)
+        .where(SECRETS.ID.gt(afterId))
+        .orderBy(SECRETS.ID)
+        .limit(limit + 1)
+        .fetch()
+        .map(r -> new SimpleEntry<>(r.value1(), r.value2()));
+    return Page.fromRows(results, limit, entry -> Long.toString(entry.getKey()));
+  }
+
 
   /**
    * Deletes the series and all associated version of the given secret series name.
@@ -242,6 +391,8 @@ public class SecretDAO {
     checkArgument(!name.isEmpty());
     checkNotNull(version);
 
+    List<Long> readers = new ArrayList<>();
+    List<Long> deletedSeries = new ArrayList<>(1);
     dslContext.transaction(configuration -> {
       SecretContentDAO secretContentDAO = secretContentDAOFactory.using(configuration);
       SecretSeriesDAO secretSeriesDAO = secretSeriesDAOFactory.using(configuration);
@@ -255,9 +406,38 @@ public class SecretDAO {
       secretContentDAO.deleteSecretContentBySecretIdAndVersion(seriesId, version);
 
       if (secretContentDAO.getSecretContentsBySecretId(seriesId).isEmpty()) {
-        secretSeriesDAO.deleteSecretSeriesById(seriesId);
+        readers.addAll(secretSeriesDAO.deleteSecretSeries(seriesId));
+        deletedSeries.add(seriesId);
+      } else {
+        readers.addAll(ClientSecretAccess.readers(configuration, ImmutableList.of(seriesId)));
       }
     });
+
+    // Published only once committed, so woken clients read the new state.
+    if (deletedSeries.isEmpty()) {
+      changeBus.publish(readers);
+    } else {
+      secretSeriesDAOFactory.using(dslContext.configuration())
+          .deleted(deletedSeries.get(0), readers);
+    }
+  }
+
+  /** Values for one secret created by {@link #createSecrets(List)}. */
+  @AutoValue public static abstract class NewSecret {
+    public static NewSecret of(String name, String encryptedSecret, String version, String creator,
+        Map<String, String> metadata, long expiry, String description, @Nullable String type) {
+      return new AutoValue_SecretDAO_NewSecret(name, encryptedSecret, version, creator,
+          ImmutableMap.copyOf(metadata), expiry, description, type);
+    }
+
+    public abstract String name();
+    public abstract String encryptedSecret();
+    public abstract String version();
+    public abstract String creator();
+    public abstract ImmutableMap<String, String> metadata();
+    public abstract long expiry();
+    public abstract String description();
+    @Nullable public abstract String type();
   }
 
   public static class SecretDAOFactory implements DAOFactory<SecretDAO> {
@@ -265,27 +445,37 @@ public class SecretDAO {
     private final DSLContext readonlyJooq;
     private final SecretContentDAOFactory secretContentDAOFactory;
     private final SecretSeriesDAOFactory secretSeriesDAOFactory;
+    private final AclDAOFactory aclDAOFactory;
+    private final SecretSeriesAndContentMapper secretSeriesAndContentMapper;
+    private final SecretChangeBus changeBus;
 
     @Inject public SecretDAOFactory(DSLContext jooq, @Readonly DSLContext readonlyJooq,
         SecretContentDAOFactory secretContentDAOFactory,
-        SecretSeriesDAOFactory secretSeriesDAOFactory) {
+        SecretSeriesDAOFactory secretSeriesDAOFactory, AclDAOFactory aclDAOFactory,
+        SecretSeriesAndContentMapper secretSeriesAndContentMapper, SecretChangeBus changeBus) {
       this.jooq = jooq;
       this.readonlyJooq = readonlyJooq;
       this.secretContentDAOFactory = secretContentDAOFactory;
       this.secretSeriesDAOFactory = secretSeriesDAOFactory;
+      this.aclDAOFactory = aclDAOFactory;
+      this.secretSeriesAndContentMapper = secretSeriesAndContentMapper;
+      this.changeBus = changeBus;
     }
 
     @Override public SecretDAO readwrite() {
-      return new SecretDAO(jooq, secretContentDAOFactory, secretSeriesDAOFactory);
+      return new SecretDAO(jooq, secretContentDAOFactory, secretSeriesDAOFactory,
+          aclDAOFactory, secretSeriesAndContentMapper, changeBus);
     }
 
     @Override public SecretDAO readonly() {
-      return new SecretDAO(readonlyJooq, secretContentDAOFactory, secretSeriesDAOFactory);
+      return new SecretDAO(readonlyJooq, secretContentDAOFactory, secretSeriesDAOFactory,
+          aclDAOFactory, secretSeriesAndContentMapper, changeBus);
     }
 
     @Override public SecretDAO using(Configuration configuration) {
       DSLContext dslContext = DSL.using(checkNotNull(configuration));
-      return new SecretDAO(dslContext, secretContentDAOFactory, secretSeriesDAOFactory);
+      return new SecretDAO(dslContext, secretContentDAOFactory, secretSeriesDAOFactory,
+          aclDAOFactory, secretSeriesAndContentMapper, changeBus);
     }
   }
 }
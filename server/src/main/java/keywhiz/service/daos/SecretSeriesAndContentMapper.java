@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import javax.inject.Inject;
+import keywhiz.api.model.SecretSeriesAndContent;
+import org.jooq.Record;
+import org.jooq.RecordMapper;
+
+import static keywhiz.jooq.tables.Secrets.SECRETS;
+import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
+
+/** Maps rows selecting all columns of both secrets and secrets_content. */
+class SecretSeriesAndContentMapper implements RecordMapper<Record, SecretSeriesAndContent> {
+  private final SecretSeriesMapper secretSeriesMapper;
+  private final SecretContentMapper secretContentMapper;
+
+  @Inject SecretSeriesAndContentMapper(SecretSeriesMapper secretSeriesMapper,
+      SecretContentMapper secretContentMapper) {
+    this.secretSeriesMapper = secretSeriesMapper;
+    this.secretContentMapper = secretContentMapper;
+  }
+
+  public SecretSeriesAndContent map(Record r) {
+    return SecretSeriesAndContent.of(
+        secretSeriesMapper.map(r.into(SECRETS)),
+        secretContentMapper.map(r.into(SECRETS_CONTENT)));
+  }
+}
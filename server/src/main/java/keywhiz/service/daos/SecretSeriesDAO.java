@@ -20,7 +20,10 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -29,11 +32,13 @@ import javax.inject.Inject;
 import keywhiz.api.model.SecretSeries;
 import keywhiz.jooq.tables.records.SecretsRecord;
 import keywhiz.service.config.Readonly;
+import keywhiz.service.daos.SecretDAO.NewSecret;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.impl.DSL;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toList;
 import static keywhiz.jooq.tables.Accessgrants.ACCESSGRANTS;
 import static keywhiz.jooq.tables.Secrets.SECRETS;
 import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
@@ -45,18 +50,58 @@ public class SecretSeriesDAO {
   private final DSLContext dslContext;
   private final ObjectMapper mapper;
   private final SecretSeriesMapper secretSeriesMapper;
+  private final SecretChangeBus changeBus;
+  private final AclGraph aclGraph;
 
-  private SecretSeriesDAO(DSLContext dslContext, ObjectMapper mapper, SecretSeriesMapper secretSeriesMapper) {
+  private SecretSeriesDAO(DSLContext dslContext, ObjectMapper mapper,
+      SecretSeriesMapper secretSeriesMapper, SecretChangeBus changeBus, AclGraph aclGraph) {
     this.dslContext = dslContext;
     this.mapper = mapper;
     this.secretSeriesMapper = secretSeriesMapper;
+    this.changeBus = changeBus;
+    this.aclGraph = aclGraph;
   }
 
-  long createSecretSeries(String name, String creator, String description, @Nullable String type,
-      @Nullable Map<String, String> generationOptions) {
-    SecretsRecord r =  dslContext.newRecord(SECRETS);
+  /** @return the created series, as it now reads from the database. */
+  SecretSeries createSecretSeries(String name, String creator, String description,
+      @Nullable String type, @Nullable Map<String, String> generationOptions) {
+    long now = OffsetDateTime.now().toEpochSecond();
+    SecretsRecord r = newSecretSeriesRecord(name, creator, description, type, generationOptions,
+        now);
+    r.store();
 
+    return secretSeriesMapper.map(r);
+  }
+
+  /**
+   * Inserts several secret series in one batch.
+   *
+   * @param secrets one new secret per series to create, whose names must not exist yet
+   * @return ids of the created series, by name
+   */
+  ImmutableMap<String, Long> createSecretSeries(Collection<NewSecret> secrets) {
     long now = OffsetDateTime.now().toEpochSecond();
+    List<SecretsRecord> records = secrets.stream()
+        .map(s -> newSecretSeriesRecord(s.name(), s.creator(), s.description(), s.type(), null, now))
+        .collect(toList());
+    dslContext.batchInsert(records).execute();
+    return getSecretSeriesIds(secrets.stream().map(NewSecret::name).collect(toList()));
+  }
+
+  /** @return ids of the existing series among names, by name. */
+  ImmutableMap<String, Long> getSecretSeriesIds(Collection<String> names) {
+    ImmutableMap.Builder<String, Long> ids = ImmutableMap.builder();
+    dslContext.select(SECRETS.ID, SECRETS.NAME)
+        .from(SECRETS)
+        .where(SECRETS.NAME.in(names))
+        .fetch()
+        .forEach(r -> ids.put(r.value2(), r.value1()));
+    return ids.build();
+  }
+
+  private SecretsRecord newSecretSeriesRecord(String name, String creator, String description,
+      @Nullable String type, @Nullable Map<String, String> generationOptions, long now) {
+    SecretsRecord r = dslContext.newRecord(SECRETS);
 
     r.setName(name);
     r.setDescription(description);
@@ -75,9 +120,7 @@ public class SecretSeriesDAO {
     } else {
       r.setOptions("{}");
     }
-    r.store();
-
-    return r.getId();
+    return r;
   }
 
   public Optional<SecretSeries> getSecretSeriesById(long id) {
@@ -100,40 +143,56 @@ public class SecretSeriesDAO {
   }
 
   public void deleteSecretSeriesByName(String name) {
+    List<Long> deleted = new ArrayList<>(1);
+    List<Long> readers = new ArrayList<>();
     dslContext.transaction(configuration -> {
       SecretsRecord r = DSL.using(configuration).fetchOne(SECRETS, SECRETS.NAME.eq(name));
       if (r != null) {
-        DSL.using(configuration)
-                .delete(SECRETS)
-                .where(SECRETS.ID.eq(r.getId()))
-                .execute();
-        DSL.using(configuration)
-                .delete(SECRETS_CONTENT)
-                .where(SECRETS_CONTENT.SECRETID.eq(r.getId()))
-                .execute();
-        DSL.using(configuration)
-                .delete(ACCESSGRANTS)
-                .where(ACCESSGRANTS.SECRETID.eq(r.getId()))
-                .execute();
+        readers.addAll(delete(configuration, r.getId()));
+        deleted.add(r.getId());
       }
     });
+    deleted.forEach(id -> deleted(id, readers));
   }
 
   public void deleteSecretSeriesById(long id) {
-    dslContext.transaction(configuration -> {
-      DSL.using(configuration)
-              .delete(SECRETS)
-              .where(SECRETS.ID.eq(id))
-              .execute();
-      DSL.using(configuration)
-              .delete(SECRETS_CONTENT)
-              .where(SECRETS_CONTENT.SECRETID.eq(id))
-              .execute();
-      DSL.using(configuration)
-              .delete(ACCESSGRANTS)
-              .where(ACCESSGRANTS.SECRETID.eq(id))
-              .execute();
-    });
+    List<Long> readers = dslContext.transactionResult(configuration -> delete(configuration, id));
+    deleted(id, readers);
+  }
+
+  /**
+   * Deletes a secret series in the transaction this DAO was created with. Once that transaction
+   * committed, the caller must pass the result to {@link #deleted(long, Collection)}.
+   *
+   * @return ids of the clients which could read the series
+   */
+  List<Long> deleteSecretSeries(long id) {
+    return delete(dslContext.configuration(), id);
+  }
+
+  /** Applies a committed deletion to the ACL graph and wakes the clients which could read it. */
+  void deleted(long id, Collection<Long> readers) {
+    aclGraph.removeSecret(id);
+    changeBus.publish(readers);
+  }
+
+  private static List<Long> delete(Configuration configuration, long id) {
+    ClientSecretAccess.lockSecret(configuration, id, ImmutableList.of());
+    List<Long> readers = ClientSecretAccess.readers(configuration, ImmutableList.of(id));
+    DSL.using(configuration)
+            .delete(SECRETS)
+            .where(SECRETS.ID.eq(id))
+            .execute();
+    DSL.using(configuration)
+            .delete(SECRETS_CONTENT)
+            .where(SECRETS_CONTENT.SECRETID.eq(id))
+            .execute();
+    DSL.using(configuration)
+            .delete(ACCESSGRANTS)
+            .where(ACCESSGRANTS.SECRETID.eq(id))
+            .execute();
+    ClientSecretAccess.removeSecret(configuration, id);
+    return readers;
   }
 
   public static class SecretSeriesDAOFactory implements DAOFactory<SecretSeriesDAO> {
@@ -141,26 +200,33 @@ public class SecretSeriesDAO {
     private final DSLContext readonlyJooq;
     private final ObjectMapper objectMapper;
     private final SecretSeriesMapper secretSeriesMapper;
+    private final SecretChangeBus changeBus;
+    private final AclGraph aclGraph;
 
     @Inject public SecretSeriesDAOFactory(DSLContext jooq, @Readonly DSLContext readonlyJooq,
-        ObjectMapper objectMapper, SecretSeriesMapper secretSeriesMapper) {
+        ObjectMapper objectMapper, SecretSeriesMapper secretSeriesMapper,
+        SecretChangeBus changeBus, AclGraph aclGraph) {
       this.jooq = jooq;
       this.readonlyJooq = readonlyJooq;
       this.objectMapper = objectMapper;
       this.secretSeriesMapper = secretSeriesMapper;
+      this.changeBus = changeBus;
+      this.aclGraph = aclGraph;
     }
 
     @Override public SecretSeriesDAO readwrite() {
-      return new SecretSeriesDAO(jooq, objectMapper, secretSeriesMapper);
+      return new SecretSeriesDAO(jooq, objectMapper, secretSeriesMapper, changeBus, aclGraph);
     }
 
     @Override public SecretSeriesDAO readonly() {
-      return new SecretSeriesDAO(readonlyJooq, objectMapper, secretSeriesMapper);
+      return new SecretSeriesDAO(readonlyJooq, objectMapper, secretSeriesMapper, changeBus,
+          aclGraph);
     }
 
     @Override public SecretSeriesDAO using(Configuration configuration) {
       DSLContext dslContext = DSL.using(checkNotNull(configuration));
-      return new SecretSeriesDAO(dslContext, objectMapper, secretSeriesMapper);
+      return new SecretSeriesDAO(dslContext, objectMapper, secretSeriesMapper, changeBus,
+          aclGraph);
     }
   }
 }
@@ -20,11 +20,13 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.java8.auth.Authenticator;
+import java.security.Principal;
 import java.util.Optional;
 import javax.inject.Inject;
 import javax.ws.rs.ForbiddenException;
 import javax.ws.rs.NotAuthorizedException;
 import keywhiz.api.model.AutomationClient;
+import keywhiz.service.daos.ClientCache;
 import keywhiz.service.daos.ClientDAO;
 import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
 import org.glassfish.jersey.server.ContainerRequest;
@@ -41,25 +43,30 @@ import static java.lang.String.format;
 public class AutomationClientAuthFactory {
   private final Authenticator<String, AutomationClient> authenticator;
 
-  @Inject public AutomationClientAuthFactory(ClientDAOFactory clientDAOFactory) {
-    this.authenticator = new MyAuthenticator(clientDAOFactory.readonly());
+  @Inject public AutomationClientAuthFactory(ClientDAOFactory clientDAOFactory,
+      ClientCache clientCache) {
+    this.authenticator = new MyAuthenticator(clientDAOFactory.readonly(), clientCache);
+  }
+
+  @VisibleForTesting AutomationClientAuthFactory(ClientDAO clientDAO, ClientCache clientCache) {
+    this.authenticator = new MyAuthenticator(clientDAO, clientCache);
   }
 
   @VisibleForTesting AutomationClientAuthFactory(ClientDAO clientDAO) {
-    this.authenticator = new MyAuthenticator(clientDAO);
+    this(clientDAO, ClientCache.disabled());
   }
 
   public AutomationClient provide(ContainerRequest request) {
-    Optional<String> possibleClientName = ClientAuthFactory.getClientName(request);
-    if (!possibleClientName.isPresent()) {
+    Principal principal = request.getSecurityContext().getUserPrincipal();
+    if (principal == null) {
       throw new NotAuthorizedException("Not authorized as a AutomationClient");
     }
-    String clientName = possibleClientName.get();
+    String subject = principal.getName();
 
     try {
-      return authenticator.authenticate(clientName)
+      return authenticator.authenticate(subject)
           .orElseThrow(() -> new ForbiddenException(
-              format("ClientCert name %s not authorized as a AutomationClient", clientName)));
+              format("ClientCert %s not authorized as a AutomationClient", subject)));
     } catch (AuthenticationException e) {
       throw Throwables.propagate(e);
     }
@@ -67,14 +74,18 @@ public class AutomationClientAuthFactory {
 
   private static class MyAuthenticator implements Authenticator<String, AutomationClient> {
     private final ClientDAO clientDAO;
+    private final ClientCache clientCache;
 
-    private MyAuthenticator(ClientDAO clientDAO) {
+    private MyAuthenticator(ClientDAO clientDAO, ClientCache clientCache) {
       this.clientDAO = clientDAO;
+      this.clientCache = clientCache;
     }
 
-    @Override public Optional<AutomationClient> authenticate(String name)
+    @Override public Optional<AutomationClient> authenticate(String subject)
         throws AuthenticationException {
-      return clientDAO.getClient(name).map(AutomationClient::of);
+      return clientCache.get(subject,
+          s -> ClientAuthFactory.getClientName(s).flatMap(clientDAO::getClient))
+          .map(AutomationClient::of);
     }
   }
 }
@@ -25,8 +25,10 @@ import java.util.Optional;
 import javax.inject.Inject;
 import javax.ws.rs.NotAuthorizedException;
 import keywhiz.api.model.Client;
+import keywhiz.service.daos.ClientCache;
 import keywhiz.service.daos.ClientDAO;
 import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
+import keywhiz.service.daos.ClientRegistrar;
 import org.bouncycastle.asn1.x500.RDN;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x500.style.BCStyle;
@@ -49,55 +51,61 @@ public class ClientAuthFactory {
 
   private final Authenticator<String, Client> authenticator;
 
-  @Inject public ClientAuthFactory(ClientDAOFactory clientDAOFactory) {
-    this.authenticator = new MyAuthenticator(clientDAOFactory.readwrite());
+  @Inject public ClientAuthFactory(ClientDAOFactory clientDAOFactory, ClientCache clientCache,
+      ClientRegistrar clientRegistrar) {
+    this.authenticator = new MyAuthenticator(clientDAOFactory.readonly(),
+        clientDAOFactory.readwrite(), clientCache, clientRegistrar);
   }
 
-  @VisibleForTesting ClientAuthFactory(ClientDAO clientDAO) {
-    this.authenticator = new MyAuthenticator(clientDAO);
+  @VisibleForTesting ClientAuthFactory(ClientDAO clientDAO, ClientCache clientCache,
+      ClientRegistrar clientRegistrar) {
+    this.authenticator = new MyAuthenticator(clientDAO, clientDAO, clientCache, clientRegistrar);
   }
 
   public Client provide(ContainerRequest request) {
-    Optional<String> possibleClientName = getClientName(request);
-    if (!possibleClientName.isPresent()) {
+    Principal principal = request.getSecurityContext().getUserPrincipal();
+    if (principal == null) {
       throw new NotAuthorizedException("ClientCert not authorized as a Client");
     }
-    String clientName = possibleClientName.get();
+    String subject = principal.getName();
 
     try {
-      return authenticator.authenticate(clientName)
+      return authenticator.authenticate(subject)
           .orElseThrow(() -> new NotAuthorizedException(
-              format("ClientCert name %s not authorized as a Client", clientName)));
+              format("ClientCert %s not authorized as a Client", subject)));
     } catch (AuthenticationException e) {
       throw Throwables.propagate(e);
     }
   }
 
-  static Optional<String> getClientName(ContainerRequest request) {
-    Principal principal = request.getSecurityContext().getUserPrincipal();
-    if (principal == null) {
-      return Optional.empty();
-    }
-
-    X500Name name = new X500Name(principal.getName());
+  static Optional<String> getClientName(String subject) {
+    X500Name name = new X500Name(subject);
     RDN[] rdns = name.getRDNs(BCStyle.CN);
     if (rdns.length == 0) {
-      logger.warn("Certificate does not contain CN=xxx,...: {}", principal.getName());
+      logger.warn("Certificate does not contain CN=xxx,...: {}", subject);
       return Optional.empty();
     }
     return Optional.of(IETFUtils.valueToString(rdns[0].getFirst().getValue()));
   }
 
   private static class MyAuthenticator implements Authenticator<String, Client> {
-    private final ClientDAO clientDAO;
+    private final ClientDAO readonlyClientDAO;
+    private final ClientDAO readwriteClientDAO;
+    private final ClientCache clientCache;
+    private final ClientRegistrar clientRegistrar;
 
-    private MyAuthenticator(ClientDAO clientDAO) {
-      this.clientDAO = clientDAO;
+    private MyAuthenticator(ClientDAO readonlyClientDAO, ClientDAO readwriteClientDAO,
+        ClientCache clientCache, ClientRegistrar clientRegistrar) {
+      this.readonlyClientDAO = readonlyClientDAO;
+      this.readwriteClientDAO = readwriteClientDAO;
+      this.clientCache = clientCache;
+      this.clientRegistrar = clientRegistrar;
     }
 
-    @Override public Optional<Client> authenticate(String name)
+    @Override public Optional<Client> authenticate(String subject)
         throws AuthenticationException {
-      Optional<Client> optionalClient = clientDAO.getClient(name);
+      Optional<Client> optionalClient =
+          clientCache.get(subject, s -> getClientName(s).flatMap(this::findClient));
       if (optionalClient.isPresent()) {
         Client client = optionalClient.get();
         if (client.isEnabled()) {
@@ -110,13 +118,22 @@ public class ClientAuthFactory {
 
       /*
        * If a client is seen for the first time, authenticated by certificate, and has no DB entry,
-       * then a DB entry is created here. The client can be disabled in the future by flipping the
-       * 'enabled' field.
+       * then a DB entry is created with the next registration batch. The client can be disabled in
+       * the future by flipping the 'enabled' field.
        */
       // TODO(justin): Consider making this behavior configurable.
-      long clientId = clientDAO.createClient(name, "automatic",
-          "Client created automatically from valid certificate authentication");
-      return Optional.of(clientDAO.getClientById(clientId).get());
+      Optional<Client> registered = getClientName(subject).map(clientRegistrar::register);
+      registered.ifPresent(client -> clientCache.put(subject, client));
+      return registered;
+    }
+
+    private Optional<Client> findClient(String name) {
+      Optional<Client> optionalClient = readonlyClientDAO.getClient(name);
+      if (!optionalClient.isPresent()) {
+        // The replica may not have caught up with a client registered moments ago.
+        optionalClient = readwriteClientDAO.getClient(name);
+      }
+      return optionalClient;
     }
   }
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.resources;
+
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import io.dropwizard.auth.Auth;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import javax.inject.Inject;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import keywhiz.api.BatchSecretDeliveryResponse;
+import keywhiz.api.BatchSecretDeliveryResponse.Item;
+import keywhiz.api.SecretDeliveryResponse;
+import keywhiz.api.model.Client;
+import keywhiz.api.model.Secret;
+import keywhiz.api.model.SecretSeriesAndContent;
+import keywhiz.service.audit.AccessAuditLog;
+import keywhiz.service.audit.AccessEvent.Action;
+import keywhiz.service.audit.AccessEvent.Outcome;
+import keywhiz.service.crypto.SecretTransformer;
+import keywhiz.service.daos.AclDAO;
+import keywhiz.service.daos.AclDAO.AclDAOFactory;
+import keywhiz.service.daos.AclDAO.DeliveryLookup;
+import org.hibernate.validator.constraints.NotEmpty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static keywhiz.api.model.Secret.splitNameAndVersion;
+
+/**
+ * @parentEndpointName batchsecret
+ *
+ * @resourceDescription Retrieve several Secrets by name at once
+ */
+@Path("/batchsecret")
+@Produces(APPLICATION_JSON)
+public class BatchSecretDeliveryResource {
+  private static final Logger logger = LoggerFactory.getLogger(BatchSecretDeliveryResource.class);
+
+  /** Most secrets retrievable in one request. */
+  static final int MAX_SECRETS = 100;
+
+  private final SecretTransformer secretTransformer;
+  private final AclDAO aclDAO;
+  private final AccessAuditLog auditLog;
+
+  @Inject public BatchSecretDeliveryResource(SecretTransformer secretTransformer,
+      AclDAOFactory aclDAOFactory, AccessAuditLog auditLog) {
+    this.secretTransformer = secretTransformer;
+    this.aclDAO = aclDAOFactory.readonly();
+    this.auditLog = auditLog;
+  }
+
+  @VisibleForTesting BatchSecretDeliveryResource(SecretTransformer secretTransformer,
+      AclDAO aclDAO, AccessAuditLog auditLog) {
+    this.secretTransformer = secretTransformer;
+    this.aclDAO = aclDAO;
+    this.auditLog = auditLog;
+  }
+
+  /**
+   * Retrieve several Secrets by name
+   *
+   * @excludeParams client
+   * @param secretNames names of the Secrets to retrieve, each optionally with a version
+   *
+   * @description Returns an entry per requested name, in request order. Each entry carries the
+   * status a single retrieval of that Secret would have had: 200 with the Secret, 400 for an
+   * invalid name, 403 if the Secret is not assigned to the Client, 404 if it is not found, or 500
+   * if the response could not be generated.
+   * @responseMessage 200 Processed every requested Secret, see individual statuses
+   * @responseMessage 400 No names or more than 100 names requested
+   */
+  @Timed @ExceptionMetered
+  @POST
+  @Consumes(APPLICATION_JSON)
+  public BatchSecretDeliveryResponse getSecrets(@NotEmpty List<String> secretNames,
+      @Auth Client client) {
+    if (secretNames.size() > MAX_SECRETS) {
+      throw new BadRequestException(
+          format("At most %d secrets can be retrieved at once", MAX_SECRETS));
+    }
+
+    Map<String, Map.Entry<String, String>> parsed = new HashMap<>();
+    Set<Map.Entry<String, String>> namesAndVersions = new LinkedHashSet<>();
+    for (String secretName : secretNames) {
+      try {
+        String[] parts = splitNameAndVersion(secretName);
+        if (parts[0].isEmpty()) {
+          continue;
+        }
+        Map.Entry<String, String> nameAndVersion = Maps.immutableEntry(parts[0], parts[1]);
+        parsed.put(secretName, nameAndVersion);
+        namesAndVersions.add(nameAndVersion);
+      } catch (ParseException e) {
+        // Reported as a 400 entry below.
+      }
+    }
+
+    Map<Map.Entry<String, String>, DeliveryLookup> lookups =
+        aclDAO.getSecretsForDelivery(client, namesAndVersions);
+
+    List<Map.Entry<String, String>> authorized = new ArrayList<>();
+    List<SecretSeriesAndContent> toTransform = new ArrayList<>();
+    lookups.forEach((nameAndVersion, lookup) -> {
+      if (lookup.authorized()) {
+        authorized.add(nameAndVersion);
+        toTransform.add(lookup.secret().get());
+      }
+    });
+    List<Optional<Secret>> transformed = secretTransformer.transformEach(toTransform);
+    Map<Map.Entry<String, String>, Optional<Secret>> secrets = new HashMap<>();
+    for (int i = 0; i < authorized.size(); i++) {
+      secrets.put(authorized.get(i), transformed.get(i));
+    }
+
+    ImmutableList.Builder<Item> items = ImmutableList.builder();
+    for (String secretName : secretNames) {
+      Map.Entry<String, String> nameAndVersion = parsed.get(secretName);
+      if (nameAndVersion == null) {
+        items.add(Item.failed(secretName, 400));
+        continue;
+      }
+
+      DeliveryLookup lookup = lookups.get(nameAndVersion);
+      if (!lookup.authorized()) {
+        boolean forbidden = lookup.clientExists() && lookup.secret().isPresent();
+        auditLog.record(client.getName(), Action.READ, secretName,
+            forbidden ? Outcome.DENIED : Outcome.NOT_FOUND);
+        items.add(Item.failed(secretName, forbidden ? 403 : 404));
+        continue;
+      }
+
+      Optional<Secret> secret = secrets.get(nameAndVersion);
+      if (!secret.isPresent()) {
+        // Decryption failed, already logged by the transformer.
+        auditLog.record(client.getName(), Action.READ, secretName, Outcome.FAILED);
+        items.add(Item.failed(secretName, 500));
+        continue;
+      }
+      try {
+        items.add(Item.found(secretName, SecretDeliveryResponse.fromSecret(secret.get())));
+        auditLog.record(client.getName(), Action.READ, secretName, Outcome.GRANTED);
+      } catch (IllegalArgumentException e) {
+        logger.error("Failed creating response for secret {}: {}", secretName, e);
+        auditLog.record(client.getName(), Action.READ, secretName, Outcome.FAILED);
+        items.add(Item.failed(secretName, 500));
+      }
+    }
+    return BatchSecretDeliveryResponse.of(items.build());
+  }
+}
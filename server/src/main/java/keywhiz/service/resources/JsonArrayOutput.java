@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.resources;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Response entity writing a JSON array element by element as a producer supplies them, so a large
+ * listing is never held in memory as a whole.
+ *
+ * The producer runs while the response is written, so a producer reading from the database through
+ * a cursor keeps its transaction and connection open for as long as the client takes to read the
+ * response, bounded only by the HTTP connector's idle timeout. If the producer fails part way, the
+ * array is left unterminated so that the truncated response cannot be mistaken for a complete one.
+ *
+ * @param <T> type of the array elements
+ */
+public class JsonArrayOutput<T> implements StreamingOutput {
+  private final ObjectMapper mapper;
+  private final Consumer<Consumer<T>> producer;
+
+  /**
+   * @param mapper serializes each element
+   * @param producer called once with a consumer writing one element per call
+   */
+  public JsonArrayOutput(ObjectMapper mapper, Consumer<Consumer<T>> producer) {
+    this.mapper = mapper;
+    this.producer = producer;
+  }
+
+  @Override public void write(OutputStream output) throws IOException {
+    try (JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+      generator.writeStartArray();
+      try {
+        producer.accept(element -> {
+          try {
+            generator.writeObject(element);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      generator.writeEndArray();
+    }
+  }
+}
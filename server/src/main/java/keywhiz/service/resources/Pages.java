@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.resources;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.Response;
+import keywhiz.service.daos.Page;
+
+import static java.lang.String.format;
+import static keywhiz.api.Paging.MAX_LIMIT;
+import static keywhiz.api.Paging.NEXT_CURSOR_HEADER;
+
+/** Helpers for resources serving cursor-paged listings, see {@link keywhiz.api.Paging}. */
+public final class Pages {
+  private Pages() {}
+
+  /**
+   * @param limit requested page size
+   * @return limit, if within bounds
+   * @throws BadRequestException if limit is not between 1 and {@link keywhiz.api.Paging#MAX_LIMIT}
+   */
+  public static int checkLimit(int limit) {
+    if (limit < 1 || limit > MAX_LIMIT) {
+      throw new BadRequestException(format("limit must be between 1 and %d", MAX_LIMIT));
+    }
+    return limit;
+  }
+
+  /** @return response with the page's items, and its cursor in a header unless it is the last. */
+  public static Response response(Page<?> page) {
+    Response.ResponseBuilder response = Response.ok().entity(page.items());
+    page.next().ifPresent(next -> response.header(NEXT_CURSOR_HEADER, next));
+    return response.build();
+  }
+}
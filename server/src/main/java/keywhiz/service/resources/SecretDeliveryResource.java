@@ -19,9 +19,9 @@ package keywhiz.service.resources;
 import com.codahale.metrics.annotation.Timed;
 import com.codahale.metrics.annotation.ExceptionMetered;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
 import io.dropwizard.auth.Auth;
 import java.text.ParseException;
-import java.util.Optional;
 import javax.inject.Inject;
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.ForbiddenException;
@@ -31,16 +31,21 @@ import javax.ws.rs.NotFoundException;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import keywhiz.api.SecretDeliveryResponse;
 import keywhiz.api.model.Client;
-import keywhiz.api.model.SanitizedSecret;
 import keywhiz.api.model.Secret;
-import keywhiz.service.config.Readonly;
+import keywhiz.api.model.SecretSeriesAndContent;
+import keywhiz.service.audit.AccessAuditLog;
+import keywhiz.service.audit.AccessEvent.Action;
+import keywhiz.service.audit.AccessEvent.Outcome;
+import keywhiz.service.crypto.SecretTransformer;
 import keywhiz.service.daos.AclDAO;
 import keywhiz.service.daos.AclDAO.AclDAOFactory;
-import keywhiz.service.daos.ClientDAO;
-import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
-import keywhiz.service.daos.SecretController;
+import keywhiz.service.daos.AclDAO.DeliveryLookup;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,40 +64,42 @@ import static keywhiz.api.model.Secret.splitNameAndVersion;
 public class SecretDeliveryResource {
   private static final Logger logger = LoggerFactory.getLogger(SecretDeliveryResource.class);
 
-  private final SecretController secretController;
+  private final SecretTransformer secretTransformer;
   private final AclDAO aclDAO;
-  private final ClientDAO clientDAO;
+  private final AccessAuditLog auditLog;
 
-  @Inject public SecretDeliveryResource(@Readonly SecretController secretController,
-      AclDAOFactory aclDAOFactory, ClientDAOFactory clientDAOFactory) {
-    this.secretController = secretController;
+  @Inject public SecretDeliveryResource(SecretTransformer secretTransformer,
+      AclDAOFactory aclDAOFactory, AccessAuditLog auditLog) {
+    this.secretTransformer = secretTransformer;
     this.aclDAO = aclDAOFactory.readonly();
-    this.clientDAO = clientDAOFactory.readonly();
+    this.auditLog = auditLog;
   }
 
-  @VisibleForTesting SecretDeliveryResource(SecretController secretController, AclDAO aclDAO,
-      ClientDAO clientDAO) {
-    this.secretController = secretController;
+  @VisibleForTesting SecretDeliveryResource(SecretTransformer secretTransformer, AclDAO aclDAO,
+      AccessAuditLog auditLog) {
+    this.secretTransformer = secretTransformer;
     this.aclDAO = aclDAO;
-    this.clientDAO = clientDAO;
+    this.auditLog = auditLog;
   }
 
   /**
    * Retrieve Secret by name
    *
+   * @excludeParams request
    * @excludeParams client
    * @param secretName the name of the Secret to retrieve
    *
    * @description Returns a single Secret if found
-   * @responseMessage 200 Found and retrieved Secret with given name
+   * @responseMessage 200 Found and retrieved Secret with given name, tagged with an ETag
+   * @responseMessage 304 Secret is unchanged since the ETag sent in If-None-Match
    * @responseMessage 403 Secret is not assigned to Client
    * @responseMessage 404 Secret with given name not found
    * @responseMessage 500 Secret response could not be generated for given Secret
    */
   @Timed @ExceptionMetered
   @GET
-  public SecretDeliveryResponse getSecret(@NotEmpty @PathParam("secretName") String secretName,
-                                          @Auth Client client) {
+  public Response getSecret(@NotEmpty @PathParam("secretName") String secretName,
+                            @Context Request request, @Auth Client client) {
     String[] parts;
     try {
       parts = splitNameAndVersion(secretName);
@@ -102,30 +109,52 @@ public class SecretDeliveryResource {
     String name = parts[0];
     String version = parts[1];
 
-    Optional<SanitizedSecret> sanitizedSecret = aclDAO.getSanitizedSecretFor(client, name, version);
-    Optional<Secret> secret = secretController.getSecretByNameAndVersion(name, version);
+    DeliveryLookup lookup = aclDAO.getSecretForDelivery(client, name, version);
 
-    if (!sanitizedSecret.isPresent()) {
-      boolean clientExists = clientDAO.getClient(client.getName()).isPresent();
-      boolean secretExists = secret.isPresent();
+    if (!lookup.authorized()) {
+      boolean clientExists = lookup.clientExists();
+      boolean secretExists = lookup.secret().isPresent();
 
       if (clientExists && secretExists) {
+        auditLog.record(client.getName(), Action.READ, secretName, Outcome.DENIED);
         throw new ForbiddenException(format("Access denied: %s at '%s' by '%s'", client.getName(),
                 "/secret/" + secretName, client));
       } else {
-        if (clientExists) {
-          logger.info("Client {} requested unknown secret {}", client.getName(), secretName);
-        }
+        auditLog.record(client.getName(), Action.READ, secretName, Outcome.NOT_FOUND);
         throw new NotFoundException();
       }
     }
 
-    logger.info("Client {} granted access to {}.", client.getName(), secretName);
+    // Tagging before decrypting lets an unchanged secret skip decryption entirely.
+    SecretSeriesAndContent seriesAndContent = lookup.secret().get();
+    EntityTag etag = entityTag(seriesAndContent);
+    Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+    if (notModified != null) {
+      auditLog.record(client.getName(), Action.READ, secretName, Outcome.NOT_MODIFIED);
+      return notModified.tag(etag).build();
+    }
+
+    Response response;
     try {
-      return SecretDeliveryResponse.fromSecret(secret.get());
-    } catch (IllegalArgumentException e) {
+      Secret secret = secretTransformer.transform(seriesAndContent);
+      response = Response.ok(SecretDeliveryResponse.fromSecret(secret)).tag(etag).build();
+    } catch (RuntimeException e) {
+      auditLog.record(client.getName(), Action.READ, secretName, Outcome.FAILED);
       logger.error("Failed creating response for secret {}: {}", secretName, e);
       throw new InternalServerErrorException();
     }
+    auditLog.record(client.getName(), Action.READ, secretName, Outcome.GRANTED);
+    return response;
+  }
+
+  /** Secret contents are immutable once visible, so the version ids identify the response. */
+  private static EntityTag entityTag(SecretSeriesAndContent seriesAndContent) {
+    return new EntityTag(Hashing.sha256().newHasher()
+        .putLong(seriesAndContent.series().id())
+        .putLong(seriesAndContent.series().updatedAt().toEpochSecond())
+        .putLong(seriesAndContent.content().id())
+        .putLong(seriesAndContent.content().updatedAt().toEpochSecond())
+        .hash()
+        .toString());
   }
 }
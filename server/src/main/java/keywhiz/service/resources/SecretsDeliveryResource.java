@@ -21,17 +21,36 @@ import com.codahale.metrics.annotation.ExceptionMetered;
 import com.google.common.annotations.VisibleForTesting;
 import io.dropwizard.auth.Auth;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Inject;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import keywhiz.api.SecretDeliveryResponse;
 import keywhiz.api.model.Client;
+import keywhiz.service.audit.AccessAuditLog;
+import keywhiz.service.audit.AccessEvent.Action;
+import keywhiz.service.audit.AccessEvent.Outcome;
+import keywhiz.service.config.SecretWatchConfig;
 import keywhiz.service.daos.AclDAO;
 import keywhiz.service.daos.AclDAO.AclDAOFactory;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import keywhiz.service.daos.SecretChangeBus;
 
+import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
@@ -43,30 +62,139 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 @Path("/secrets")
 @Produces(APPLICATION_JSON)
 public class SecretsDeliveryResource {
-  private static final Logger logger = LoggerFactory.getLogger(SecretsDeliveryResource.class);
-
   private final AclDAO aclDAO;
+  private final SecretChangeBus changeBus;
+  private final SecretWatchConfig watchConfig;
+  private final AccessAuditLog auditLog;
 
-  @Inject public SecretsDeliveryResource(AclDAOFactory aclDAOFactory) {
+  @Inject public SecretsDeliveryResource(AclDAOFactory aclDAOFactory, SecretChangeBus changeBus,
+      SecretWatchConfig watchConfig, AccessAuditLog auditLog) {
     this.aclDAO = aclDAOFactory.readonly();
+    this.changeBus = changeBus;
+    this.watchConfig = watchConfig;
+    this.auditLog = auditLog;
   }
 
-  @VisibleForTesting SecretsDeliveryResource(AclDAO aclDAO) {
+  @VisibleForTesting SecretsDeliveryResource(AclDAO aclDAO, SecretChangeBus changeBus,
+      SecretWatchConfig watchConfig, AccessAuditLog auditLog) {
     this.aclDAO = aclDAO;
+    this.changeBus = changeBus;
+    this.watchConfig = watchConfig;
+    this.auditLog = auditLog;
   }
 
   /**
    * Retrieve Secret by name
    *
+   * @excludeParams request
    * @excludeParams client
    * @description Returns all Secrets for the current Client
+   * @responseMessage 200 Listed Secrets, tagged with an ETag
+   * @responseMessage 304 Secrets are unchanged since the ETag sent in If-None-Match
    */
   @Timed @ExceptionMetered
   @GET
-  public List<SecretDeliveryResponse> getSecrets(@Auth Client client) {
-    logger.info("Client {} listed available secrets.", client.getName());
-    return aclDAO.getSanitizedSecretsFor(client).stream()
+  public Response getSecrets(@Context Request request, @Auth Client client) {
+    // Computed before listing, so a concurrent change can only make the tag older than the body.
+    EntityTag etag = entityTag(client);
+    Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+    if (notModified != null) {
+      auditLog.record(client.getName(), Action.LIST, "", Outcome.NOT_MODIFIED);
+      return notModified.tag(etag).build();
+    }
+    return listSecrets(client, etag);
+  }
+
+  /**
+   * Wait for changes to the Secrets of the current Client
+   *
+   * @excludeParams client
+   * @excludeParams asyncResponse
+   * @param ifNoneMatch ETag of the Secrets the Client already has
+   * @param timeoutSeconds how long to wait for a change at most, capped by the server
+   *
+   * @description Returns all Secrets for the current Client as soon as they differ from the ones
+   * tagged with If-None-Match. Without If-None-Match, returns immediately.
+   * @responseMessage 200 Listed Secrets, tagged with an ETag
+   * @responseMessage 304 Secrets did not change before the timeout
+   */
+  @Timed @ExceptionMetered
+  @GET
+  @Path("changes")
+  public void watchSecrets(@Auth Client client,
+      @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+      @QueryParam("timeout") @DefaultValue("30") int timeoutSeconds,
+      @Suspended AsyncResponse asyncResponse) {
+    EntityTag seen;
+    try {
+      seen = (ifNoneMatch == null) ? null : EntityTag.valueOf(ifNoneMatch);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException(format("Invalid If-None-Match '%s'", ifNoneMatch));
+    }
+
+    // A zero timeout would suspend the request indefinitely, so it is at least one second.
+    long timeoutMillis = Math.min(TimeUnit.SECONDS.toMillis(Math.max(timeoutSeconds, 1)),
+        watchConfig.getMaxTimeout().toMilliseconds());
+    asyncResponse.setTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    asyncResponse.setTimeoutHandler(r -> {
+      if (r.resume(Response.notModified(seen).build())) {
+        auditLog.record(client.getName(), Action.LIST, "", Outcome.NOT_MODIFIED);
+      }
+    });
+
+    // Stop waiting for changes, and release the recheck timer, once the response is sent.
+    AtomicReference<CompletableFuture<Boolean>> pending = new AtomicReference<>();
+    asyncResponse.register((CompletionCallback) failure -> {
+      CompletableFuture<Boolean> next = pending.get();
+      if (next != null) {
+        next.cancel(false);
+      }
+    });
+    watch(client, seen, asyncResponse, pending);
+  }
+
+  /**
+   * Answers the watch if the client's secrets differ from the ones it has. Otherwise waits for a
+   * local change notification, or the recheck interval to pick up changes made elsewhere. Runs on
+   * the change bus's workers when re-checking.
+   */
+  private void watch(Client client, EntityTag seen, AsyncResponse asyncResponse,
+      AtomicReference<CompletableFuture<Boolean>> pending) {
+    if (asyncResponse.isDone()) {
+      return;
+    }
+
+    try {
+      EntityTag etag = entityTag(client);
+      if (!etag.equals(seen)) {
+        asyncResponse.resume(listSecrets(client, etag));
+        return;
+      }
+    } catch (RuntimeException e) {
+      asyncResponse.resume(e);
+      return;
+    }
+
+    CompletableFuture<Boolean> next =
+        changeBus.nextChange(client.getId(), watchConfig.getRecheckInterval().toMilliseconds());
+    pending.set(next);
+    if (asyncResponse.isDone()) {
+      next.cancel(false);
+      return;
+    }
+    next.thenRun(() -> watch(client, seen, asyncResponse, pending));
+  }
+
+  private EntityTag entityTag(Client client) {
+    return new EntityTag(aclDAO.getSecretsFingerprintFor(client).toString());
+  }
+
+  private Response listSecrets(Client client, EntityTag etag) {
+    List<SecretDeliveryResponse> secrets = aclDAO.getSanitizedSecretsFor(client).stream()
         .map(SecretDeliveryResponse::fromSanitizedSecret)
         .collect(toList());
+    Response response = Response.ok(secrets).tag(etag).build();
+    auditLog.record(client.getName(), Action.LIST, "", Outcome.GRANTED);
+    return response;
   }
 }
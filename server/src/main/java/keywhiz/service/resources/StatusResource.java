@@ -3,8 +3,6 @@ package keywhiz.service.resources;
 import com.codahale.metrics.annotation.ExceptionMetered;
 import com.codahale.metrics.annotation.Timed;
 import com.codahale.metrics.health.HealthCheck;
-import com.codahale.metrics.health.HealthCheckRegistry;
-import io.dropwizard.setup.Environment;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +12,7 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Response;
+import keywhiz.CachedHealthChecks;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,11 +23,11 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 @Path("/_status")
 @Produces(APPLICATION_JSON)
 public class StatusResource {
-  private Environment environment;
+  private final CachedHealthChecks healthChecks;
   private static final Logger logger = LoggerFactory.getLogger(SecretDeliveryResource.class);
 
-  @Inject public StatusResource(Environment environment) {
-    this.environment = environment;
+  @Inject public StatusResource(CachedHealthChecks healthChecks) {
+    this.healthChecks = healthChecks;
   }
 
   public static class StatusResponse {
@@ -44,14 +43,22 @@ public class StatusResource {
       return status;
     }
 
+    /** @return milliseconds since the health checks ran. */
+    public long getAgeMillis() {
+      return ageMillis;
+    }
+
     private String status;
     private String message;
     private SortedMap<String, HealthCheck.Result> results;
+    private long ageMillis;
 
-    StatusResponse(String status, String message, SortedMap<String, HealthCheck.Result> results) {
+    StatusResponse(String status, String message, SortedMap<String, HealthCheck.Result> results,
+        long ageMillis) {
       this.status = status;
       this.message = message;
       this.results = results;
+      this.ageMillis = ageMillis;
     }
 
     @Override public String toString() {
@@ -59,15 +66,25 @@ public class StatusResource {
           "status='" + this.getStatus() + '\'' +
           ", message='" + this.getMessage() + '\'' +
           ", results=" + this.getResults() +
+          ", ageMillis=" + this.getAgeMillis() +
           '}';
     }
   }
 
+  /** Serves the latest results of the background health checks rather than running them. */
   @Timed @ExceptionMetered
   @GET
   public Response get() {
-    HealthCheckRegistry checks = this.environment.healthChecks();
-    SortedMap<String, HealthCheck.Result> results = checks.runHealthChecks();
+    CachedHealthChecks.Snapshot snapshot = healthChecks.latest();
+    SortedMap<String, HealthCheck.Result> results = snapshot.results();
+    long ageMillis = healthChecks.ageMillis(snapshot);
+
+    if (healthChecks.isStale(snapshot)) {
+      logger.warn("Health checks last ran {}ms ago", ageMillis);
+      String message = "health checks last ran " + ageMillis + "ms ago";
+      StatusResponse sr = new StatusResponse("critical", message, results, ageMillis);
+      return Response.serverError().entity(sr).build();
+    }
 
     List<String> failing = results.entrySet().stream()
         .filter(r -> !r.getValue().isHealthy())
@@ -77,10 +94,10 @@ public class StatusResource {
     if (!failing.isEmpty()) {
       logger.warn("Health checks failed: {}", results);
       String message = "failing health checks: " + Arrays.toString(failing.toArray());
-      StatusResponse sr = new StatusResponse("critical", message, results);
+      StatusResponse sr = new StatusResponse("critical", message, results, ageMillis);
       return Response.serverError().entity(sr).build();
     }
-    StatusResponse sr = new StatusResponse("ok", "ok", results);
+    StatusResponse sr = new StatusResponse("ok", "ok", results, ageMillis);
     return Response.ok(sr).build();
   }
 }
@@ -18,14 +18,14 @@ package keywhiz.service.resources.admin;
 
 import com.codahale.metrics.annotation.Timed;
 import com.codahale.metrics.annotation.ExceptionMetered;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import io.dropwizard.auth.Auth;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.LongParam;
 import java.net.URI;
-import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import javax.inject.Inject;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
@@ -39,6 +39,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
 import keywhiz.api.ClientDetailResponse;
 import keywhiz.api.CreateClientRequest;
@@ -50,12 +51,18 @@ import keywhiz.service.daos.AclDAO;
 import keywhiz.service.daos.AclDAO.AclDAOFactory;
 import keywhiz.service.daos.ClientDAO;
 import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
+import keywhiz.service.daos.Page;
 import keywhiz.service.exceptions.ConflictException;
+import keywhiz.service.resources.JsonArrayOutput;
+import keywhiz.service.resources.Pages;
 import org.jooq.exception.DataAccessException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static keywhiz.api.Paging.CURSOR;
+import static keywhiz.api.Paging.LIMIT;
+import static keywhiz.service.resources.Pages.checkLimit;
 
 /**
  * @parentEndpointName clients-admin
@@ -68,15 +75,19 @@ public class ClientsResource {
 
   private final AclDAO aclDAO;
   private final ClientDAO clientDAO;
+  private final ObjectMapper mapper;
 
-  @Inject public ClientsResource(AclDAOFactory aclDAOFactory, ClientDAOFactory clientDAOFactory) {
+  @Inject public ClientsResource(AclDAOFactory aclDAOFactory, ClientDAOFactory clientDAOFactory,
+      ObjectMapper mapper) {
     this.aclDAO = aclDAOFactory.readwrite();
     this.clientDAO = clientDAOFactory.readwrite();
+    this.mapper = mapper;
   }
 
-  @VisibleForTesting ClientsResource(AclDAO aclDAO, ClientDAO clientDAO) {
+  @VisibleForTesting ClientsResource(AclDAO aclDAO, ClientDAO clientDAO, ObjectMapper mapper) {
     this.aclDAO = aclDAO;
     this.clientDAO = clientDAO;
+    this.mapper = mapper;
   }
 
   /**
@@ -85,25 +96,38 @@ public class ClientsResource {
    * @excludeParams user
    * @optionalParams name
    * @param name the name of the Client to retrieve, if provided
+   * @optionalParams limit
+   * @param limit page through all Clients this many at a time, if provided
+   * @optionalParams cursor
+   * @param cursor the X-Next-Cursor header of the previous page, if paging
    *
    * @description Returns a single Client or a set of all Clients for this user.
    * Used by Keywhiz CLI and the web ui.
    * @responseMessage 200 Found and retrieved Client(s)
+   * @responseMessage 400 limit out of range (if limit provided)
    * @responseMessage 404 Client with given name not found (if name provided)
    */
   @Timed @ExceptionMetered
   @GET
-  public Response findClients(@Auth User user, @DefaultValue("") @QueryParam("name") String name) {
+  public Response findClients(@Auth User user, @DefaultValue("") @QueryParam("name") String name,
+      @QueryParam(LIMIT) IntParam limit, @DefaultValue("0") @QueryParam(CURSOR) LongParam cursor) {
     if (name.isEmpty()) {
+      if (limit != null) {
+        return Pages.response(listClients(user, cursor.get(), checkLimit(limit.get())));
+      }
       return Response.ok().entity(listClients(user)).build();
     }
     return Response.ok().entity(getClientByName(user, name)).build();
   }
 
-  protected List<Client> listClients(@Auth User user) {
+  protected StreamingOutput listClients(@Auth User user) {
     logger.info("User '{}' listing clients.", user);
-    Set<Client> clients = clientDAO.getClients();
-    return ImmutableList.copyOf(clients);
+    return new JsonArrayOutput<>(mapper, clientDAO::streamClients);
+  }
+
+  protected Page<Client> listClients(@Auth User user, long after, int limit) {
+    logger.info("User '{}' listing clients after {}.", user, after);
+    return clientDAO.getClients(after, limit);
   }
 
   protected Client getClientByName(@Auth User user, String name) {
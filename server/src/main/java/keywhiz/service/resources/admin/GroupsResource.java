@@ -18,14 +18,14 @@ package keywhiz.service.resources.admin;
 
 import com.codahale.metrics.annotation.Timed;
 import com.codahale.metrics.annotation.ExceptionMetered;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import io.dropwizard.auth.Auth;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.LongParam;
 import java.net.URI;
-import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import javax.inject.Inject;
 import javax.validation.Valid;
 import javax.ws.rs.BadRequestException;
@@ -40,6 +40,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
 import keywhiz.api.CreateGroupRequest;
 import keywhiz.api.GroupDetailResponse;
@@ -51,11 +52,17 @@ import keywhiz.service.daos.AclDAO;
 import keywhiz.service.daos.AclDAO.AclDAOFactory;
 import keywhiz.service.daos.GroupDAO;
 import keywhiz.service.daos.GroupDAO.GroupDAOFactory;
+import keywhiz.service.daos.Page;
+import keywhiz.service.resources.JsonArrayOutput;
+import keywhiz.service.resources.Pages;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static com.google.common.base.Strings.nullToEmpty;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static keywhiz.api.Paging.CURSOR;
+import static keywhiz.api.Paging.LIMIT;
+import static keywhiz.service.resources.Pages.checkLimit;
 
 /**
  * @parentEndpointName groups-admin
@@ -69,15 +76,19 @@ public class GroupsResource {
   private static final Logger logger = LoggerFactory.getLogger(GroupsResource.class);
   private final AclDAO aclDAO;
   private final GroupDAO groupDAO;
+  private final ObjectMapper mapper;
 
-  @Inject public GroupsResource(AclDAOFactory aclDAOFactory, GroupDAOFactory groupDAOFactory) {
+  @Inject public GroupsResource(AclDAOFactory aclDAOFactory, GroupDAOFactory groupDAOFactory,
+      ObjectMapper mapper) {
     this.aclDAO = aclDAOFactory.readwrite();
     this.groupDAO = groupDAOFactory.readwrite();
+    this.mapper = mapper;
   }
 
-  @VisibleForTesting GroupsResource(AclDAO aclDAO, GroupDAO groupDAO) {
+  @VisibleForTesting GroupsResource(AclDAO aclDAO, GroupDAO groupDAO, ObjectMapper mapper) {
     this.aclDAO = aclDAO;
     this.groupDAO = groupDAO;
+    this.mapper = mapper;
   }
 
   /**
@@ -86,25 +97,38 @@ public class GroupsResource {
    * @excludeParams user
    * @optionalParams name
    * @param name the name of the Group to retrieve, if provided
+   * @optionalParams limit
+   * @param limit page through all Groups this many at a time, if provided
+   * @optionalParams cursor
+   * @param cursor the X-Next-Cursor header of the previous page, if paging
    *
    * @description Returns a single Group or a set of all Groups for this user.
    * Used by Keywhiz CLI and the web ui.
    * @responseMessage 200 Found and retrieved Group(s)
+   * @responseMessage 400 limit out of range (if limit provided)
    * @responseMessage 404 Group with given name not found (if name provided)
    */
   @Timed @ExceptionMetered
   @GET
-  public Response findGroups(@Auth User user, @DefaultValue("") @QueryParam("name") String name) {
+  public Response findGroups(@Auth User user, @DefaultValue("") @QueryParam("name") String name,
+      @QueryParam(LIMIT) IntParam limit, @DefaultValue("0") @QueryParam(CURSOR) LongParam cursor) {
     if (name.isEmpty()) {
+      if (limit != null) {
+        return Pages.response(listGroups(user, cursor.get(), checkLimit(limit.get())));
+      }
       return Response.ok().entity(listGroups(user)).build();
     }
     return Response.ok().entity(getGroupByName(user, name)).build();
   }
 
-  protected List<Group> listGroups(@Auth User user) {
+  protected StreamingOutput listGroups(@Auth User user) {
     logger.info("User '{}' listing groups.", user);
-    Set<Group> groups = groupDAO.getGroups();
-    return ImmutableList.copyOf(groups);
+    return new JsonArrayOutput<>(mapper, groupDAO::streamGroups);
+  }
+
+  protected Page<Group> listGroups(@Auth User user, long after, int limit) {
+    logger.info("User '{}' listing groups after {}.", user, after);
+    return groupDAO.getGroups(after, limit);
   }
 
   protected Group getGroupByName(@Auth User user, String name) {
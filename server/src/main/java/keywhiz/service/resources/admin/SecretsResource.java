@@ -18,9 +18,11 @@ package keywhiz.service.resources.admin;
 
 import com.codahale.metrics.annotation.Timed;
 import com.codahale.metrics.annotation.ExceptionMetered;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import io.dropwizard.auth.Auth;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.LongParam;
 import java.net.URI;
 import java.util.List;
@@ -39,6 +41,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
 import keywhiz.api.CreateSecretRequest;
 import keywhiz.api.SecretDetailResponse;
@@ -50,16 +53,22 @@ import keywhiz.api.model.VersionGenerator;
 import keywhiz.auth.User;
 import keywhiz.service.daos.AclDAO;
 import keywhiz.service.daos.AclDAO.AclDAOFactory;
+import keywhiz.service.daos.Page;
 import keywhiz.service.daos.SecretController;
 import keywhiz.service.daos.SecretSeriesDAO;
 import keywhiz.service.daos.SecretSeriesDAO.SecretSeriesDAOFactory;
 import keywhiz.service.exceptions.ConflictException;
+import keywhiz.service.resources.JsonArrayOutput;
+import keywhiz.service.resources.Pages;
 import org.jooq.exception.DataAccessException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static java.lang.String.format;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static keywhiz.api.Paging.CURSOR;
+import static keywhiz.api.Paging.LIMIT;
+import static keywhiz.service.resources.Pages.checkLimit;
 
 /**
  * @parentEndpointName secrets-admin
@@ -75,19 +84,22 @@ public class SecretsResource {
   private final SecretController secretController;
   private final AclDAO aclDAO;
   private final SecretSeriesDAO secretSeriesDAO;
+  private final ObjectMapper mapper;
 
   @Inject public SecretsResource(SecretController secretController, AclDAOFactory aclDAOFactory,
-      SecretSeriesDAOFactory secretSeriesDAOFactory) {
+      SecretSeriesDAOFactory secretSeriesDAOFactory, ObjectMapper mapper) {
     this.secretController = secretController;
     this.aclDAO = aclDAOFactory.readwrite();
     this.secretSeriesDAO = secretSeriesDAOFactory.readwrite();
+    this.mapper = mapper;
   }
 
   @VisibleForTesting SecretsResource(SecretController secretController, AclDAO aclDAO,
-      SecretSeriesDAO secretSeriesDAO) {
+      SecretSeriesDAO secretSeriesDAO, ObjectMapper mapper) {
     this.secretController = secretController;
     this.aclDAO = aclDAO;
     this.secretSeriesDAO = secretSeriesDAO;
+    this.mapper = mapper;
   }
 
   /**
@@ -99,18 +111,30 @@ public class SecretsResource {
    * @optionalParams version
    * @param version the version of the Secret to retrieve, if provided
    * @param nameOnly if set, the result only contains the id and name for the secrets.
+   * @optionalParams limit
+   * @param limit page through all Secrets this many at a time, if provided
+   * @optionalParams cursor
+   * @param cursor the X-Next-Cursor header of the previous page, if paging
    *
    * @description Returns a single Secret or a set of all Secrets for this user.
    * Used by Keywhiz CLI and the web ui.
    * @responseMessage 200 Found and retrieved Secret(s)
+   * @responseMessage 400 limit out of range (if limit provided)
    * @responseMessage 404 Secret with given name not found (if name provided)
    */
   @Timed @ExceptionMetered
   @GET
   public Response findSecrets(@Auth User user, @DefaultValue("") @QueryParam("name") String name,
       @DefaultValue("") @QueryParam("version") String version,
-      @DefaultValue("") @QueryParam("nameOnly") String nameOnly) {
+      @DefaultValue("") @QueryParam("nameOnly") String nameOnly,
+      @QueryParam(LIMIT) IntParam limit, @DefaultValue("0") @QueryParam(CURSOR) LongParam cursor) {
     if (name.isEmpty()) {
+      if (limit != null) {
+        int checkedLimit = checkLimit(limit.get());
+        return Pages.response(nameOnly.isEmpty() ?
+            listSecrets(user, cursor.get(), checkedLimit) :
+            listSecretsNameOnly(user, cursor.get(), checkedLimit));
+      }
       if (nameOnly.isEmpty()) {
         return Response.ok().entity(listSecrets(user)).build();
       } else {
@@ -120,9 +144,14 @@ public class SecretsResource {
     return Response.ok().entity(retrieveSecret(user, name, version)).build();
   }
 
-  protected List<SanitizedSecret> listSecrets(@Auth User user) {
+  protected StreamingOutput listSecrets(@Auth User user) {
     logger.info("User '{}' listing secrets.", user);
-    return secretController.getSanitizedSecrets();
+    return new JsonArrayOutput<>(mapper, secretController::streamSanitizedSecrets);
+  }
+
+  protected Page<SanitizedSecret> listSecrets(@Auth User user, long after, int limit) {
+    logger.info("User '{}' listing secrets after {}.", user, after);
+    return secretController.getSanitizedSecrets(after, limit);
   }
 
   protected List<SanitizedSecret> listSecretsNameOnly(@Auth User user) {
@@ -130,6 +159,11 @@ public class SecretsResource {
     return secretController.getSecretsNameOnly();
   }
 
+  protected Page<SanitizedSecret> listSecretsNameOnly(@Auth User user, long after, int limit) {
+    logger.info("User '{}' listing secrets after {}.", user, after);
+    return secretController.getSecretsNameOnly(after, limit);
+  }
+
   protected SanitizedSecret retrieveSecret(@Auth User user, String name, String version) {
     logger.info("User '{}' retrieving secret name={} version={}.", user, name, version);
     return sanitizedSecretFromNameAndVersion(name, version);
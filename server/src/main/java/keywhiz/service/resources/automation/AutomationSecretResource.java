@@ -17,8 +17,10 @@ package keywhiz.service.resources.automation;
 
 import com.codahale.metrics.annotation.Timed;
 import com.codahale.metrics.annotation.ExceptionMetered;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
 import io.dropwizard.auth.Auth;
 import io.dropwizard.jersey.params.LongParam;
 import java.util.List;
@@ -35,11 +37,11 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import keywhiz.api.AutomationSecretResponse;
 import keywhiz.api.CreateSecretRequest;
 import keywhiz.api.model.AutomationClient;
 import keywhiz.api.model.Group;
-import keywhiz.api.model.SanitizedSecret;
 import keywhiz.api.model.Secret;
 import keywhiz.api.model.VersionGenerator;
 import keywhiz.service.daos.AclDAO;
@@ -48,6 +50,7 @@ import keywhiz.service.daos.SecretController;
 import keywhiz.service.daos.SecretSeriesDAO;
 import keywhiz.service.daos.SecretSeriesDAO.SecretSeriesDAOFactory;
 import keywhiz.service.exceptions.ConflictException;
+import keywhiz.service.resources.JsonArrayOutput;
 import keywhiz.service.resources.automation.v2.SecretResource;
 import org.jooq.exception.DataAccessException;
 import org.slf4j.Logger;
@@ -70,19 +73,23 @@ public class AutomationSecretResource {
   private final SecretController secretController;
   private final SecretSeriesDAO secretSeriesDAO;
   private final AclDAO aclDAO;
+  private final ObjectMapper mapper;
 
   @Inject public AutomationSecretResource(SecretController secretController,
-      SecretSeriesDAOFactory secretSeriesDAOFactory, AclDAOFactory aclDAOFactory) {
+      SecretSeriesDAOFactory secretSeriesDAOFactory, AclDAOFactory aclDAOFactory,
+      ObjectMapper mapper) {
     this.secretController = secretController;
     this.secretSeriesDAO = secretSeriesDAOFactory.readwrite();
     this.aclDAO = aclDAOFactory.readwrite();
+    this.mapper = mapper;
   }
 
   @VisibleForTesting AutomationSecretResource(SecretController secretController,
-      SecretSeriesDAO secretSeriesDAO, AclDAO aclDAO) {
+      SecretSeriesDAO secretSeriesDAO, AclDAO aclDAO, ObjectMapper mapper) {
     this.secretController = secretController;
     this.secretSeriesDAO = secretSeriesDAO;
     this.aclDAO = aclDAO;
+    this.mapper = mapper;
   }
 
   /**
@@ -141,11 +148,9 @@ public class AutomationSecretResource {
    */
   @Timed @ExceptionMetered
   @GET
-  public ImmutableList<AutomationSecretResponse> readSecrets(
+  public Response readSecrets(
       @Auth AutomationClient automationClient, @QueryParam("name") String name) {
 
-    ImmutableList.Builder<AutomationSecretResponse> responseBuilder = ImmutableList.builder();
-
     if (name != null) {
       Optional<Secret> optionalSecret = secretController.getSecretByNameAndVersion(name, "");
       if (!optionalSecret.isPresent()) {
@@ -155,22 +160,18 @@ public class AutomationSecretResource {
       Secret secret = optionalSecret.get();
       ImmutableList<Group> groups =
           ImmutableList.copyOf(aclDAO.getGroupsFor(secret));
-      responseBuilder.add(AutomationSecretResponse.fromSecret(secret, groups));
-    } else {
-      List<SanitizedSecret> secrets = secretController.getSanitizedSecrets();
-
-      for (SanitizedSecret sanitizedSecret : secrets) {
-        Secret secret = secretController.getSecretByIdAndVersion(
-            sanitizedSecret.id(), sanitizedSecret.version()).orElseThrow(() ->
-            new IllegalStateException(format("Cannot find record related to %s", sanitizedSecret)));
-
-        ImmutableList<Group> groups =
-            ImmutableList.copyOf(aclDAO.getGroupsFor(secret));
-        responseBuilder.add(AutomationSecretResponse.fromSecret(secret, groups));
-      }
+      return Response.ok()
+          .entity(ImmutableList.of(AutomationSecretResponse.fromSecret(secret, groups)))
+          .build();
     }
 
-    return responseBuilder.build();
+    // Groups for all secrets come from one query, then secrets are streamed out as decrypted.
+    ImmutableSetMultimap<Long, Group> groupsBySecretId = aclDAO.getGroupsBySecretId();
+    StreamingOutput secrets = new JsonArrayOutput<AutomationSecretResponse>(mapper,
+        consumer -> secretController.streamSecrets(secret -> consumer.accept(
+            AutomationSecretResponse.fromSecret(secret,
+                ImmutableList.copyOf(groupsBySecretId.get(secret.getId()))))));
+    return Response.ok().entity(secrets).build();
   }
 
   /**
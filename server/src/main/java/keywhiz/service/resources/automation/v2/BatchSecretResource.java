@@ -0,0 +1,122 @@
+package keywhiz.service.resources.automation.v2;
+
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Timed;
+import io.dropwizard.auth.Auth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import javax.inject.Inject;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import keywhiz.api.automation.v2.BatchCreateSecretsResponseV2;
+import keywhiz.api.automation.v2.BatchCreateSecretsResponseV2.Item;
+import keywhiz.api.automation.v2.CreateSecretRequestV2;
+import keywhiz.api.model.AutomationClient;
+import keywhiz.api.model.VersionGenerator;
+import keywhiz.service.daos.SecretController;
+import keywhiz.service.daos.SecretController.SecretBuilder;
+import keywhiz.service.exceptions.ConflictException;
+import org.jooq.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+
+/**
+ * @parentEndpointName automation/v2-secret-management
+ * @resourceDescription Automation endpoints to create many secrets at once
+ */
+@Path("/automation/v2/batch/secrets")
+@Produces(APPLICATION_JSON)
+public class BatchSecretResource {
+  private static final Logger logger = LoggerFactory.getLogger(BatchSecretResource.class);
+
+  /** Most secrets creatable in one request. */
+  static final int MAX_SECRETS = 1000;
+
+  private final SecretController secretController;
+
+  @Inject public BatchSecretResource(SecretController secretController) {
+    this.secretController = secretController;
+  }
+
+  /**
+   * Creates several secrets and assigns them to their groups. Contents are encrypted in parallel and
+   * all secrets and their group assignments are inserted in one transaction.
+   *
+   * @excludeParams automationClient
+   * @param requests secrets to create, as for a single create
+   * @return one result per requested secret, in request order, with the status a single create
+   * would have had
+   *
+   * @responseMessage 200 Secrets processed, see per-secret status
+   * @responseMessage 400 Too many secrets requested
+   * @responseMessage 409 Secrets conflicted with ones created concurrently, none were created
+   */
+  @Timed @ExceptionMetered
+  @POST
+  @Consumes(APPLICATION_JSON)
+  public BatchCreateSecretsResponseV2 createSecrets(@Auth AutomationClient automationClient,
+      @Valid @NotNull List<CreateSecretRequestV2> requests) {
+    if (requests.size() > MAX_SECRETS) {
+      throw new BadRequestException(format("At most %d secrets per request.", MAX_SECRETS));
+    }
+
+    // Requests which would fail a single create's argument checks are answered up front.
+    Item[] items = new Item[requests.size()];
+    List<Integer> positions = new ArrayList<>(requests.size());
+    List<SecretBuilder> builders = new ArrayList<>(requests.size());
+    List<Set<String>> groups = new ArrayList<>(requests.size());
+    List<String> versions = new ArrayList<>(requests.size());
+    for (int i = 0; i < requests.size(); i++) {
+      CreateSecretRequestV2 request = requests.get(i);
+      if (request.content().isEmpty()) {
+        items[i] = Item.failed(request.name(), 400);
+        continue;
+      }
+      String version = request.versioned() ? VersionGenerator.now().toHex() : "";
+      positions.add(i);
+      versions.add(version);
+      groups.add(request.groups());
+      builders.add(secretController
+          .builder(request.name(), request.content(), automationClient.getName(), request.expiry())
+          .withDescription(request.description())
+          .withMetadata(request.metadata())
+          .withType(request.type())
+          .withVersion(version));
+    }
+
+    List<Optional<Long>> secretIds;
+    try {
+      secretIds = secretController.createSecrets(builders, groups);
+    } catch (DataAccessException e) {
+      logger.warn("Cannot create {} secrets: {}", builders.size(), e);
+      throw new ConflictException("Conflict creating secrets.");
+    }
+
+    int created = 0;
+    for (int j = 0; j < positions.size(); j++) {
+      CreateSecretRequestV2 request = requests.get(positions.get(j));
+      Optional<Long> secretId = secretIds.get(j);
+      if (secretId.isPresent()) {
+        items[positions.get(j)] = Item.created(request.name(), versions.get(j));
+        created++;
+      } else {
+        items[positions.get(j)] = Item.failed(request.name(), 409);
+      }
+    }
+
+    logger.info("Automation ({}) - created {} of {} secrets", automationClient.getName(), created,
+        requests.size());
+    return BatchCreateSecretsResponseV2.of(Arrays.asList(items));
+  }
+}
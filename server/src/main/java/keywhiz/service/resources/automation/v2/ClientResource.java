@@ -2,12 +2,12 @@ package keywhiz.service.resources.automation.v2;
 
 import com.codahale.metrics.annotation.Timed;
 import com.codahale.metrics.annotation.ExceptionMetered;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import io.dropwizard.auth.Auth;
+import io.dropwizard.jersey.params.IntParam;
 import java.net.URI;
-import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Stream;
 import javax.inject.Inject;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
@@ -19,6 +19,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import keywhiz.api.automation.v2.ClientDetailResponseV2;
@@ -27,22 +28,21 @@ import keywhiz.api.automation.v2.ModifyClientRequestV2;
 import keywhiz.api.automation.v2.ModifyGroupsRequestV2;
 import keywhiz.api.model.AutomationClient;
 import keywhiz.api.model.Client;
-import keywhiz.api.model.Group;
-import keywhiz.api.model.SanitizedSecret;
 import keywhiz.service.daos.AclDAO;
 import keywhiz.service.daos.AclDAO.AclDAOFactory;
 import keywhiz.service.daos.ClientDAO;
 import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
-import keywhiz.service.daos.GroupDAO;
-import keywhiz.service.daos.GroupDAO.GroupDAOFactory;
 import keywhiz.service.exceptions.ConflictException;
+import keywhiz.service.resources.Pages;
 import org.apache.commons.lang3.NotImplementedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static java.lang.String.format;
-import static java.util.stream.Collectors.toSet;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static keywhiz.api.Paging.CURSOR;
+import static keywhiz.api.Paging.LIMIT;
+import static keywhiz.service.resources.Pages.checkLimit;
 
 /**
  * @parentEndpointName automation/v2-client-management
@@ -54,13 +54,10 @@ public class ClientResource {
 
   private final AclDAO aclDAO;
   private final ClientDAO clientDAO;
-  private final GroupDAO groupDAO;
 
-  @Inject public ClientResource(AclDAOFactory aclDAOFactory, ClientDAOFactory clientDAOFactory,
-      GroupDAOFactory groupDAOFactory) {
+  @Inject public ClientResource(AclDAOFactory aclDAOFactory, ClientDAOFactory clientDAOFactory) {
     this.aclDAO = aclDAOFactory.readwrite();
     this.clientDAO = clientDAOFactory.readwrite();
-    this.groupDAO = groupDAOFactory.readwrite();
   }
 
   /**
@@ -90,9 +87,7 @@ public class ClientResource {
     long clientId = clientDAO.createClient(client, creator, request.description());
 
     // Enrolls client in any requested groups
-    groupsToGroupIds(request.groups())
-        .forEach((maybeGroupId) -> maybeGroupId.ifPresent(
-            (groupId) -> aclDAO.findAndEnrollClient(clientId, groupId)));
+    aclDAO.findAndModifyMemberships(clientId, request.groups(), ImmutableSet.of());
 
     URI uri = UriBuilder.fromResource(ClientResource.class).path(client).build();
     return Response.created(uri).build();
@@ -102,15 +97,23 @@ public class ClientResource {
    * Retrieve listing of client names
    *
    * @excludeParams automationClient
+   * @optionalParams limit
+   * @param limit page through the names this many at a time, in name order, if provided
+   * @optionalParams cursor
+   * @param cursor the X-Next-Cursor header of the previous page, if paging
+   *
    * @responseMessage 200 List of client names
+   * @responseMessage 400 limit out of range (if limit provided)
    */
   @Timed @ExceptionMetered
   @GET
   @Produces(APPLICATION_JSON)
-  public Iterable<String> clientListing(@Auth AutomationClient automationClient) {
-    return clientDAO.getClients().stream()
-        .map(Client::getName)
-        .collect(toSet());
+  public Response clientListing(@Auth AutomationClient automationClient,
+      @QueryParam(LIMIT) IntParam limit, @QueryParam(CURSOR) String cursor) {
+    if (limit != null) {
+      return Pages.response(clientDAO.getClientNames(cursor, checkLimit(limit.get())));
+    }
+    return Response.ok(clientDAO.getClientNames()).build();
   }
 
   /**
@@ -152,9 +155,7 @@ public class ClientResource {
       @PathParam("name") String name) {
     Client client = clientDAO.getClient(name)
         .orElseThrow(NotFoundException::new);
-    return aclDAO.getGroupsFor(client).stream()
-        .map(Group::getName)
-        .collect(toSet());
+    return aclDAO.getGroupNamesFor(client);
   }
 
   /**
@@ -178,26 +179,14 @@ public class ClientResource {
         .orElseThrow(NotFoundException::new);
 
     long clientId = client.getId();
-    Set<String> oldGroups = aclDAO.getGroupsFor(client).stream()
-        .map(Group::getName)
-        .collect(toSet());
+    Set<String> oldGroups = aclDAO.getGroupNamesFor(client);
 
     Set<String> groupsToAdd = Sets.difference(request.addGroups(), oldGroups);
     Set<String> groupsToRemove = Sets.intersection(request.removeGroups(), oldGroups);
 
-    // TODO: should optimize AclDAO to use names and return only name column
-
-    groupsToGroupIds(groupsToAdd)
-        .forEach((maybeGroupId) -> maybeGroupId.ifPresent(
-            (groupId) -> aclDAO.findAndEnrollClient(clientId, groupId)));
-
-    groupsToGroupIds(groupsToRemove)
-        .forEach((maybeGroupId) -> maybeGroupId.ifPresent(
-            (groupId) -> aclDAO.findAndEvictClient(clientId, groupId)));
+    aclDAO.findAndModifyMemberships(clientId, groupsToAdd, groupsToRemove);
 
-    return aclDAO.getGroupsFor(client).stream()
-        .map(Group::getName)
-        .collect(toSet());
+    return aclDAO.getGroupNamesFor(client);
   }
 
   /**
@@ -218,9 +207,7 @@ public class ClientResource {
       @PathParam("name") String name) {
     Client client = clientDAO.getClient(name)
         .orElseThrow(NotFoundException::new);
-    return aclDAO.getSanitizedSecretsFor(client).stream()
-        .map(SanitizedSecret::name)
-        .collect(toSet());
+    return aclDAO.getSecretNamesFor(client);
   }
 
   /**
@@ -270,10 +257,4 @@ public class ClientResource {
     throw new NotImplementedException(format(
         "Need to implement mutation methods in DAO to rename %s to %s", client.getName(), newName));
   }
-
-  private Stream<Optional<Long>> groupsToGroupIds(Set<String> groupNames) {
-    return groupNames.stream()
-        .map(groupDAO::getGroup)
-        .map((group) -> group.map(Group::getId));
-  }
 }
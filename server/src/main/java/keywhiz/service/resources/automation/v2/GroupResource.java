@@ -20,9 +20,7 @@ import javax.ws.rs.core.UriBuilder;
 import keywhiz.api.automation.v2.CreateGroupRequestV2;
 import keywhiz.api.automation.v2.GroupDetailResponseV2;
 import keywhiz.api.model.AutomationClient;
-import keywhiz.api.model.Client;
 import keywhiz.api.model.Group;
-import keywhiz.api.model.SanitizedSecret;
 import keywhiz.service.daos.AclDAO;
 import keywhiz.service.daos.AclDAO.AclDAOFactory;
 import keywhiz.service.daos.GroupDAO;
@@ -32,7 +30,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static java.lang.String.format;
-import static java.util.stream.Collectors.toSet;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
 /**
@@ -88,9 +85,7 @@ public class GroupResource {
   @GET
   @Produces(APPLICATION_JSON)
   public Iterable<String> groupListing(@Auth AutomationClient automationClient) {
-    return groupDAO.getGroups().stream()
-        .map(Group::getName)
-        .collect(toSet());
+    return groupDAO.getGroupNames();
   }
 
   /**
@@ -111,13 +106,8 @@ public class GroupResource {
     Group group = groupDAO.getGroup(name)
         .orElseThrow(NotFoundException::new);
 
-    Set<String> secrets = aclDAO.getSanitizedSecretsFor(group).stream()
-        .map(SanitizedSecret::name)
-        .collect(toSet());
-
-    Set<String> clients = aclDAO.getClientsFor(group).stream()
-        .map(Client::getName)
-        .collect(toSet());
+    Set<String> secrets = aclDAO.getSecretNamesFor(group);
+    Set<String> clients = aclDAO.getClientNamesFor(group);
 
     return GroupDetailResponseV2.builder()
         .group(group)
@@ -2,12 +2,11 @@ package keywhiz.service.resources.automation.v2;
 
 import com.codahale.metrics.annotation.Timed;
 import com.codahale.metrics.annotation.ExceptionMetered;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import io.dropwizard.auth.Auth;
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Stream;
 import javax.inject.Inject;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
@@ -25,15 +24,11 @@ import keywhiz.api.automation.v2.CreateSecretRequestV2;
 import keywhiz.api.automation.v2.ModifyGroupsRequestV2;
 import keywhiz.api.automation.v2.SecretDetailResponseV2;
 import keywhiz.api.model.AutomationClient;
-import keywhiz.api.model.Group;
-import keywhiz.api.model.SanitizedSecret;
 import keywhiz.api.model.Secret;
 import keywhiz.api.model.SecretSeries;
 import keywhiz.api.model.VersionGenerator;
 import keywhiz.service.daos.AclDAO;
 import keywhiz.service.daos.AclDAO.AclDAOFactory;
-import keywhiz.service.daos.GroupDAO;
-import keywhiz.service.daos.GroupDAO.GroupDAOFactory;
 import keywhiz.service.daos.SecretController;
 import keywhiz.service.daos.SecretController.SecretBuilder;
 import keywhiz.service.daos.SecretDAO;
@@ -47,7 +42,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static java.lang.String.format;
-import static java.util.stream.Collectors.toSet;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
 /**
@@ -60,16 +54,13 @@ public class SecretResource {
 
   private final SecretController secretController;
   private final AclDAO aclDAO;
-  private final GroupDAO groupDAO;
   private final SecretDAO secretDAO;
   private final SecretSeriesDAO secretSeriesDAO;
 
   @Inject public SecretResource(SecretController secretController, AclDAOFactory aclDAOFactory,
-      GroupDAOFactory groupDAOFactory, SecretDAOFactory secretDAOFactory,
-      SecretSeriesDAOFactory secretSeriesDAOFactory) {
+      SecretDAOFactory secretDAOFactory, SecretSeriesDAOFactory secretSeriesDAOFactory) {
     this.secretController = secretController;
     this.aclDAO = aclDAOFactory.readwrite();
-    this.groupDAO = groupDAOFactory.readwrite();
     this.secretDAO = secretDAOFactory.readwrite();
     this.secretSeriesDAO = secretSeriesDAOFactory.readwrite();
   }
@@ -110,9 +101,7 @@ public class SecretResource {
     }
 
     long secretId = secret.getId();
-    groupsToGroupIds(request.groups())
-        .forEach((maybeGroupId) -> maybeGroupId.ifPresent(
-            (groupId) -> aclDAO.findAndAllowAccess(secretId, groupId)));
+    aclDAO.findAndModifyAccess(secretId, request.groups(), ImmutableSet.of());
 
     UriBuilder uriBuilder = UriBuilder.fromResource(SecretResource.class).path(name);
 
@@ -133,9 +122,7 @@ public class SecretResource {
   @GET
   @Produces(APPLICATION_JSON)
   public Iterable<String> secretListing(@Auth AutomationClient automationClient) {
-    return secretController.getSanitizedSecrets().stream()
-        .map(SanitizedSecret::name)
-        .collect(toSet());
+    return secretController.getSecretNames();
   }
 
   /**
@@ -200,9 +187,7 @@ public class SecretResource {
     // TODO: Use latest version instead of non-versioned
     Secret secret = secretController.getSecretByNameAndVersion(name, "")
         .orElseThrow(NotFoundException::new);
-    return aclDAO.getGroupsFor(secret).stream()
-        .map(Group::getName)
-        .collect(toSet());
+    return aclDAO.getGroupNamesFor(secret);
   }
 
   /**
@@ -227,26 +212,14 @@ public class SecretResource {
         .orElseThrow(NotFoundException::new);
 
     long secretId = secret.getId();
-    Set<String> oldGroups = aclDAO.getGroupsFor(secret).stream()
-        .map(Group::getName)
-        .collect(toSet());
+    Set<String> oldGroups = aclDAO.getGroupNamesFor(secret);
 
     Set<String> groupsToAdd = Sets.difference(request.addGroups(), oldGroups);
     Set<String> groupsToRemove = Sets.intersection(request.removeGroups(), oldGroups);
 
-    // TODO: should optimize AclDAO to use names and return only name column
+    aclDAO.findAndModifyAccess(secretId, groupsToAdd, groupsToRemove);
 
-    groupsToGroupIds(groupsToAdd)
-        .forEach((maybeGroupId) -> maybeGroupId.ifPresent(
-            (groupId) -> aclDAO.findAndAllowAccess(secretId, groupId)));
-
-    groupsToGroupIds(groupsToRemove)
-        .forEach((maybeGroupId) -> maybeGroupId.ifPresent(
-            (groupId) -> aclDAO.findAndRevokeAccess(secretId, groupId)));
-
-    return aclDAO.getGroupsFor(secret).stream()
-        .map(Group::getName)
-        .collect(toSet());
+    return aclDAO.getGroupNamesFor(secret);
   }
 
   /**
@@ -310,10 +283,4 @@ public class SecretResource {
     secretDAO.deleteSecretByNameAndVersion(name, version);
     return Response.noContent().build();
   }
-
-  private Stream<Optional<Long>> groupsToGroupIds(Set<String> groupNames) {
-    return groupNames.stream()
-        .map(groupDAO::getGroup)
-        .map((group) -> group.map(Group::getId));
-  }
 }
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.utility;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.db.ManagedDataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import keywhiz.service.config.ReadReplicasConfig;
+import org.jooq.DSLContext;
+import org.jooq.exception.DataAccessException;
+import org.slf4j.LoggerFactory;
+
+import static keywhiz.jooq.tables.ReplicationHeartbeat.REPLICATION_HEARTBEAT;
+
+/**
+ * Readonly data source spreading connections across several replicas of the primary database.
+ *
+ * Every heartbeat interval the current time is written to the replication_heartbeat row on the
+ * primary and read back from each replica. A replica holds everything written up to the beat it
+ * returned, so its staleness when a connection is handed out is the time since that beat: its lag
+ * at the last measurement plus the time elapsed since. Each connection goes to a replica whose
+ * staleness is within the configured maximum, chosen round-robin or by fewest connections in use.
+ * When no replica qualifies, for example right after a rotation that replicas have not caught up
+ * with or while heartbeats fail, the connection comes from the primary so clients never see stale
+ * data for longer than the maximum lag.
+ */
+public class ReplicaRoutingDataSource implements ManagedDataSource {
+  private static final org.slf4j.Logger logger =
+      LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+  private static final long HEARTBEAT_ID = 1L;
+  private static final long UNKNOWN_LAG = Long.MAX_VALUE;
+  private static final long NO_BEAT = Long.MIN_VALUE;
+
+  private final ManagedDataSource primary;
+  private final ImmutableList<Replica> replicas;
+  private final ReadReplicasConfig config;
+  private final Clock clock;
+  private final Meter primaryFallbacks;
+  private final AtomicInteger nextReplica = new AtomicInteger();
+
+  private DSLContext primaryJooq;
+  private ScheduledExecutorService executor;
+
+  /**
+   * @param primary read/write data source, used for heartbeats and as fallback
+   * @param replicas readonly data sources, each named for its metrics
+   * @param config replica selection and lag parameters
+   * @param metrics registry for per-replica lag, connection and selection metrics
+   * @param clock source of heartbeat times
+   */
+  public ReplicaRoutingDataSource(ManagedDataSource primary, List<ManagedDataSource> replicas,
+      ReadReplicasConfig config, MetricRegistry metrics, Clock clock) {
+    this.primary = primary;
+    this.config = config;
+    this.clock = clock;
+    this.primaryFallbacks =
+        metrics.meter(MetricRegistry.name(ReplicaRoutingDataSource.class, "primary-fallbacks"));
+
+    ImmutableList.Builder<Replica> builder = ImmutableList.builder();
+    for (int i = 0; i < replicas.size(); i++) {
+      builder.add(new Replica("replica-" + i, replicas.get(i), metrics));
+    }
+    this.replicas = builder.build();
+  }
+
+  @Override public void start() throws Exception {
+    for (Replica replica : replicas) {
+      replica.dataSource.start();
+    }
+    primaryJooq = DSLContexts.databaseAgnostic(primary);
+    heartbeat();
+
+    long intervalMillis = config.getHeartbeatInterval().toMilliseconds();
+    executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("replica-heartbeat-%d").setDaemon(true).build());
+    executor.scheduleWithFixedDelay(this::heartbeat, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override public void stop() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    for (Replica replica : replicas) {
+      replica.dataSource.stop();
+    }
+  }
+
+  @Override public Connection getConnection() throws SQLException {
+    Replica replica = select();
+    if (replica != null) {
+      try {
+        return replica.getConnection();
+      } catch (SQLException e) {
+        logger.warn("Cannot connect to {}, using primary", replica.name, e);
+      }
+    }
+    primaryFallbacks.mark();
+    return primary.getConnection();
+  }
+
+  @Override public Connection getConnection(String username, String password)
+      throws SQLException {
+    throw new SQLFeatureNotSupportedException("Replicas use their configured credentials.");
+  }
+
+  @Override public PrintWriter getLogWriter() throws SQLException {
+    return primary.getLogWriter();
+  }
+
+  @Override public void setLogWriter(PrintWriter out) throws SQLException {
+    primary.setLogWriter(out);
+  }
+
+  @Override public void setLoginTimeout(int seconds) throws SQLException {
+    primary.setLoginTimeout(seconds);
+  }
+
+  @Override public int getLoginTimeout() throws SQLException {
+    return primary.getLoginTimeout();
+  }
+
+  @Override public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    return primary.getParentLogger();
+  }
+
+  @Override public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) {
+      return iface.cast(this);
+    }
+    throw new SQLException(ReplicaRoutingDataSource.class.getName() + " does not wrap " + iface);
+  }
+
+  @Override public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+
+  /** @return replica to use for the next connection, or null to use the primary. */
+  private Replica select() {
+    long maxLagMillis = config.getMaxLag().toMilliseconds();
+    long now = clock.millis();
+    Replica selected = null;
+    switch (config.getSelection()) {
+      case LEAST_LOADED:
+        for (Replica replica : replicas) {
+          if (replica.stalenessMillis(now) <= maxLagMillis
+              && (selected == null || replica.inUse.get() < selected.inUse.get())) {
+            selected = replica;
+          }
+        }
+        return selected;
+      case ROUND_ROBIN:
+      default:
+        int start = nextReplica.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+          Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+          if (replica.stalenessMillis(now) <= maxLagMillis) {
+            return replica;
+          }
+        }
+        return null;
+    }
+  }
+
+  /** Writes a heartbeat to the primary, then measures each replica's lag behind it. */
+  private void heartbeat() {
+    try {
+      primaryJooq.update(REPLICATION_HEARTBEAT)
+          .set(REPLICATION_HEARTBEAT.BEAT, clock.millis())
+          .where(REPLICATION_HEARTBEAT.ID.eq(HEARTBEAT_ID))
+          .execute();
+    } catch (DataAccessException e) {
+      // Without a fresh heartbeat lag cannot be measured. The last beats read from the replicas
+      // stand, and age until replicas exceed the maximum lag.
+      logger.warn("Failed writing replication heartbeat", e);
+      return;
+    }
+
+    for (Replica replica : replicas) {
+      replica.measureLag();
+    }
+  }
+
+  @VisibleForTesting void recordLag(int replica, long lagMillis) {
+    replicas.get(replica).beatMillis = clock.millis() - lagMillis;
+  }
+
+  private class Replica {
+    final String name;
+    final ManagedDataSource dataSource;
+    final AtomicInteger inUse = new AtomicInteger();
+    final Meter selections;
+    /** Latest heartbeat read from this replica, or NO_BEAT if it could not be read. */
+    volatile long beatMillis = NO_BEAT;
+    private DSLContext jooq;
+
+    Replica(String name, ManagedDataSource dataSource, MetricRegistry metrics) {
+      this.name = name;
+      this.dataSource = dataSource;
+      this.selections =
+          metrics.meter(MetricRegistry.name(ReplicaRoutingDataSource.class, name, "selections"));
+      metrics.register(MetricRegistry.name(ReplicaRoutingDataSource.class, name, "lag-millis"),
+          (Gauge<Long>) () -> {
+            long staleness = stalenessMillis(clock.millis());
+            return staleness == UNKNOWN_LAG ? -1 : staleness;
+          });
+      metrics.register(MetricRegistry.name(ReplicaRoutingDataSource.class, name, "in-use"),
+          (Gauge<Integer>) inUse::get);
+    }
+
+    /** @return connection which counts as in use until closed. */
+    Connection getConnection() throws SQLException {
+      Connection connection = dataSource.getConnection();
+      inUse.incrementAndGet();
+      selections.mark();
+
+      AtomicBoolean closed = new AtomicBoolean();
+      return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+          new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+            if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+              inUse.decrementAndGet();
+            }
+            try {
+              return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+          });
+    }
+
+    /** @return how far behind the primary this replica may be at the given time */
+    long stalenessMillis(long now) {
+      long beat = beatMillis;
+      return (beat == NO_BEAT) ? UNKNOWN_LAG : Math.max(0, now - beat);
+    }
+
+    /** Runs on the heartbeat thread only. */
+    void measureLag() {
+      try {
+        if (jooq == null) {
+          jooq = DSLContexts.databaseAgnostic(dataSource);
+        }
+        Long beat = jooq.select(REPLICATION_HEARTBEAT.BEAT)
+            .from(REPLICATION_HEARTBEAT)
+            .where(REPLICATION_HEARTBEAT.ID.eq(HEARTBEAT_ID))
+            .fetchOne(REPLICATION_HEARTBEAT.BEAT);
+        beatMillis = (beat == null) ? NO_BEAT : beat;
+      } catch (SQLException | DataAccessException e) {
+        logger.warn("Failed measuring lag of {}", name, e);
+        beatMillis = NO_BEAT;
+      }
+    }
+  }
+}
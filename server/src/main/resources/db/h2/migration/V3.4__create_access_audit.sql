@@ -0,0 +1,11 @@
+CREATE TABLE access_audit (
+  id bigint AUTO_INCREMENT PRIMARY KEY,
+  occurredat bigint NOT NULL,
+  client varchar(255) NOT NULL,
+  action varchar(16) NOT NULL,
+  secret text NOT NULL,
+  outcome varchar(16) NOT NULL
+);
+
+CREATE INDEX access_audit_occurredat_idx ON access_audit (occurredat);
+CREATE INDEX access_audit_client_idx ON access_audit (client);
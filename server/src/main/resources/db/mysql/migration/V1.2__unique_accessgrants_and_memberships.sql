@@ -0,0 +1,7 @@
+DELETE a1 FROM accessgrants a1 JOIN accessgrants a2
+  ON a1.groupid = a2.groupid AND a1.secretid = a2.secretid AND a1.id > a2.id;
+CREATE UNIQUE INDEX accessgrants_groupid_secretid_idx ON accessgrants (groupid, secretid) USING BTREE;
+
+DELETE m1 FROM memberships m1 JOIN memberships m2
+  ON m1.clientid = m2.clientid AND m1.groupid = m2.groupid AND m1.id > m2.id;
+CREATE UNIQUE INDEX memberships_clientid_groupid_idx ON memberships (clientid, groupid) USING BTREE;
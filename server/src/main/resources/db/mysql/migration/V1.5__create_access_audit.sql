@@ -0,0 +1,12 @@
+CREATE TABLE access_audit (
+  id bigint NOT NULL AUTO_INCREMENT,
+  occurredat bigint NOT NULL,
+  client varchar(255) NOT NULL,
+  action varchar(16) NOT NULL,
+  secret text NOT NULL,
+  outcome varchar(16) NOT NULL,
+  PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_unicode_ci;
+
+CREATE INDEX access_audit_occurredat_idx ON access_audit (occurredat);
+CREATE INDEX access_audit_client_idx ON access_audit (client);
@@ -0,0 +1,7 @@
+DELETE FROM accessgrants a1 WHERE EXISTS (SELECT 1 FROM accessgrants a2
+  WHERE a1.groupid = a2.groupid AND a1.secretid = a2.secretid AND a1.id > a2.id);
+CREATE UNIQUE INDEX accessgrants_groupid_secretid_idx ON accessgrants (groupid, secretid);
+
+DELETE FROM memberships m1 WHERE EXISTS (SELECT 1 FROM memberships m2
+  WHERE m1.clientid = m2.clientid AND m1.groupid = m2.groupid AND m1.id > m2.id);
+CREATE UNIQUE INDEX memberships_clientid_groupid_idx ON memberships (clientid, groupid);
@@ -0,0 +1,13 @@
+CREATE TABLE client_secret_access (
+  clientid bigint NOT NULL,
+  secretid bigint NOT NULL,
+  refcount int NOT NULL,
+  PRIMARY KEY (clientid, secretid)
+);
+
+CREATE INDEX client_secret_access_secretid_idx ON client_secret_access (secretid);
+
+INSERT INTO client_secret_access (clientid, secretid, refcount)
+  SELECT m.clientid, a.secretid, COUNT(*) FROM memberships m
+  JOIN accessgrants a ON a.groupid = m.groupid
+  GROUP BY m.clientid, a.secretid;
@@ -0,0 +1,7 @@
+CREATE TABLE replication_heartbeat (
+  id int NOT NULL,
+  beat bigint NOT NULL,
+  PRIMARY KEY (id)
+);
+
+INSERT INTO replication_heartbeat (id, beat) VALUES (1, 0);
@@ -30,6 +30,7 @@ import java.io.IOException;
 import javax.validation.Validation;
 import javax.validation.Validator;
 import keywhiz.jooq.tables.Accessgrants;
+import keywhiz.jooq.tables.ClientSecretAccess;
 import keywhiz.jooq.tables.Clients;
 import keywhiz.jooq.tables.Groups;
 import keywhiz.jooq.tables.Memberships;
@@ -94,6 +95,9 @@ public class KeywhizTestRunner extends BlockJUnit4ClassRunner {
     try {
       jooqContext.truncate(Accessgrants.ACCESSGRANTS).execute();
     } catch(DataAccessException e) {}
+    try {
+      jooqContext.truncate(ClientSecretAccess.CLIENT_SECRET_ACCESS).execute();
+    } catch(DataAccessException e) {}
     try {
       jooqContext.truncate(Clients.CLIENTS).execute();
     } catch(DataAccessException e) {}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.service.audit;
+
+import com.codahale.metrics.MetricRegistry;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import keywhiz.service.audit.AccessEvent.Action;
+import keywhiz.service.audit.AccessEvent.Outcome;
+import keywhiz.service.config.AccessAuditConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccessAuditLogTest {
+  private static final long NOW = 1_000_000L; // Epoch seconds.
+
+  final List<List<AccessEvent>> batches = new ArrayList<>();
+  final AccessEventWriter writer = events -> batches.add(new ArrayList<>(events));
+
+  AccessAuditConfig config;
+  MetricRegistry metrics;
+  AccessAuditLog auditLog;
+
+  @Before public void setUp() {
+    config = new AccessAuditConfig();
+    config.setBufferSize(4);
+    config.setBatchSize(3);
+    metrics = new MetricRegistry();
+    auditLog = new AccessAuditLog(config, writer, metrics,
+        Clock.fixed(Instant.ofEpochSecond(NOW, 500_000_000), ZoneOffset.UTC));
+  }
+
+  @Test public void writesRecordedEventsInBatches() {
+    for (int i = 0; i < 4; i++) {
+      auditLog.record("client", Action.READ, "secret" + i, Outcome.GRANTED);
+    }
+    auditLog.drain();
+
+    assertThat(batches).extracting(List::size).containsExactly(3, 1);
+    assertThat(batches.get(0).get(0))
+        .isEqualTo(AccessEvent.of(NOW, "client", Action.READ, "secret0", Outcome.GRANTED));
+    assertThat(batches.get(1).get(0).secret()).isEqualTo("secret3");
+    assertThat(meter("written")).isEqualTo(4);
+  }
+
+  @Test public void dropsEventsWhenFull() {
+    for (int i = 0; i < 6; i++) {
+      auditLog.record("client", Action.LIST, "", Outcome.GRANTED);
+    }
+    assertThat(meter("recorded")).isEqualTo(4);
+    assertThat(meter("dropped")).isEqualTo(2);
+
+    // Draining frees the buffer for new events.
+    auditLog.drain();
+    auditLog.record("client", Action.READ, "secret", Outcome.DENIED);
+    auditLog.drain();
+    assertThat(batches).extracting(List::size).containsExactly(3, 1, 1);
+  }
+
+  @Test public void recordsNothingWithoutSink() {
+    config.setSink(AccessAuditConfig.Sink.NONE);
+    auditLog.record("client", Action.READ, "secret", Outcome.NOT_FOUND);
+    auditLog.drain();
+
+    assertThat(batches).isEmpty();
+    assertThat(meter("recorded")).isZero();
+  }
+
+  @Test public void countsFailedWrites() {
+    metrics = new MetricRegistry();
+    auditLog = new AccessAuditLog(config, events -> { throw new IllegalStateException(); },
+        metrics, Clock.systemUTC());
+    auditLog.record("client", Action.READ, "secret", Outcome.GRANTED);
+    auditLog.drain();
+
+    assertThat(meter("write-failures")).isEqualTo(1);
+    assertThat(meter("written")).isZero();
+  }
+
+  private long meter(String name) {
+    return metrics.meter(MetricRegistry.name(AccessAuditLog.class, name)).getCount();
+  }
+}
@@ -16,17 +16,22 @@
 
 package keywhiz.service.crypto;
 
+import com.codahale.metrics.MetricRegistry;
 import com.sun.crypto.provider.SunJCE;
 import java.security.Provider;
 import java.security.Security;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import keywhiz.FakeRandom;
+import keywhiz.service.config.DerivedKeyCacheConfig;
+import keywhiz.service.config.CiphertextConfig.Format;
+import keywhiz.service.config.EncryptionVerificationConfig;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import static com.codahale.metrics.MetricRegistry.name;
 import static com.google.common.io.BaseEncoding.base16;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Base64.getEncoder;
@@ -60,4 +65,83 @@ public class ContentCryptographerTest {
     String outputBase64 = cryptographer.decrypt(crypted);
     assertThat(outputBase64).isEqualTo(inputBase64);
   }
+
+  @Test public void encryptDecryptWithCachedKeys() throws Exception {
+    DerivedKeyCache cache = new DerivedKeyCache(new DerivedKeyCacheConfig(), new MetricRegistry());
+    ContentCryptographer cachingCryptographer =
+        new ContentCryptographer(BASE_KEY, new SunJCE(), BC, FakeRandom.create(), cache,
+            EncryptionVerifier.always(), Format.JSON);
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+
+    String crypted = cachingCryptographer
+        .encryptionKeyDerivedFrom("secret_filename.gpg")
+        .encrypt(inputBase64);
+    assertThat(cache.size()).isEqualTo(1);
+
+    // Uncached derivation must agree with the cached key.
+    assertThat(cryptographer.decrypt(crypted)).isEqualTo(inputBase64);
+    assertThat(cachingCryptographer.decrypt(crypted)).isEqualTo(inputBase64);
+  }
+
+  @Test public void verifiesEncryptionsPerMode() throws Exception {
+    assertThat(verifiedEncryptions(EncryptionVerificationConfig.Mode.ALWAYS, 0)).isEqualTo(10);
+    assertThat(verifiedEncryptions(EncryptionVerificationConfig.Mode.OFF, 100)).isZero();
+    assertThat(verifiedEncryptions(EncryptionVerificationConfig.Mode.SAMPLED, 0)).isZero();
+    assertThat(verifiedEncryptions(EncryptionVerificationConfig.Mode.SAMPLED, 100)).isEqualTo(10);
+  }
+
+  private long verifiedEncryptions(EncryptionVerificationConfig.Mode mode, int samplePercent) {
+    EncryptionVerificationConfig config = new EncryptionVerificationConfig();
+    config.setMode(mode);
+    config.setSamplePercent(samplePercent);
+    MetricRegistry metrics = new MetricRegistry();
+    EncryptionVerifier verifier = new EncryptionVerifier(config, metrics);
+    ContentCryptographer verifyingCryptographer = new ContentCryptographer(BASE_KEY, new SunJCE(),
+        BC, FakeRandom.create(), DerivedKeyCache.disabled(), verifier, Format.JSON);
+
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+    for (int i = 0; i < 10; i++) {
+      verifyingCryptographer.encryptionKeyDerivedFrom("secret_filename.gpg").encrypt(inputBase64);
+    }
+    assertThat(metrics.counter(name(EncryptionVerifier.class, "mismatched")).getCount()).isZero();
+    return metrics.counter(name(EncryptionVerifier.class, "verified")).getCount();
+  }
+
+  @Test public void encryptDecryptCompact() throws Exception {
+    ContentCryptographer compactCryptographer = new ContentCryptographer(BASE_KEY, new SunJCE(),
+        BC, FakeRandom.create(), DerivedKeyCache.disabled(), EncryptionVerifier.always(),
+        Format.COMPACT);
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+
+    String compact = compactCryptographer
+        .encryptionKeyDerivedFrom("secret_filename.gpg")
+        .encrypt(inputBase64);
+    String json = cryptographer
+        .encryptionKeyDerivedFrom("secret_filename.gpg")
+        .encrypt(inputBase64);
+    assertThat(compact.charAt(0)).isNotEqualTo('{');
+    assertThat(compact.length()).isLessThan(json.length());
+
+    // Either format decrypts regardless of the configured one.
+    assertThat(compactCryptographer.decrypt(compact)).isEqualTo(inputBase64);
+    assertThat(compactCryptographer.decrypt(json)).isEqualTo(inputBase64);
+    assertThat(cryptographer.decrypt(compact)).isEqualTo(inputBase64);
+  }
+
+  @Test public void reencodesBetweenFormats() throws Exception {
+    ContentCryptographer compactCryptographer = new ContentCryptographer(BASE_KEY, new SunJCE(),
+        BC, FakeRandom.create(), DerivedKeyCache.disabled(), EncryptionVerifier.always(),
+        Format.COMPACT);
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+    String json = cryptographer
+        .encryptionKeyDerivedFrom("secret_filename.gpg")
+        .encrypt(inputBase64);
+
+    assertThat(compactCryptographer.isCurrentFormat(json)).isFalse();
+    String compact = compactCryptographer.reencode(json);
+    assertThat(compactCryptographer.isCurrentFormat(compact)).isTrue();
+    assertThat(compactCryptographer.reencode(compact)).isEqualTo(compact);
+    assertThat(cryptographer.reencode(compact)).isEqualTo(json);
+    assertThat(compactCryptographer.decrypt(compact)).isEqualTo(inputBase64);
+  }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.crypto;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import keywhiz.service.config.CryptoExecutorConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CryptoExecutorTest {
+  CryptoExecutorConfig config;
+  CryptoExecutor executor;
+
+  @Before public void setUp() {
+    config = new CryptoExecutorConfig();
+    config.setThreads(4);
+    config.setMaxParallelismPerRequest(3);
+    executor = new CryptoExecutor(config);
+  }
+
+  @After public void tearDown() throws Exception {
+    executor.stop();
+  }
+
+  @Test public void preservesOrder() {
+    List<Integer> inputs = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    assertThat(executor.map(inputs, i -> i * 2))
+        .isEqualTo(inputs.stream().map(i -> i * 2).collect(Collectors.toList()));
+  }
+
+  @Test public void capsThreadsPerCall() {
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    List<Integer> inputs = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    executor.map(inputs, i -> threads.add(Thread.currentThread()));
+    assertThat(threads.size()).isLessThanOrEqualTo(3);
+    assertThat(threads).contains(Thread.currentThread());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void propagatesFailures() {
+    List<Integer> inputs = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+    executor.map(inputs, i -> {
+      if (i == 9) {
+        throw new IllegalStateException();
+      }
+      return i;
+    });
+  }
+
+  @Test public void runsOnCallingThreadWithoutThreads() {
+    config.setThreads(0);
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    List<Integer> inputs = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+    new CryptoExecutor(config).map(inputs, i -> threads.add(Thread.currentThread()));
+    assertThat(threads).containsExactly(Thread.currentThread());
+  }
+}
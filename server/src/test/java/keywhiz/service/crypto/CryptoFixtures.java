@@ -29,6 +29,7 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import javax.crypto.SecretKey;
 import keywhiz.FakeRandom;
+import keywhiz.service.config.CiphertextConfig.Format;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 /**
@@ -45,22 +46,37 @@ public class CryptoFixtures {
       return cryptographer;
     }
 
+    Provider provider = bouncyCastle();
+    cryptographer = new ContentCryptographer(baseKey(), provider, provider, FakeRandom.create());
+    return cryptographer;
+  }
+
+  /**
+   * @param format ciphertext format written by the cryptographer
+   * @return a new content cryptographer initialized with the testing derivation key.
+   */
+  public static ContentCryptographer contentCryptographer(Format format) {
+    Provider provider = bouncyCastle();
+    return new ContentCryptographer(baseKey(), provider, provider, FakeRandom.create(),
+        DerivedKeyCache.disabled(), EncryptionVerifier.always(), format);
+  }
+
+  private static Provider bouncyCastle() {
     Provider provider = new BouncyCastleProvider();
     if (Security.getProvider(provider.getName()) == null) {
       Security.addProvider(provider);
     }
+    return provider;
+  }
 
-    SecretKey baseKey;
+  private static SecretKey baseKey() {
     char[] password = "CHANGE".toCharArray();
     try (InputStream in = Resources.getResource("derivation.jceks").openStream()) {
       KeyStore keyStore = KeyStore.getInstance("JCEKS");
       keyStore.load(in, password);
-      baseKey = (SecretKey) keyStore.getKey("basekey", password);
+      return (SecretKey) keyStore.getKey("basekey", password);
     } catch (CertificateException | UnrecoverableKeyException | KeyStoreException | NoSuchAlgorithmException | IOException e) {
       throw Throwables.propagate(e);
     }
-
-    cryptographer = new ContentCryptographer(baseKey, provider, provider, FakeRandom.create());
-    return cryptographer;
   }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.crypto;
+
+import com.codahale.metrics.MetricRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.crypto.SecretKey;
+import keywhiz.service.config.DerivedKeyCacheConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DerivedKeyCacheTest {
+  MetricRegistry metrics;
+  DerivedKeyCache cache;
+  List<byte[]> derived;
+
+  @Before public void setUp() {
+    metrics = new MetricRegistry();
+    cache = new DerivedKeyCache(new DerivedKeyCacheConfig(), metrics);
+    derived = new ArrayList<>();
+  }
+
+  @Test public void derivesOncePerInfo() {
+    SecretKey first = cache.get("secret", "AES", this::derive);
+    SecretKey second = cache.get("secret", "AES", this::derive);
+    cache.get("other", "AES", this::derive);
+
+    assertThat(derived).hasSize(2);
+    assertThat(second.getEncoded()).isEqualTo(first.getEncoded());
+    assertThat(metrics.meter(name(DerivedKeyCache.class, "hits")).getCount()).isEqualTo(1);
+    assertThat(metrics.meter(name(DerivedKeyCache.class, "misses")).getCount()).isEqualTo(2);
+  }
+
+  @Test public void zeroesEvictedKeys() {
+    SecretKey key = cache.get("secret", "AES", this::derive);
+    cache.invalidateAll();
+
+    assertThat(derived.get(0)).containsOnly((byte) 0);
+    assertThat(key.getEncoded()).containsOnly((byte) 1);
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test public void disabledCacheAlwaysDerives() {
+    DerivedKeyCache disabled = DerivedKeyCache.disabled();
+    disabled.get("secret", "AES", this::derive);
+    disabled.get("secret", "AES", this::derive);
+
+    assertThat(derived).hasSize(2);
+    assertThat(disabled.size()).isZero();
+  }
+
+  private byte[] derive(String info) {
+    byte[] bytes = new byte[16];
+    Arrays.fill(bytes, (byte) 1);
+    derived.add(bytes);
+    return bytes;
+  }
+}
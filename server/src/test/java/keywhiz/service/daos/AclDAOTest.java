@@ -16,7 +16,12 @@
 
 package keywhiz.service.daos;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import javax.inject.Inject;
@@ -32,6 +37,7 @@ import keywhiz.service.daos.GroupDAO.GroupDAOFactory;
 import keywhiz.service.daos.SecretDAO.SecretDAOFactory;
 import keywhiz.service.daos.SecretSeriesDAO.SecretSeriesDAOFactory;
 import org.jooq.DSLContext;
+import org.jooq.exception.DataAccessException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -97,6 +103,17 @@ public class AclDAOTest {
     assertThat(accessGrantsTableSize()).isEqualTo(before + 1);
   }
 
+  @Test(expected = DataAccessException.class)
+  public void accessGrantsAreUnique() {
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group1.getId());
+    jooqContext.insertInto(ACCESSGRANTS)
+        .set(ACCESSGRANTS.SECRETID, secret2.getId())
+        .set(ACCESSGRANTS.GROUPID, group1.getId())
+        .set(ACCESSGRANTS.CREATEDAT, 0L)
+        .set(ACCESSGRANTS.UPDATEDAT, 0L)
+        .execute();
+  }
+
   @Test public void revokesAccess() {
     aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group1.getId());
     int before = accessGrantsTableSize();
@@ -133,6 +150,17 @@ public class AclDAOTest {
     assertThat(membershipsTableSize()).isEqualTo(before + 1);
   }
 
+  @Test(expected = DataAccessException.class)
+  public void membershipsAreUnique() {
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group2.getId());
+    jooqContext.insertInto(MEMBERSHIPS)
+        .set(MEMBERSHIPS.CLIENTID, client1.getId())
+        .set(MEMBERSHIPS.GROUPID, group2.getId())
+        .set(MEMBERSHIPS.CREATEDAT, 0L)
+        .set(MEMBERSHIPS.UPDATEDAT, 0L)
+        .execute();
+  }
+
   @Test public void evictsClient() {
     aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group2.getId());
     int before = membershipsTableSize();
@@ -156,6 +184,35 @@ public class AclDAOTest {
     assertThat(membershipsTableSize()).isEqualTo(before - 2);
   }
 
+  @Test public void modifiesAccessByGroupNames() {
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group3.getId());
+
+    aclDAO.findAndModifyAccess(secret1.getId(), ImmutableSet.of("group1", "group2", "unknown"),
+        ImmutableSet.of("group3"));
+    assertThat(aclDAO.getGroupNamesFor(secret1)).containsOnly("group1", "group2");
+
+    aclDAO.findAndModifyAccess(secret1.getId(), ImmutableSet.of("group1"),
+        ImmutableSet.of("group2"));
+    assertThat(aclDAO.getGroupNamesFor(secret1)).containsOnly("group1");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void modifyAccessRequiresSecret() {
+    aclDAO.findAndModifyAccess(-1, ImmutableSet.of("group1"), ImmutableSet.of());
+  }
+
+  @Test public void modifiesMembershipsByGroupNames() {
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group3.getId());
+
+    aclDAO.findAndModifyMemberships(client1.getId(), ImmutableSet.of("group1", "group2"),
+        ImmutableSet.of("group3", "unknown"));
+    assertThat(aclDAO.getGroupNamesFor(client1)).containsOnly("group1", "group2");
+
+    aclDAO.findAndModifyMemberships(client1.getId(), ImmutableSet.of(),
+        ImmutableSet.of("group1", "group2"));
+    assertThat(aclDAO.getGroupNamesFor(client1)).isEmpty();
+  }
+
   @Test public void getsSanitizedSecretsForGroup() {
     SanitizedSecret sanitizedSecret1 = SanitizedSecret.fromSecret(secret1);
     SanitizedSecret sanitizedSecret2 = SanitizedSecret.fromSecret(secret2);
@@ -240,6 +297,33 @@ public class AclDAOTest {
     assertThat(aclDAO.getClientsFor(secret2)).isEmpty();
   }
 
+  @Test public void getNamesForGroupsAndClients() {
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group1.getId());
+    aclDAO.enrollClient(jooqContext.configuration(), client2.getId(), group1.getId());
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group2.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group2.getId());
+
+    assertThat(aclDAO.getGroupNamesFor(client1)).containsOnly("group1", "group2");
+    assertThat(aclDAO.getGroupNamesFor(secret2)).containsOnly("group2");
+    assertThat(aclDAO.getClientNamesFor(group1)).containsOnly("client1", "client2");
+    assertThat(aclDAO.getSecretNamesFor(group1)).containsOnly("secret1");
+    assertThat(aclDAO.getSecretNamesFor(client1)).containsOnly("secret1", "secret2");
+    assertThat(aclDAO.getSecretNamesFor(client2)).containsOnly("secret1");
+  }
+
+  @Test public void getGroupsBySecretId() {
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group2.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group2.getId());
+
+    ImmutableSetMultimap<Long, Group> groups = aclDAO.getGroupsBySecretId();
+    assertThat(groups.get(secret1.getId())).extracting(Group::getName)
+        .containsOnly("group1", "group2");
+    assertThat(groups.get(secret2.getId())).extracting(Group::getName).containsOnly("group2");
+    assertThat(groups.keySet()).containsOnly(secret1.getId(), secret2.getId());
+  }
+
   @Test public void getSecretSeriesForWhenUnauthorized() throws Exception {
     assertThat(aclDAO.getSecretSeriesFor(jooqContext.configuration(), client1, secret1.getName()))
         .isEmpty();
@@ -308,6 +392,64 @@ public class AclDAOTest {
     assertThat(secret).isEqualToIgnoringGivenFields(sanitizedSecret1, "id");
   }
 
+  @Test public void getSecretForDeliveryWhenClientMissing() throws Exception {
+    Client missing = new Client(0, "non-existent", null, null, null, null, null, false, false);
+    AclDAO.DeliveryLookup lookup =
+        aclDAO.getSecretForDelivery(missing, secret1.getName(), secret1.getVersion());
+    assertThat(lookup.clientExists()).isFalse();
+    assertThat(lookup.authorized()).isFalse();
+  }
+
+  @Test public void getSecretForDeliveryWhenSecretMissing() throws Exception {
+    AclDAO.DeliveryLookup lookup = aclDAO.getSecretForDelivery(client1, "non-existent", "");
+    assertThat(lookup.clientExists()).isTrue();
+    assertThat(lookup.authorized()).isFalse();
+    assertThat(lookup.secret()).isEmpty();
+  }
+
+  @Test public void getSecretForDelivery() throws Exception {
+    SanitizedSecret sanitizedSecret1 = SanitizedSecret.fromSecret(secret1);
+
+    AclDAO.DeliveryLookup lookup =
+        aclDAO.getSecretForDelivery(client2, secret1.getName(), secret1.getVersion());
+    assertThat(lookup.clientExists()).isTrue();
+    assertThat(lookup.authorized()).isFalse();
+    assertThat(lookup.secret()).isPresent();
+
+    aclDAO.enrollClient(jooqContext.configuration(), client2.getId(), group1.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+
+    lookup = aclDAO.getSecretForDelivery(client2, secret1.getName(), secret1.getVersion());
+    assertThat(lookup.authorized()).isTrue();
+    SanitizedSecret secret =
+        SanitizedSecret.fromSecretSeriesAndContent(lookup.secret().get());
+    assertThat(secret).isEqualToIgnoringGivenFields(sanitizedSecret1, "id");
+  }
+
+  @Test public void getSecretsForDelivery() throws Exception {
+    aclDAO.enrollClient(jooqContext.configuration(), client2.getId(), group1.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+
+    Map.Entry<String, String> allowed =
+        Maps.immutableEntry(secret1.getName(), secret1.getVersion());
+    Map.Entry<String, String> denied = Maps.immutableEntry(secret2.getName(), "");
+    Map.Entry<String, String> missing = Maps.immutableEntry("non-existent", "");
+
+    Map<Map.Entry<String, String>, AclDAO.DeliveryLookup> lookups =
+        aclDAO.getSecretsForDelivery(client2, ImmutableSet.of(allowed, denied, missing));
+    assertThat(lookups.keySet()).containsExactly(allowed, denied, missing);
+
+    assertThat(lookups.get(allowed).authorized()).isTrue();
+    assertThat(lookups.get(allowed).secret().get().series().name()).isEqualTo(secret1.getName());
+
+    assertThat(lookups.get(denied).clientExists()).isTrue();
+    assertThat(lookups.get(denied).authorized()).isFalse();
+    assertThat(lookups.get(denied).secret()).isPresent();
+
+    assertThat(lookups.get(missing).clientExists()).isTrue();
+    assertThat(lookups.get(missing).secret()).isEmpty();
+  }
+
   @Test public void getSecretsReturnsDistinct() {
     // client1 has two paths to secret1
     aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group1.getId());
@@ -319,6 +461,34 @@ public class AclDAOTest {
     assertThat(secret).hasSize(1);
   }
 
+  @Test public void getSanitizedSecretsForClientIncludesAllVersions() {
+    SecretFixtures.using(secretDAOFactory.readwrite())
+        .createSecret(secret1.getName(), "c2VjcmV0Mw==", VersionGenerator.now().toHex());
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group1.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+
+    assertThat(aclDAO.getSanitizedSecretsFor(client1)).hasSize(2);
+    assertThat(aclDAO.getSanitizedSecretsFor(group1)).hasSize(2);
+  }
+
+  @Test public void secretsFingerprintChangesWithVisibleSecrets() {
+    HashCode empty = aclDAO.getSecretsFingerprintFor(client1);
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group1.getId());
+    assertThat(aclDAO.getSecretsFingerprintFor(client1)).isEqualTo(empty);
+
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+    HashCode granted = aclDAO.getSecretsFingerprintFor(client1);
+    assertThat(granted).isNotEqualTo(empty);
+    assertThat(aclDAO.getSecretsFingerprintFor(client1)).isEqualTo(granted);
+
+    SecretFixtures.using(secretDAOFactory.readwrite())
+        .createSecret(secret1.getName(), "c2VjcmV0Mw==", VersionGenerator.now().toHex());
+    assertThat(aclDAO.getSecretsFingerprintFor(client1)).isNotEqualTo(granted);
+
+    aclDAO.evictClient(jooqContext.configuration(), client1.getId(), group1.getId());
+    assertThat(aclDAO.getSecretsFingerprintFor(client1)).isEqualTo(empty);
+  }
+
   private int accessGrantsTableSize() {
     return jooqContext.fetchCount(ACCESSGRANTS);
   }
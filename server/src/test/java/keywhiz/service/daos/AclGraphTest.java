@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import io.dropwizard.util.Duration;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import javax.inject.Inject;
+import keywhiz.KeywhizTestRunner;
+import keywhiz.api.model.Client;
+import keywhiz.service.config.AclGraphConfig;
+import keywhiz.service.config.ClientSecretAccessConfig;
+import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
+import keywhiz.service.daos.GroupDAO.GroupDAOFactory;
+import keywhiz.service.daos.SecretContentDAO.SecretContentDAOFactory;
+import keywhiz.service.daos.SecretDAO.SecretDAOFactory;
+import keywhiz.service.daos.SecretSeriesDAO.SecretSeriesDAOFactory;
+import org.jooq.DSLContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(KeywhizTestRunner.class)
+public class AclGraphTest {
+  @Inject DSLContext jooqContext;
+  @Inject ClientDAOFactory clientDAOFactory;
+  @Inject GroupDAOFactory groupDAOFactory;
+  @Inject SecretDAOFactory secretDAOFactory;
+  @Inject AclDAO.AclDAOFactory aclDAOFactory;
+  @Inject SecretContentDAOFactory secretContentDAOFactory;
+  @Inject SecretSeriesDAOFactory secretSeriesDAOFactory;
+  @Inject ClientMapper clientMapper;
+  @Inject GroupMapper groupMapper;
+  @Inject SecretSeriesMapper secretSeriesMapper;
+  @Inject SecretSeriesAndContentMapper secretSeriesAndContentMapper;
+  @Inject SecretChangeBus changeBus;
+
+  AclGraphConfig config;
+  AclGraph aclGraph;
+  AclDAO aclDAO;
+  long clientId, groupId, secretId;
+
+  @Before public void setUp() {
+    config = new AclGraphConfig();
+    config.setEnabled(true);
+    config.setMaxStaleness(Duration.minutes(1));
+    Clock clock = Clock.fixed(Instant.now(), ZoneOffset.UTC);
+    aclGraph = new AclGraph(jooqContext, config, clock);
+    aclDAO = aclDAOFactory.readwrite();
+
+    clientId = clientDAOFactory.readwrite().createClient("client", "creator", "");
+    groupId = groupDAOFactory.readwrite().createGroup("group", "creator", "");
+    secretId = SecretFixtures.using(secretDAOFactory.readwrite())
+        .createSecret("secret", "c2VjcmV0MQ==").getId();
+  }
+
+  @Test public void notFreshUntilLoaded() {
+    assertThat(aclGraph.isFresh()).isFalse();
+    aclGraph.reload();
+    assertThat(aclGraph.isFresh()).isTrue();
+  }
+
+  @Test public void notFreshWhenDisabled() {
+    config.setEnabled(false);
+    aclGraph.reload();
+    assertThat(aclGraph.isFresh()).isFalse();
+  }
+
+  @Test public void loadsGrantsAndMemberships() {
+    aclDAO.enrollClient(jooqContext.configuration(), clientId, groupId);
+    assertThat(graphCanRead()).isFalse();
+
+    aclDAO.allowAccess(jooqContext.configuration(), secretId, groupId);
+    assertThat(graphCanRead()).isTrue();
+
+    aclDAO.evictClient(jooqContext.configuration(), clientId, groupId);
+    assertThat(graphCanRead()).isFalse();
+  }
+
+  @Test public void appliesChangesWithoutReloading() {
+    aclGraph.reload();
+    assertThat(aclGraph.canRead(clientId, secretId)).isFalse();
+
+    aclGraph.enrollClient(clientId, groupId);
+    aclGraph.allowAccess(secretId, groupId);
+    assertThat(aclGraph.canRead(clientId, secretId)).isTrue();
+
+    aclGraph.revokeAccess(secretId, groupId);
+    assertThat(aclGraph.canRead(clientId, secretId)).isFalse();
+    assertThat(aclGraph.groupsOf(clientId)).containsExactly(groupId);
+
+    aclGraph.evictClient(clientId, groupId);
+    assertThat(aclGraph.groupsOf(clientId)).isEmpty();
+  }
+
+  @Test public void deniesImmediatelyAfterRevoke() {
+    AclDAO graphAclDAO = graphAclDAO();
+    graphAclDAO.findAndEnrollClient(clientId, groupId);
+    graphAclDAO.findAndAllowAccess(secretId, groupId);
+    aclGraph.reload();
+    assertThat(authorized(graphAclDAO)).isTrue();
+
+    jooqContext.transaction(configuration -> {
+      graphAclDAO.revokeAccess(configuration, secretId, groupId);
+      assertThat(aclGraph.canRead(clientId, secretId)).isFalse();
+    });
+    assertThat(authorized(graphAclDAO)).isFalse();
+
+    graphAclDAO.findAndAllowAccess(secretId, groupId);
+    assertThat(authorized(graphAclDAO)).isTrue();
+    graphAclDAO.findAndEvictClient(clientId, groupId);
+    assertThat(authorized(graphAclDAO)).isFalse();
+  }
+
+  @Test public void deniesImmediatelyAfterGroupDeletion() {
+    aclDAO.enrollClient(jooqContext.configuration(), clientId, groupId);
+    aclDAO.allowAccess(jooqContext.configuration(), secretId, groupId);
+    aclGraph.reload();
+    assertThat(aclGraph.canRead(clientId, secretId)).isTrue();
+
+    GroupDAO groupDAO = new GroupDAOFactory(jooqContext, jooqContext, groupMapper, aclGraph,
+        changeBus).readwrite();
+    groupDAO.deleteGroup(groupDAO.getGroupById(groupId).get());
+    assertThat(aclGraph.canRead(clientId, secretId)).isFalse();
+    assertThat(aclGraph.groupsOf(clientId)).isEmpty();
+  }
+
+  @Test public void returnsSecretWhenAllowedByAclGraph() {
+    AclDAO graphAclDAO = graphAclDAO();
+    aclGraph.reload();
+
+    // Only the graph holds the grant, so authorization must come from it.
+    aclGraph.enrollClient(clientId, groupId);
+    aclGraph.allowAccess(secretId, groupId);
+    assertThat(authorized(graphAclDAO)).isTrue();
+  }
+
+  @Test public void returnsUnauthorizedWhenDeniedByAclGraph() {
+    AclDAO graphAclDAO = graphAclDAO();
+    aclDAO.enrollClient(jooqContext.configuration(), clientId, groupId);
+    aclDAO.allowAccess(jooqContext.configuration(), secretId, groupId);
+    aclGraph.reload();
+
+    // Only the graph lost the grant, so the database is not consulted.
+    aclGraph.revokeAccess(secretId, groupId);
+    assertThat(authorized(graphAclDAO)).isFalse();
+  }
+
+  private AclDAO graphAclDAO() {
+    return new AclDAO.AclDAOFactory(jooqContext, jooqContext, clientDAOFactory, groupDAOFactory,
+        secretContentDAOFactory, secretSeriesDAOFactory, clientMapper, groupMapper,
+        secretSeriesMapper, secretSeriesAndContentMapper, aclGraph, changeBus,
+        new ClientSecretAccessConfig()).readwrite();
+  }
+
+  private boolean authorized(AclDAO graphAclDAO) {
+    Client client = clientDAOFactory.readonly().getClientById(clientId).get();
+    return graphAclDAO.getSecretForDelivery(client, "secret", "").authorized();
+  }
+
+  private boolean graphCanRead() {
+    aclGraph.reload();
+    return aclGraph.canRead(clientId, secretId);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import javax.inject.Inject;
+import keywhiz.KeywhizTestRunner;
+import keywhiz.api.model.Secret;
+import keywhiz.service.config.CiphertextConfig;
+import keywhiz.service.crypto.ContentCryptographer;
+import keywhiz.service.crypto.CryptoFixtures;
+import keywhiz.service.daos.SecretContentDAO.SecretContentDAOFactory;
+import keywhiz.service.daos.SecretDAO.SecretDAOFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static keywhiz.service.config.CiphertextConfig.Format.COMPACT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(KeywhizTestRunner.class)
+public class CiphertextReencoderTest {
+  @Inject SecretDAOFactory secretDAOFactory;
+  @Inject SecretContentDAOFactory secretContentDAOFactory;
+
+  SecretContentDAO secretContentDAO;
+  ContentCryptographer compactCryptographer;
+  CiphertextReencoder reencoder;
+
+  @Before public void setUp() {
+    secretContentDAO = secretContentDAOFactory.readwrite();
+    compactCryptographer = CryptoFixtures.contentCryptographer(COMPACT);
+
+    CiphertextConfig config = new CiphertextConfig();
+    config.setFormat(COMPACT);
+    config.setReencodeBatchSize(2);
+    reencoder = new CiphertextReencoder(secretContentDAO, compactCryptographer, config);
+  }
+
+  @Test public void reencodesAllRows() {
+    SecretFixtures fixtures = SecretFixtures.using(secretDAOFactory.readwrite());
+    Secret secret1 = fixtures.createSecret("secret1", "c2VjcmV0MQ==");
+    fixtures.createSecret("secret2", "c2VjcmV0Mg==");
+    fixtures.createSecret("secret3", "c2VjcmV0Mw==");
+    for (String content : secretContentDAO.getEncryptedContentsAfter(0, 10).values()) {
+      assertThat(compactCryptographer.isCurrentFormat(content)).isFalse();
+    }
+
+    while (reencoder.runBatch()) {}
+
+    assertThat(secretContentDAO.getEncryptedContentsAfter(0, 10)).hasSize(3);
+    for (String content : secretContentDAO.getEncryptedContentsAfter(0, 10).values()) {
+      assertThat(compactCryptographer.isCurrentFormat(content)).isTrue();
+    }
+
+    String encrypted = secretContentDAO
+        .getSecretContentBySecretIdAndVersion(secret1.getId(), "").get().encryptedContent();
+    assertThat(compactCryptographer.decrypt(encrypted)).isEqualTo("c2VjcmV0MQ==");
+    assertThat(CryptoFixtures.contentCryptographer().decrypt(encrypted)).isEqualTo("c2VjcmV0MQ==");
+  }
+
+  @Test public void skipsRowsChangedSinceRead() {
+    SecretFixtures.using(secretDAOFactory.readwrite()).createSecret("secret1", "c2VjcmV0MQ==");
+    long id = secretContentDAO.getEncryptedContentsAfter(0, 1).keySet().iterator().next();
+
+    assertThat(secretContentDAO.replaceEncryptedContent(id, "stale", "replacement")).isFalse();
+  }
+}
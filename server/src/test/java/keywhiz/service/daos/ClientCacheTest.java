@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.codahale.metrics.MetricRegistry;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import keywhiz.api.model.Client;
+import keywhiz.service.config.ClientCacheConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClientCacheTest {
+  private static final Client client =
+      new Client(1, "client", null, null, null, null, null, true, false);
+
+  ClientCache cache;
+  AtomicInteger loads;
+
+  @Before public void setUp() {
+    cache = new ClientCache(new ClientCacheConfig(), new MetricRegistry());
+    loads = new AtomicInteger();
+  }
+
+  @Test public void loadsOncePerSubject() {
+    assertThat(cache.get("CN=client", this::load)).contains(client);
+    assertThat(cache.get("CN=client", this::load)).contains(client);
+    cache.get("CN=client,OU=other", this::load);
+
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test public void cachesMissingClients() {
+    assertThat(cache.get("CN=missing", this::load)).isEmpty();
+    assertThat(cache.get("CN=missing", this::load)).isEmpty();
+
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test public void putReplacesMissingClient() {
+    cache.get("CN=missing", this::load);
+    cache.put("CN=missing", client);
+
+    assertThat(cache.get("CN=missing", this::load)).contains(client);
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test public void invalidatesAllSubjectsOfClient() {
+    cache.get("CN=client", this::load);
+    cache.get("CN=client,OU=other", this::load);
+    cache.invalidate("client");
+
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test public void disabledCacheAlwaysLoads() {
+    ClientCache disabled = ClientCache.disabled();
+    disabled.get("CN=client", this::load);
+    disabled.get("CN=client", this::load);
+
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  private Optional<Client> load(String subject) {
+    loads.incrementAndGet();
+    return subject.startsWith("CN=client") ? Optional.of(client) : Optional.empty();
+  }
+}
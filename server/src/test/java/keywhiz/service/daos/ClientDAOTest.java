@@ -16,7 +16,10 @@
 
 package keywhiz.service.daos;
 
+import com.google.common.collect.ImmutableSet;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import javax.inject.Inject;
 import keywhiz.KeywhizTestRunner;
@@ -69,6 +72,16 @@ public class ClientDAOTest {
     assertThat(clientById.getId()).isEqualTo(id);
   }
 
+  @Test public void createClientsIfAbsent() {
+    int before = tableSize();
+    Set<String> created = clientDAO.createClientsIfAbsent(
+        ImmutableSet.of("client1", "newClient1", "newClient2"), "creator", "");
+
+    assertThat(created).containsOnly("newClient1", "newClient2");
+    assertThat(tableSize()).isEqualTo(before + 2);
+    assertThat(clientDAO.getClient("newClient1").get().isEnabled()).isTrue();
+  }
+
   @Test public void deleteClient() {
     int before = tableSize();
     clientDAO.deleteClient(client1);
@@ -98,6 +111,35 @@ public class ClientDAOTest {
     assertThat(clients).containsOnly(client1, client2);
   }
 
+  @Test public void getsClientsByPage() {
+    Page<Client> first = clientDAO.getClients(0, 1);
+    assertThat(first.items()).containsExactly(client1);
+    assertThat(first.next()).contains(Long.toString(client1.getId()));
+
+    Page<Client> second = clientDAO.getClients(Long.parseLong(first.next().get()), 1);
+    assertThat(second.items()).containsExactly(client2);
+    assertThat(second.next()).isEmpty();
+  }
+
+  @Test public void getsClientNamesByPage() {
+    Page<String> first = clientDAO.getClientNames(null, 1);
+    assertThat(first.items()).containsExactly("client1");
+
+    Page<String> second = clientDAO.getClientNames(first.next().get(), 10);
+    assertThat(second.items()).containsExactly("client2");
+    assertThat(second.next()).isEmpty();
+  }
+
+  @Test public void getsClientNames() {
+    assertThat(clientDAO.getClientNames()).containsOnly("client1", "client2");
+  }
+
+  @Test public void streamsClients() {
+    List<Client> clients = new ArrayList<>();
+    clientDAO.streamClients(clients::add);
+    assertThat(clients).containsOnly(client1, client2);
+  }
+
   private int tableSize() {
     return jooqContext.fetchCount(CLIENTS);
   }
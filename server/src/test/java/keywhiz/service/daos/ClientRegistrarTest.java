@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import io.dropwizard.util.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import keywhiz.KeywhizTestRunner;
+import keywhiz.api.model.Client;
+import keywhiz.service.config.ClientRegistrationConfig;
+import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
+import org.jooq.DSLContext;
+import org.jooq.exception.DataAccessException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static keywhiz.jooq.tables.Clients.CLIENTS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(KeywhizTestRunner.class)
+public class ClientRegistrarTest {
+  @Inject DSLContext jooqContext;
+  @Inject ClientDAOFactory clientDAOFactory;
+
+  ClientDAO clientDAO;
+  ClientRegistrationConfig config;
+  ClientRegistrar registrar;
+
+  @Before public void setUp() {
+    clientDAO = clientDAOFactory.readwrite();
+    config = new ClientRegistrationConfig();
+    config.setBatchSize(2);
+    registrar = new ClientRegistrar(clientDAO, config);
+  }
+
+  @Test public void completesRegistrationWithStoredClient() throws Exception {
+    CompletableFuture<Client> registration = registrar.queue("new-client");
+    assertThat(registration.isDone()).isFalse();
+    assertThat(clientDAO.getClient("new-client")).isEmpty();
+
+    assertThat(registrar.flush()).isEqualTo(1);
+    Client client = registration.get(5, TimeUnit.SECONDS);
+    assertThat(client).isEqualTo(clientDAO.getClient("new-client").get());
+    assertThat(client.isEnabled()).isTrue();
+    assertThat(client.isAutomationAllowed()).isFalse();
+    assertThat(registrar.flush()).isZero();
+  }
+
+  @Test public void registrationsGetDistinctIds() throws Exception {
+    CompletableFuture<Client> first = registrar.queue("client-a");
+    CompletableFuture<Client> second = registrar.queue("client-b");
+    registrar.flush();
+
+    assertThat(first.get(5, TimeUnit.SECONDS).getId())
+        .isNotEqualTo(second.get(5, TimeUnit.SECONDS).getId());
+  }
+
+  @Test public void coalescesRegistrationsOfSameName() {
+    int before = tableSize();
+    CompletableFuture<Client> first = registrar.queue("new-client");
+    CompletableFuture<Client> second = registrar.queue("new-client");
+
+    assertThat(second).isSameAs(first);
+    assertThat(registrar.flush()).isEqualTo(1);
+    assertThat(tableSize()).isEqualTo(before + 1);
+  }
+
+  @Test public void flushesInBatches() {
+    int before = tableSize();
+    registrar.queue("client-a");
+    registrar.queue("client-b");
+    registrar.queue("client-c");
+
+    assertThat(registrar.flush()).isEqualTo(2);
+    assertThat(registrar.flush()).isEqualTo(1);
+    assertThat(tableSize()).isEqualTo(before + 3);
+  }
+
+  @Test public void servesClientsRegisteredElsewhere() throws Exception {
+    long id = clientDAO.createClient("new-client", "creator", "");
+    int before = tableSize();
+    CompletableFuture<Client> registration = registrar.queue("new-client");
+
+    assertThat(registrar.flush()).isEqualTo(1);
+    assertThat(tableSize()).isEqualTo(before);
+    assertThat(registration.get(5, TimeUnit.SECONDS).getId()).isEqualTo(id);
+  }
+
+  @Test public void failsRegistrationsOfFailedBatch() {
+    ClientDAO failing = mock(ClientDAO.class);
+    when(failing.createClientsIfAbsent(any(), any(), any()))
+        .thenThrow(new DataAccessException("down"));
+    registrar = new ClientRegistrar(failing, config);
+    CompletableFuture<Client> registration = registrar.queue("new-client");
+
+    assertThat(registrar.flush()).isEqualTo(1);
+    assertThat(registration.isCompletedExceptionally()).isTrue();
+    assertThat(registrar.queue("new-client")).isNotSameAs(registration);
+  }
+
+  @Test(expected = DataAccessException.class)
+  public void registerTimesOutWithoutFlush() {
+    config.setTimeout(Duration.milliseconds(10));
+    registrar.register("new-client");
+  }
+
+  private int tableSize() {
+    return jooqContext.fetchCount(CLIENTS);
+  }
+}
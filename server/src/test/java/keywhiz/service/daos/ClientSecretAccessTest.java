@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import keywhiz.KeywhizTestRunner;
+import keywhiz.api.model.Client;
+import keywhiz.api.model.Group;
+import keywhiz.api.model.Secret;
+import keywhiz.service.config.ClientSecretAccessConfig;
+import keywhiz.service.daos.AclDAO.AclDAOFactory;
+import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
+import keywhiz.service.daos.GroupDAO.GroupDAOFactory;
+import keywhiz.service.daos.SecretContentDAO.SecretContentDAOFactory;
+import keywhiz.service.daos.SecretDAO.SecretDAOFactory;
+import keywhiz.service.daos.SecretSeriesDAO.SecretSeriesDAOFactory;
+import org.jooq.DSLContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static keywhiz.jooq.tables.ClientSecretAccess.CLIENT_SECRET_ACCESS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+@RunWith(KeywhizTestRunner.class)
+public class ClientSecretAccessTest {
+  @Inject DSLContext jooqContext;
+  @Inject ClientDAOFactory clientDAOFactory;
+  @Inject GroupDAOFactory groupDAOFactory;
+  @Inject SecretDAOFactory secretDAOFactory;
+  @Inject SecretSeriesDAOFactory secretSeriesDAOFactory;
+  @Inject SecretContentDAOFactory secretContentDAOFactory;
+  @Inject AclDAOFactory aclDAOFactory;
+  @Inject ClientMapper clientMapper;
+  @Inject GroupMapper groupMapper;
+  @Inject SecretSeriesMapper secretSeriesMapper;
+  @Inject SecretSeriesAndContentMapper secretSeriesAndContentMapper;
+  @Inject AclGraph aclGraph;
+  @Inject SecretChangeBus changeBus;
+
+  AclDAO aclDAO;
+  AclDAO materializedAclDAO;
+  Secret secret;
+  long clientId, group1Id, group2Id, secretId;
+
+  @Before public void setUp() {
+    aclDAO = aclDAOFactory.readwrite();
+    ClientSecretAccessConfig materialized = new ClientSecretAccessConfig();
+    materialized.setEnabled(true);
+    materializedAclDAO = new AclDAOFactory(jooqContext, jooqContext, clientDAOFactory,
+        groupDAOFactory, secretContentDAOFactory, secretSeriesDAOFactory, clientMapper,
+        groupMapper, secretSeriesMapper, secretSeriesAndContentMapper, aclGraph, changeBus,
+        materialized).readwrite();
+
+    clientId = clientDAOFactory.readwrite().createClient("client", "creator", "");
+    group1Id = groupDAOFactory.readwrite().createGroup("group1", "creator", "");
+    group2Id = groupDAOFactory.readwrite().createGroup("group2", "creator", "");
+    secret = SecretFixtures.using(secretDAOFactory.readwrite())
+        .createSecret("secret", "c2VjcmV0MQ==");
+    secretId = secret.getId();
+  }
+
+  @Test public void countsGroupsGrantingAccess() {
+    aclDAO.findAndEnrollClient(clientId, group1Id);
+    aclDAO.findAndEnrollClient(clientId, group2Id);
+    assertThat(refcounts()).isEmpty();
+
+    aclDAO.findAndAllowAccess(secretId, group1Id);
+    assertThat(refcounts()).containsOnly(entry(secretId, 1L));
+
+    aclDAO.findAndModifyAccess(secretId, ImmutableSet.of("group2"), ImmutableSet.of());
+    assertThat(refcounts()).containsOnly(entry(secretId, 2L));
+
+    aclDAO.findAndEvictClient(clientId, group1Id);
+    assertThat(refcounts()).containsOnly(entry(secretId, 1L));
+
+    aclDAO.findAndRevokeAccess(secretId, group2Id);
+    assertThat(refcounts()).isEmpty();
+  }
+
+  @Test public void maintainedOnGroupDeletion() {
+    aclDAO.findAndModifyMemberships(clientId, ImmutableSet.of("group1", "group2"),
+        ImmutableSet.of());
+    aclDAO.findAndModifyAccess(secretId, ImmutableSet.of("group1", "group2"), ImmutableSet.of());
+
+    GroupDAO groupDAO = groupDAOFactory.readwrite();
+    Group group1 = groupDAO.getGroupById(group1Id).get();
+    groupDAO.deleteGroup(group1);
+    assertThat(refcounts()).containsOnly(entry(secretId, 1L));
+  }
+
+  @Test public void maintainedOnClientAndSecretDeletion() {
+    long otherClientId = clientDAOFactory.readwrite().createClient("other", "creator", "");
+    aclDAO.findAndEnrollClient(clientId, group1Id);
+    aclDAO.findAndEnrollClient(otherClientId, group1Id);
+    aclDAO.findAndAllowAccess(secretId, group1Id);
+    assertThat(jooqContext.fetchCount(CLIENT_SECRET_ACCESS)).isEqualTo(2);
+
+    ClientDAO clientDAO = clientDAOFactory.readwrite();
+    Client other = clientDAO.getClientById(otherClientId).get();
+    clientDAO.deleteClient(other);
+    assertThat(jooqContext.fetchCount(CLIENT_SECRET_ACCESS)).isEqualTo(1);
+
+    secretSeriesDAOFactory.readwrite().deleteSecretSeriesById(secretId);
+    assertThat(jooqContext.fetchCount(CLIENT_SECRET_ACCESS)).isZero();
+  }
+
+  @Test public void rebuildRecoversFromDrift() {
+    aclDAO.findAndEnrollClient(clientId, group1Id);
+    aclDAO.findAndAllowAccess(secretId, group1Id);
+    jooqContext.delete(CLIENT_SECRET_ACCESS).execute();
+    assertThat(refcounts()).isEmpty();
+
+    assertThat(ClientSecretAccess.rebuild(jooqContext)).isEqualTo(1);
+    assertThat(refcounts()).containsOnly(entry(secretId, 1L));
+  }
+
+  @Test public void materializedReadsMatchJoins() {
+    long otherClientId = clientDAOFactory.readwrite().createClient("other", "creator", "");
+    Secret otherSecret = SecretFixtures.using(secretDAOFactory.readwrite())
+        .createSecret("otherSecret", "c2VjcmV0Mg==");
+    List<Secret> secrets = ImmutableList.of(secret, otherSecret);
+
+    aclDAO.findAndEnrollClient(clientId, group1Id);
+    aclDAO.findAndEnrollClient(otherClientId, group2Id);
+    aclDAO.findAndAllowAccess(secretId, group1Id);
+    aclDAO.findAndAllowAccess(otherSecret.getId(), group1Id);
+    aclDAO.findAndAllowAccess(otherSecret.getId(), group2Id);
+    assertReadsMatch(secrets);
+    Client client = clientDAOFactory.readonly().getClientById(clientId).get();
+    assertThat(materializedAclDAO.getSecretForDelivery(client, "secret", "").authorized()).isTrue();
+    assertThat(materializedAclDAO.getClientsFor(otherSecret)).hasSize(2);
+
+    aclDAO.findAndRevokeAccess(secretId, group1Id);
+    aclDAO.findAndEvictClient(otherClientId, group2Id);
+    assertReadsMatch(secrets);
+    assertThat(materializedAclDAO.getSecretForDelivery(client, "secret", "").authorized())
+        .isFalse();
+    assertThat(materializedAclDAO.getClientsFor(otherSecret)).hasSize(1);
+  }
+
+  /** Compares every read answered from client_secret_access with its join-based counterpart. */
+  private void assertReadsMatch(List<Secret> secrets) {
+    for (Client client : clientDAOFactory.readonly().getClients()) {
+      for (Secret secret : secrets) {
+        assertThat(materializedAclDAO.getSecretForDelivery(client, secret.getName(), ""))
+            .isEqualTo(aclDAO.getSecretForDelivery(client, secret.getName(), ""));
+        assertThat(materializedAclDAO.getSanitizedSecretFor(client, secret.getName(), ""))
+            .isEqualTo(aclDAO.getSanitizedSecretFor(client, secret.getName(), ""));
+      }
+      assertThat(materializedAclDAO.getSanitizedSecretsFor(client))
+          .isEqualTo(aclDAO.getSanitizedSecretsFor(client));
+      assertThat(materializedAclDAO.getSecretNamesFor(client))
+          .isEqualTo(aclDAO.getSecretNamesFor(client));
+    }
+    for (Secret secret : secrets) {
+      assertThat(materializedAclDAO.getClientsFor(secret)).isEqualTo(aclDAO.getClientsFor(secret));
+    }
+  }
+
+  /** @return refcount of each secret the client may read. */
+  private Map<Long, Long> refcounts() {
+    return jooqContext
+        .select(CLIENT_SECRET_ACCESS.SECRETID, CLIENT_SECRET_ACCESS.REFCOUNT)
+        .from(CLIENT_SECRET_ACCESS)
+        .where(CLIENT_SECRET_ACCESS.CLIENTID.eq(clientId))
+        .fetchMap(CLIENT_SECRET_ACCESS.SECRETID, CLIENT_SECRET_ACCESS.REFCOUNT);
+  }
+}
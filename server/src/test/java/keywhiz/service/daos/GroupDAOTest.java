@@ -17,6 +17,7 @@
 package keywhiz.service.daos;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import javax.inject.Inject;
 import keywhiz.KeywhizTestRunner;
@@ -96,6 +97,12 @@ public class GroupDAOTest {
     assertThat(groupDAO.getGroups()).containsOnly(group1, group2);
   }
 
+  @Test public void streamsGroups() {
+    List<Group> groups = new ArrayList<>();
+    groupDAO.streamGroups(groups::add);
+    assertThat(groups).containsOnly(group1, group2);
+  }
+
   @Test(expected = DataAccessException.class)
   public void willNotCreateDuplicateGroup() throws Exception {
     groupDAO.createGroup("group1", "creator1", "");
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.google.common.collect.ImmutableList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SecretChangeBusTest {
+  SecretChangeBus changeBus;
+
+  @Before public void setUp() {
+    changeBus = new SecretChangeBus(1);
+  }
+
+  @After public void tearDown() throws Exception {
+    changeBus.stop();
+  }
+
+  @Test public void publishWakesWaitersOfAffectedClients() throws Exception {
+    CompletableFuture<Boolean> first = changeBus.nextChange(1, TimeUnit.MINUTES.toMillis(1));
+    CompletableFuture<Boolean> second = changeBus.nextChange(1, TimeUnit.MINUTES.toMillis(1));
+    CompletableFuture<Boolean> other = changeBus.nextChange(2, TimeUnit.MINUTES.toMillis(1));
+    changeBus.publish(ImmutableList.of(1L));
+
+    assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(second.get(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(other.isDone()).isFalse();
+  }
+
+  @Test public void waitersGiveUpAfterMaxWait() throws Exception {
+    CompletableFuture<Boolean> change = changeBus.nextChange(1, 10);
+
+    assertThat(change.get(5, TimeUnit.SECONDS)).isFalse();
+  }
+
+  @Test public void publishOnlyWakesCurrentWaiters() throws Exception {
+    changeBus.publish(ImmutableList.of(1L));
+    CompletableFuture<Boolean> change = changeBus.nextChange(1, 10);
+
+    assertThat(change.get(5, TimeUnit.SECONDS)).isFalse();
+  }
+
+  @Test public void wakingReleasesTimer() throws Exception {
+    CompletableFuture<Boolean> change = changeBus.nextChange(1, TimeUnit.MINUTES.toMillis(1));
+    assertThat(changeBus.pendingTimers()).isEqualTo(1);
+
+    changeBus.publish(ImmutableList.of(1L));
+    change.get(5, TimeUnit.SECONDS);
+    // The timer is cancelled by a completion callback, which may still be running.
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (changeBus.pendingTimers() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(changeBus.pendingTimers()).isZero();
+  }
+
+  @Test public void cancellingReleasesTimer() throws Exception {
+    CompletableFuture<Boolean> change = changeBus.nextChange(1, TimeUnit.MINUTES.toMillis(1));
+    change.cancel(false);
+
+    assertThat(changeBus.pendingTimers()).isZero();
+    changeBus.publish(ImmutableList.of(1L));
+    assertThat(change.isCancelled()).isTrue();
+  }
+}
@@ -89,11 +89,11 @@ public class SecretContentDAOTest {
 
   @Test public void getSecretContentsBySecretId() {
     long id1 = secretContentDAO.createSecretContent(secretContent1.secretSeriesId(), "encrypted", "version", "creator",
-        metadata, 0);
+        metadata, 0).id();
     long id2 = secretContentDAO.createSecretContent(secretContent1.secretSeriesId(), "encrypted2", "version2", "creator",
-        metadata, 0);
+        metadata, 0).id();
     long id3 = secretContentDAO.createSecretContent(secretContent1.secretSeriesId(), "encrypted3", "version3", "creator",
-        metadata, 0);
+        metadata, 0).id();
 
     List<Long> actualIds = secretContentDAO.getSecretContentsBySecretId(secretContent1.secretSeriesId())
         .stream()
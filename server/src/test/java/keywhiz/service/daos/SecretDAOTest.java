@@ -17,8 +17,13 @@
 package keywhiz.service.daos;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import javax.inject.Inject;
 import keywhiz.KeywhizTestRunner;
 import keywhiz.api.ApiDate;
@@ -28,6 +33,9 @@ import keywhiz.api.model.SecretSeriesAndContent;
 import keywhiz.api.model.VersionGenerator;
 import keywhiz.service.crypto.ContentCryptographer;
 import keywhiz.service.crypto.CryptoFixtures;
+import keywhiz.service.daos.AclDAO.AclDAOFactory;
+import keywhiz.service.daos.GroupDAO.GroupDAOFactory;
+import keywhiz.service.daos.SecretDAO.NewSecret;
 import keywhiz.service.daos.SecretDAO.SecretDAOFactory;
 import org.jooq.DSLContext;
 import org.jooq.Table;
@@ -45,6 +53,8 @@ public class SecretDAOTest {
   @Inject DSLContext jooqContext;
   @Inject ObjectMapper objectMapper;
   @Inject SecretDAOFactory secretDAOFactory;
+  @Inject GroupDAOFactory groupDAOFactory;
+  @Inject AclDAOFactory aclDAOFactory;
 
   final static ContentCryptographer cryptographer = CryptoFixtures.contentCryptographer();
   final static ApiDate date = ApiDate.now();
@@ -125,9 +135,11 @@ public class SecretDAOTest {
     String content = "c2VjcmV0MQ==";
     String encryptedContent = cryptographer.encryptionKeyDerivedFrom(name).encrypt(content);
     String version = VersionGenerator.now().toHex();
-    long newId = secretDAO.createSecret(name, encryptedContent, version, "creator",
-        ImmutableMap.of(), 0, "", null, ImmutableMap.of());
-    SecretSeriesAndContent newSecret = secretDAO.getSecretByIdAndVersion(newId, version).get();
+    SecretSeriesAndContent created = secretDAO.createSecret(name, encryptedContent, version,
+        "creator", ImmutableMap.of(), 0, "", null, ImmutableMap.of());
+    SecretSeriesAndContent newSecret =
+        secretDAO.getSecretByIdAndVersion(created.series().id(), version).get();
+    assertThat(created).isEqualTo(newSecret);
 
     assertThat(tableSize(SECRETS)).isEqualTo(secretsBefore + 1);
     assertThat(tableSize(SECRETS_CONTENT)).isEqualTo(secretContentsBefore + 1);
@@ -146,14 +158,14 @@ public class SecretDAOTest {
     String encryptedContent1 = cryptographer.encryptionKeyDerivedFrom(name).encrypt(content);
     String version = VersionGenerator.fromLong(1234).toHex();
     long id = secretDAO.createSecret(name, encryptedContent1, version, "creator", ImmutableMap.of(),
-        0, "", null, ImmutableMap.of());
+        0, "", null, ImmutableMap.of()).series().id();
     SecretSeriesAndContent newSecret1 = secretDAO.getSecretByIdAndVersion(id, version).get();
 
     content = "amFja2RvcnNrZXkK";
     String encryptedContent2 = cryptographer.encryptionKeyDerivedFrom(name).encrypt(content);
     version = VersionGenerator.fromLong(4321).toHex();
     id = secretDAO.createSecret(name, encryptedContent2, version, "creator", ImmutableMap.of(), 0, "",
-        null, ImmutableMap.of());
+        null, ImmutableMap.of()).series().id();
     SecretSeriesAndContent newSecret2 = secretDAO.getSecretByIdAndVersion(id, version).get();
 
     // Only one new secrets entry should be created - there should be 2 secrets_content entries though
@@ -166,6 +178,39 @@ public class SecretDAOTest {
     assertThat(tableSize(SECRETS_CONTENT)).isEqualTo(secretContentsBefore + 2);
   }
 
+  @Test public void createSecrets() {
+    List<Optional<Long>> ids = secretDAO.createSecrets(ImmutableList.of(
+        NewSecret.of("batch1", "encrypted1", "", "creator", ImmutableMap.of(), 0, "desc", null),
+        NewSecret.of("batch1", "encrypted2", "v2", "creator", ImmutableMap.of(), 0, "", null),
+        NewSecret.of("batch1", "encrypted3", "", "creator", ImmutableMap.of(), 0, "", null),
+        NewSecret.of("secret2", "encrypted4", "", "creator", ImmutableMap.of(), 0, "", null)),
+        Collections.nCopies(4, ImmutableSet.<String>of()));
+
+    assertThat(ids.get(0)).isPresent();
+    assertThat(ids.get(1)).isEqualTo(ids.get(0));
+    assertThat(ids.get(2)).isEmpty();
+    assertThat(ids.get(3)).isEmpty();
+
+    SecretSeriesAndContent created = secretDAO.getSecretByNameAndVersion("batch1", "v2").get();
+    assertThat(created.series().id()).isEqualTo(ids.get(0).get());
+    assertThat(created.series().description()).isEqualTo("desc");
+    assertThat(created.content().encryptedContent()).isEqualTo("encrypted2");
+    assertThat(secretDAO.getVersionsForSecretName("batch1")).containsOnly("", "v2");
+  }
+
+  @Test public void createSecretsGrantsGroups() {
+    long groupId = groupDAOFactory.readwrite().createGroup("batchGroup", "creator", "");
+    List<Optional<Long>> ids = secretDAO.createSecrets(ImmutableList.of(
+        NewSecret.of("batch1", "encrypted1", "", "creator", ImmutableMap.of(), 0, "", null),
+        NewSecret.of("batch2", "encrypted2", "", "creator", ImmutableMap.of(), 0, "", null)),
+        ImmutableList.of(ImmutableSet.of("batchGroup", "unknownGroup"), ImmutableSet.of()));
+
+    assertThat(aclDAOFactory.readonly().getGroupsBySecretId().asMap())
+        .containsOnlyKeys(ids.get(0).get())
+        .containsEntry(ids.get(0).get(),
+            ImmutableSet.of(groupDAOFactory.readonly().getGroupById(groupId).get()));
+  }
+
   @Test public void getSecretByNameAndVersion() {
     String name = secret1.series().name();
     String version = secret1.content().version().orElse("");
@@ -183,7 +228,7 @@ public class SecretDAOTest {
     String content = "bmV3ZXJTZWNyZXQy";
     String encryptedContent = cryptographer.encryptionKeyDerivedFrom(name).encrypt(content);
     long newId = secretDAO.createSecret(name, encryptedContent, futureStamp, "creator", ImmutableMap.of(), 0, "desc",
-        null, null);
+        null, null).series().id();
     SecretSeriesAndContent newerSecret = secretDAO.getSecretByIdAndVersion(newId, futureStamp)
         .orElseThrow(RuntimeException::new);
 
@@ -231,6 +276,16 @@ public class SecretDAOTest {
     assertThat(secretDAO.getSecrets()).containsOnly(secret1, secret2);
   }
 
+  @Test public void getSecretNames() {
+    assertThat(secretDAO.getSecretNames()).containsOnly("secret1", "secret2");
+  }
+
+  @Test public void streamSecrets() {
+    List<SecretSeriesAndContent> secrets = new ArrayList<>();
+    secretDAO.streamSecrets(secrets::add);
+    assertThat(secrets).containsOnly(secret1, secret2);
+  }
+
   @Test public void deleteSecretsByName() {
     secretDAO.createSecret("toBeDeleted_deleteSecretsByName", "encryptedShhh", "first", "creator",
         ImmutableMap.of(), 0, "", null, null);
@@ -18,7 +18,9 @@ package keywhiz.service.daos;
 
 import com.google.common.collect.ImmutableMap;
 import keywhiz.api.model.Secret;
+import keywhiz.service.config.CryptoExecutorConfig;
 import keywhiz.service.crypto.ContentCryptographer;
+import keywhiz.service.crypto.CryptoExecutor;
 import keywhiz.service.crypto.CryptoFixtures;
 import keywhiz.service.crypto.SecretTransformer;
 
@@ -33,7 +35,9 @@ public class SecretFixtures {
   private SecretFixtures(SecretDAO secretDAO) {
     this.secretDAO = secretDAO;
     this.cryptographer = CryptoFixtures.contentCryptographer();
-    this.transformer = new SecretTransformer(cryptographer);
+    CryptoExecutorConfig serial = new CryptoExecutorConfig();
+    serial.setThreads(0);
+    this.transformer = new SecretTransformer(cryptographer, new CryptoExecutor(serial));
   }
 
   /**
@@ -64,8 +68,7 @@ public class SecretFixtures {
    */
   public Secret createSecret(String name, String content, String version) {
     String encryptedContent = cryptographer.encryptionKeyDerivedFrom(name).encrypt(content);
-    long id = secretDAO.createSecret(name, encryptedContent, version, "creator", ImmutableMap.of(), 0, "", null,
-        ImmutableMap.of());
-    return transformer.transform(secretDAO.getSecretByIdAndVersion(id, version).get());
+    return transformer.transform(secretDAO.createSecret(name, encryptedContent, version, "creator",
+        ImmutableMap.of(), 0, "", null, ImmutableMap.of()));
   }
 }
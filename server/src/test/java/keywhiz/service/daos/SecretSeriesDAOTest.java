@@ -46,7 +46,7 @@ public class SecretSeriesDAOTest {
     ApiDate now = ApiDate.now();
 
     long id = secretSeriesDAO.createSecretSeries("newSecretSeries", "creator", "desc", null,
-        ImmutableMap.of("foo", "bar"));
+        ImmutableMap.of("foo", "bar")).id();
     SecretSeries expected = SecretSeries.of(id, "newSecretSeries", "desc", now, "creator", now,
         "creator", null, ImmutableMap.of("foo", "bar"));
 
@@ -76,7 +76,8 @@ public class SecretSeriesDAOTest {
   }
 
   @Test public void deleteSecretSeriesById() {
-    long id = secretSeriesDAO.createSecretSeries("toBeDeleted_deleteSecretSeriesById", "creator", "", null, null);
+    long id = secretSeriesDAO.createSecretSeries("toBeDeleted_deleteSecretSeriesById", "creator", "", null, null)
+        .id();
 
     int secretsBefore = tableSize();
 
@@ -16,6 +16,7 @@
 
 package keywhiz.service.providers;
 
+import com.codahale.metrics.MetricRegistry;
 import java.security.Principal;
 import java.util.Optional;
 import javax.ws.rs.NotAuthorizedException;
@@ -23,7 +24,10 @@ import javax.ws.rs.core.SecurityContext;
 import keywhiz.api.ApiDate;
 import keywhiz.api.model.Client;
 import keywhiz.auth.mutualssl.SimplePrincipal;
+import keywhiz.service.config.ClientCacheConfig;
+import keywhiz.service.daos.ClientCache;
 import keywhiz.service.daos.ClientDAO;
+import keywhiz.service.daos.ClientRegistrar;
 import org.glassfish.jersey.server.ContainerRequest;
 import org.junit.Before;
 import org.junit.Rule;
@@ -34,7 +38,9 @@ import org.mockito.junit.MockitoRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ClientAuthFactoryTest {
@@ -47,11 +53,12 @@ public class ClientAuthFactoryTest {
   @Mock ContainerRequest request;
   @Mock SecurityContext securityContext;
   @Mock ClientDAO clientDAO;
+  @Mock ClientRegistrar clientRegistrar;
 
   ClientAuthFactory factory;
 
   @Before public void setUp() {
-    factory = new ClientAuthFactory(clientDAO);
+    factory = new ClientAuthFactory(clientDAO, ClientCache.disabled(), clientRegistrar);
 
     when(request.getSecurityContext()).thenReturn(securityContext);
     when(clientDAO.getClient("principal")).thenReturn(Optional.of(client));
@@ -81,19 +88,29 @@ public class ClientAuthFactoryTest {
     factory.provide(request);
   }
 
-  @Test public void createsDbRecordForNewClient() throws Exception {
+  @Test public void registersNewClient() throws Exception {
     ApiDate now = ApiDate.now();
-    Client newClient = new Client(2345L, "new-client", "desc", now, "automatic", now, "automatic",
+    Client newClient = new Client(2, "new-client", "desc", now, "automatic", now, "automatic",
         true, false);
 
     // lookup doesn't find client
     when(securityContext.getUserPrincipal()).thenReturn(SimplePrincipal.of("CN=new-client"));
     when(clientDAO.getClient("new-client")).thenReturn(Optional.empty());
 
-    // a new DB record is created
-    when(clientDAO.createClient(eq("new-client"), eq("automatic"), any())).thenReturn(2345L);
-    when(clientDAO.getClientById(2345L)).thenReturn(Optional.of(newClient));
+    // the client is registered with the next batch
+    when(clientRegistrar.register("new-client")).thenReturn(newClient);
 
     assertThat(factory.provide(request)).isEqualTo(newClient);
+    verify(clientDAO, never()).createClient(any(), any(), any());
+  }
+
+  @Test public void cachesClientsBySubject() {
+    factory = new ClientAuthFactory(clientDAO,
+        new ClientCache(new ClientCacheConfig(), new MetricRegistry()), clientRegistrar);
+    when(securityContext.getUserPrincipal()).thenReturn(principal);
+
+    assertThat(factory.provide(request)).isEqualTo(client);
+    assertThat(factory.provide(request)).isEqualTo(client);
+    verify(clientDAO, times(1)).getClient("principal");
   }
 }
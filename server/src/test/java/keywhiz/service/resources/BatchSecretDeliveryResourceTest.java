@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.service.resources;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.ws.rs.BadRequestException;
+import keywhiz.api.ApiDate;
+import keywhiz.api.BatchSecretDeliveryResponse;
+import keywhiz.api.BatchSecretDeliveryResponse.Item;
+import keywhiz.api.SecretDeliveryResponse;
+import keywhiz.api.model.Client;
+import keywhiz.api.model.Secret;
+import keywhiz.api.model.SecretContent;
+import keywhiz.api.model.SecretSeries;
+import keywhiz.api.model.SecretSeriesAndContent;
+import keywhiz.service.audit.AccessAuditLog;
+import keywhiz.service.audit.AccessEvent.Action;
+import keywhiz.service.audit.AccessEvent.Outcome;
+import keywhiz.service.crypto.SecretTransformer;
+import keywhiz.service.daos.AclDAO;
+import keywhiz.service.daos.AclDAO.DeliveryLookup;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anySet;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BatchSecretDeliveryResourceTest {
+  private static final ApiDate NOW = ApiDate.now();
+
+  @Rule public MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock SecretTransformer secretTransformer;
+  @Mock AclDAO aclDAO;
+  @Mock AccessAuditLog auditLog;
+  BatchSecretDeliveryResource resource;
+
+  final Client client = new Client(0, "principal", null, null, null, null, null, false, false);
+  final Secret first = new Secret(0, "first", null, null, "c2VjcmV0MQ==", NOW, null, NOW, null,
+      null, null, null);
+  final Secret second = new Secret(1, "second", null, null, "c2VjcmV0Mg==", NOW, null, NOW, null,
+      null, null, null);
+
+  @Before public void setUp() {
+    resource = new BatchSecretDeliveryResource(secretTransformer, aclDAO, auditLog);
+  }
+
+  @Test public void returnsEachSecretInRequestOrder() throws Exception {
+    SecretSeriesAndContent firstEncrypted = seriesAndContent(first);
+    SecretSeriesAndContent secondEncrypted = seriesAndContent(second);
+    when(aclDAO.getSecretsForDelivery(eq(client), anySet()))
+        .thenReturn(ImmutableMap.of(
+            entry("second"), DeliveryLookup.of(true, true, secondEncrypted),
+            entry("first"), DeliveryLookup.of(true, true, firstEncrypted)));
+    when(secretTransformer.transformEach(ImmutableList.of(secondEncrypted, firstEncrypted)))
+        .thenReturn(ImmutableList.of(Optional.of(second), Optional.of(first)));
+
+    BatchSecretDeliveryResponse response =
+        resource.getSecrets(ImmutableList.of("first", "second"), client);
+    assertThat(response.secrets()).containsExactly(
+        Item.found("first", SecretDeliveryResponse.fromSecret(first)),
+        Item.found("second", SecretDeliveryResponse.fromSecret(second)));
+  }
+
+  @Test public void reportsFailuresPerSecret() throws Exception {
+    when(aclDAO.getSecretsForDelivery(eq(client), anySet()))
+        .thenReturn(ImmutableMap.of(
+            entry("denied"), DeliveryLookup.of(true, false, seriesAndContent(first)),
+            entry("missing"), DeliveryLookup.of(true, false, null)));
+    when(secretTransformer.transformEach(ImmutableList.of())).thenReturn(ImmutableList.of());
+
+    BatchSecretDeliveryResponse response =
+        resource.getSecrets(ImmutableList.of("denied", "missing", "bad..na..me"), client);
+    assertThat(response.secrets()).containsExactly(
+        Item.failed("denied", 403),
+        Item.failed("missing", 404),
+        Item.failed("bad..na..me", 400));
+  }
+
+  @Test public void reportsFailedDecryptionPerSecret() throws Exception {
+    SecretSeriesAndContent firstEncrypted = seriesAndContent(first);
+    SecretSeriesAndContent secondEncrypted = seriesAndContent(second);
+    when(aclDAO.getSecretsForDelivery(eq(client), anySet()))
+        .thenReturn(ImmutableMap.of(
+            entry("first"), DeliveryLookup.of(true, true, firstEncrypted),
+            entry("second"), DeliveryLookup.of(true, true, secondEncrypted)));
+    when(secretTransformer.transformEach(ImmutableList.of(firstEncrypted, secondEncrypted)))
+        .thenReturn(ImmutableList.of(Optional.empty(), Optional.of(second)));
+
+    BatchSecretDeliveryResponse response =
+        resource.getSecrets(ImmutableList.of("first", "second"), client);
+    assertThat(response.secrets()).containsExactly(
+        Item.failed("first", 500),
+        Item.found("second", SecretDeliveryResponse.fromSecret(second)));
+    verify(auditLog).record(client.getName(), Action.READ, "first", Outcome.FAILED);
+    verify(auditLog).record(client.getName(), Action.READ, "second", Outcome.GRANTED);
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void rejectsTooManySecrets() throws Exception {
+    List<String> names = Collections.nCopies(BatchSecretDeliveryResource.MAX_SECRETS + 1, "name");
+    resource.getSecrets(names, client);
+  }
+
+  private static Map.Entry<String, String> entry(String name) {
+    return Maps.immutableEntry(name, "");
+  }
+
+  private static SecretSeriesAndContent seriesAndContent(Secret secret) {
+    return SecretSeriesAndContent.of(
+        SecretSeries.of(secret.getId(), secret.getName(), null, NOW, null, NOW, null, null, null),
+        SecretContent.of(secret.getId(), secret.getId(), "encrypted", secret.getVersion(), NOW,
+            null, NOW, null, ImmutableMap.of()));
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import java.io.ByteArrayOutputStream;
+import keywhiz.KeywhizService;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class JsonArrayOutputTest {
+  private static final ObjectMapper MAPPER =
+      KeywhizService.customizeObjectMapper(Jackson.newObjectMapper());
+
+  @Test public void writesArray() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new JsonArrayOutput<Integer>(MAPPER, consumer -> {
+      consumer.accept(1);
+      consumer.accept(2);
+    }).write(output);
+
+    assertThat(new String(output.toByteArray(), UTF_8)).isEqualTo("[1,2]");
+  }
+
+  @Test public void leavesArrayOpenOnFailure() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      new JsonArrayOutput<Integer>(MAPPER, consumer -> {
+        consumer.accept(1);
+        throw new IllegalStateException("connection lost");
+      }).write(output);
+      fail("expected the producer's failure");
+    } catch (IllegalStateException expected) {
+    }
+
+    assertThat(new String(output.toByteArray(), UTF_8)).isEqualTo("[1");
+  }
+}
@@ -15,18 +15,26 @@
  */
 package keywhiz.service.resources;
 
-import java.util.Optional;
+import com.google.common.collect.ImmutableMap;
 import javax.ws.rs.ForbiddenException;
 import javax.ws.rs.NotFoundException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import keywhiz.api.ApiDate;
 import keywhiz.api.SecretDeliveryResponse;
 import keywhiz.api.model.Client;
-import keywhiz.api.model.SanitizedSecret;
 import keywhiz.api.model.Secret;
+import keywhiz.api.model.SecretContent;
+import keywhiz.api.model.SecretSeries;
+import keywhiz.api.model.SecretSeriesAndContent;
 import keywhiz.api.model.VersionGenerator;
+import keywhiz.service.audit.AccessAuditLog;
+import keywhiz.service.audit.AccessEvent.Action;
+import keywhiz.service.audit.AccessEvent.Outcome;
+import keywhiz.service.crypto.SecretTransformer;
 import keywhiz.service.daos.AclDAO;
-import keywhiz.service.daos.ClientDAO;
-import keywhiz.service.daos.SecretController;
+import keywhiz.service.daos.AclDAO.DeliveryLookup;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -35,6 +43,10 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SecretDeliveryResourceTest {
@@ -42,9 +54,10 @@ public class SecretDeliveryResourceTest {
 
   @Rule public MockitoRule mockito = MockitoJUnit.rule();
 
-  @Mock SecretController secretController;
+  @Mock SecretTransformer secretTransformer;
   @Mock AclDAO aclDAO;
-  @Mock ClientDAO clientDAO;
+  @Mock Request request;
+  @Mock AccessAuditLog auditLog;
   SecretDeliveryResource secretDeliveryResource;
 
   final Client client = new Client(0, "principal", null, null, null, null, null, false, false);
@@ -54,22 +67,16 @@ public class SecretDeliveryResourceTest {
       null, null, null, null);
 
   @Before public void setUp() {
-    secretDeliveryResource = new SecretDeliveryResource(secretController, aclDAO, clientDAO);
+    secretDeliveryResource = new SecretDeliveryResource(secretTransformer, aclDAO, auditLog);
   }
 
   @Test public void returnsSecretWhenAllowed() throws Exception {
-    Secret secret = new Secret(0, "secret_name", null, null, "unused_secret", NOW, null, NOW, null, null, null, null);
-    SanitizedSecret sanitizedSecret = SanitizedSecret.fromSecret(secret);
-    String name = sanitizedSecret.name();
-    String version = sanitizedSecret.version();
-
-    when(aclDAO.getSanitizedSecretFor(client, name, version))
-        .thenReturn(Optional.of(sanitizedSecret));
-    when(secretController.getSecretByNameAndVersion(name, version))
-        .thenReturn(Optional.of(secret));
-
-    SecretDeliveryResponse response = secretDeliveryResource.getSecret(sanitizedSecret.name(), client);
-    assertThat(response).isEqualTo(SecretDeliveryResponse.fromSecret(secret));
+    allow(secret);
+
+    Response response = secretDeliveryResource.getSecret(secret.getName(), request, client);
+    assertThat(response.getEntity()).isEqualTo(SecretDeliveryResponse.fromSecret(secret));
+    assertThat(response.getEntityTag()).isNotNull();
+    verify(auditLog).record(client.getName(), Action.READ, secret.getName(), Outcome.GRANTED);
   }
 
   @Test public void returnsVersionedSecretWhenAllowed() throws Exception {
@@ -77,57 +84,84 @@ public class SecretDeliveryResourceTest {
     String version = VersionGenerator.now().toHex();
     Secret versionedSecret = new Secret(2, name, version, null, "U3BpZGVybWFu", NOW, null, NOW,
         null, null, null, null);
-
-    when(aclDAO.getSanitizedSecretFor(client, name, version))
-        .thenReturn(Optional.of(SanitizedSecret.fromSecret(versionedSecret)));
-    when(secretController.getSecretByNameAndVersion(name, version))
-        .thenReturn(Optional.of(versionedSecret));
+    allow(versionedSecret);
 
     String displayName = versionedSecret.getDisplayName();
-    SecretDeliveryResponse response = secretDeliveryResource.getSecret(displayName, client);
-    assertThat(response).isEqualTo(SecretDeliveryResponse.fromSecret(versionedSecret));
+    Response response = secretDeliveryResource.getSecret(displayName, request, client);
+    assertThat(response.getEntity()).isEqualTo(SecretDeliveryResponse.fromSecret(versionedSecret));
   }
 
   @Test(expected = NotFoundException.class)
   public void returnsNotFoundWhenClientDoesNotExist() throws Exception {
-    when(aclDAO.getSanitizedSecretFor(client, secret.getName(), "")).thenReturn(Optional.empty());
-    when(clientDAO.getClient(client.getName())).thenReturn(Optional.empty());
-    when(secretController.getSecretByNameAndVersion(secret.getName(), ""))
-        .thenReturn(Optional.of(secret));
+    when(aclDAO.getSecretForDelivery(client, secret.getName(), ""))
+        .thenReturn(DeliveryLookup.of(false, false, null));
 
-    secretDeliveryResource.getSecret(secret.getName(), client);
+    secretDeliveryResource.getSecret(secret.getName(), request, client);
   }
 
   @Test(expected = NotFoundException.class)
   public void returnsNotFoundWhenSecretDoesNotExist() throws Exception {
-    when(aclDAO.getSanitizedSecretFor(client, "secret_name", "")).thenReturn(Optional.empty());
-    when(clientDAO.getClient(client.getName())).thenReturn(Optional.of(client));
-    when(secretController.getSecretByNameAndVersion("secret_name", ""))
-        .thenReturn(Optional.empty());
+    when(aclDAO.getSecretForDelivery(client, "secret_name", ""))
+        .thenReturn(DeliveryLookup.of(true, false, null));
 
-    secretDeliveryResource.getSecret("secret_name", client);
+    secretDeliveryResource.getSecret("secret_name", request, client);
   }
 
   @Test(expected = ForbiddenException.class)
   public void returnsUnauthorizedWhenDenied() throws Exception {
-    when(aclDAO.getSanitizedSecretFor(client, secret.getName(), "")).thenReturn(Optional.empty());
-    when(clientDAO.getClient(client.getName())).thenReturn(Optional.of(client));
-    when(secretController.getSecretByNameAndVersion(secret.getName(), ""))
-        .thenReturn(Optional.of(secret));
+    when(aclDAO.getSecretForDelivery(client, secret.getName(), ""))
+        .thenReturn(DeliveryLookup.of(true, false, seriesAndContent(secret)));
 
-    secretDeliveryResource.getSecret(secret.getName(), client);
+    secretDeliveryResource.getSecret(secret.getName(), request, client);
   }
 
-  @Test public void doesNotEscapeBase64() throws Exception {
-    String name = secretBase64.getName();
-    String version = secretBase64.getVersion();
+  @Test public void auditsDenialWithoutDecrypting() throws Exception {
+    when(aclDAO.getSecretForDelivery(client, secret.getName(), ""))
+        .thenReturn(DeliveryLookup.of(true, false, seriesAndContent(secret)));
+
+    try {
+      secretDeliveryResource.getSecret(secret.getName(), request, client);
+      failBecauseExceptionWasNotThrown(ForbiddenException.class);
+    } catch (ForbiddenException e) {
+      // Denied, since the client holds no grant for the secret
+    }
+    verify(secretTransformer, never()).transform(any(SecretSeriesAndContent.class));
+    verify(auditLog).record(client.getName(), Action.READ, secret.getName(), Outcome.DENIED);
+  }
 
-    when(aclDAO.getSanitizedSecretFor(client, name, version))
-        .thenReturn(Optional.of(SanitizedSecret.fromSecret(secretBase64)));
-    when(secretController.getSecretByNameAndVersion(name, version))
-        .thenReturn(Optional.of(secretBase64));
+  @Test public void doesNotEscapeBase64() throws Exception {
+    allow(secretBase64);
 
-    SecretDeliveryResponse response = secretDeliveryResource.getSecret(secretBase64.getName(), client);
+    SecretDeliveryResponse response = (SecretDeliveryResponse)
+        secretDeliveryResource.getSecret(secretBase64.getName(), request, client).getEntity();
     assertThat(response.getSecret()).isEqualTo(secretBase64.getSecret());
   }
+
+  @Test public void returnsNotModifiedWithoutDecrypting() throws Exception {
+    allow(secret);
+    when(request.evaluatePreconditions(any(EntityTag.class))).thenReturn(Response.notModified());
+
+    Response response = secretDeliveryResource.getSecret(secret.getName(), request, client);
+    assertThat(response.getStatus()).isEqualTo(304);
+    assertThat(response.getEntityTag()).isNotNull();
+    verify(secretTransformer, never()).transform(any(SecretSeriesAndContent.class));
+    verify(auditLog).record(client.getName(), Action.READ, secret.getName(),
+        Outcome.NOT_MODIFIED);
+    verify(auditLog, never()).record(client.getName(), Action.READ, secret.getName(),
+        Outcome.GRANTED);
+  }
+
+  private void allow(Secret secret) {
+    SecretSeriesAndContent seriesAndContent = seriesAndContent(secret);
+    when(aclDAO.getSecretForDelivery(client, secret.getName(), secret.getVersion()))
+        .thenReturn(DeliveryLookup.of(true, true, seriesAndContent));
+    when(secretTransformer.transform(seriesAndContent)).thenReturn(secret);
+  }
+
+  private static SecretSeriesAndContent seriesAndContent(Secret secret) {
+    return SecretSeriesAndContent.of(
+        SecretSeries.of(secret.getId(), secret.getName(), null, NOW, null, NOW, null, null, null),
+        SecretContent.of(secret.getId(), secret.getId(), "encrypted", secret.getVersion(), NOW,
+            null, NOW, null, ImmutableMap.of()));
+  }
 }
@@ -16,23 +16,40 @@
 package keywhiz.service.resources;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import keywhiz.api.ApiDate;
 import keywhiz.api.SecretDeliveryResponse;
 import keywhiz.api.model.Client;
 import keywhiz.api.model.SanitizedSecret;
 import keywhiz.api.model.Secret;
+import keywhiz.service.audit.AccessAuditLog;
+import keywhiz.service.audit.AccessEvent.Action;
+import keywhiz.service.audit.AccessEvent.Outcome;
+import keywhiz.service.config.SecretWatchConfig;
 import keywhiz.service.daos.AclDAO;
+import keywhiz.service.daos.SecretChangeBus;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SecretsDeliveryResourceTest {
@@ -41,6 +58,10 @@ public class SecretsDeliveryResourceTest {
   @Rule public MockitoRule mockito = MockitoJUnit.rule();
 
   @Mock AclDAO aclDAO;
+  @Mock Request request;
+  @Mock SecretChangeBus changeBus;
+  @Mock AsyncResponse asyncResponse;
+  @Mock AccessAuditLog auditLog;
   SecretsDeliveryResource secretsDeliveryResource;
 
   Secret firstSecret = new Secret(0, "first_secret_name", null, null,
@@ -54,31 +75,98 @@ public class SecretsDeliveryResourceTest {
   Client client;
 
   @Before public void setUp() {
-    secretsDeliveryResource = new SecretsDeliveryResource(aclDAO);
+    secretsDeliveryResource =
+        new SecretsDeliveryResource(aclDAO, changeBus, new SecretWatchConfig(), auditLog);
     client = new Client(0, "client_name", null, null, null, null, null, false, false);
+    when(aclDAO.getSecretsFingerprintFor(client)).thenReturn(HashCode.fromLong(1));
   }
 
   @Test public void returnsEmptyJsonArrayWhenUserHasNoSecrets() throws Exception {
     when(aclDAO.getSanitizedSecretsFor(client)).thenReturn(ImmutableSet.of());
-    List<SecretDeliveryResponse> secrets = secretsDeliveryResource.getSecrets(client);
+    List<SecretDeliveryResponse> secrets = getSecrets();
     assertThat(secrets).isEmpty();
   }
 
   @Test public void returnsJsonArrayWhenUserHasOneSecret() throws Exception {
     when(aclDAO.getSanitizedSecretsFor(client)).thenReturn(ImmutableSet.of(sanitizedFirstSecret));
 
-    List<SecretDeliveryResponse> secrets = secretsDeliveryResource.getSecrets(client);
+    List<SecretDeliveryResponse> secrets = getSecrets();
     assertThat(secrets).containsOnly(SecretDeliveryResponse.fromSanitizedSecret(
         SanitizedSecret.fromSecret(firstSecret)));
+    verify(auditLog).record(client.getName(), Action.LIST, "", Outcome.GRANTED);
   }
 
   @Test public void returnsJsonArrayWhenUserHasMultipleSecrets() throws Exception {
     when(aclDAO.getSanitizedSecretsFor(client))
         .thenReturn(ImmutableSet.of(sanitizedFirstSecret, sanitizedSecondSecret));
 
-    List<SecretDeliveryResponse> secrets = secretsDeliveryResource.getSecrets(client);
+    List<SecretDeliveryResponse> secrets = getSecrets();
     assertThat(secrets).containsOnly(
         SecretDeliveryResponse.fromSanitizedSecret(SanitizedSecret.fromSecret(firstSecret)),
         SecretDeliveryResponse.fromSanitizedSecret(SanitizedSecret.fromSecret(secondSecret)));
   }
+
+  @Test public void returnsNotModifiedWithoutListing() throws Exception {
+    when(request.evaluatePreconditions(new EntityTag(HashCode.fromLong(1).toString())))
+        .thenReturn(Response.notModified());
+
+    Response response = secretsDeliveryResource.getSecrets(request, client);
+    assertThat(response.getStatus()).isEqualTo(304);
+    verify(aclDAO, never()).getSanitizedSecretsFor(client);
+    verify(auditLog).record(client.getName(), Action.LIST, "", Outcome.NOT_MODIFIED);
+  }
+
+  @Test public void watchAnswersImmediatelyWhenChanged() throws Exception {
+    when(aclDAO.getSanitizedSecretsFor(client)).thenReturn(ImmutableSet.of(sanitizedFirstSecret));
+
+    secretsDeliveryResource.watchSecrets(client, "\"stale\"", 30, asyncResponse);
+
+    ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+    verify(asyncResponse).resume(response.capture());
+    assertThat(response.getValue().getStatus()).isEqualTo(200);
+    verify(changeBus, never()).nextChange(anyLong(), anyLong());
+  }
+
+  @Test public void watchWaitsForChange() throws Exception {
+    HashCode current = HashCode.fromLong(1);
+    CompletableFuture<Boolean> change = new CompletableFuture<>();
+    when(changeBus.nextChange(anyLong(), anyLong())).thenReturn(change);
+    when(aclDAO.getSanitizedSecretsFor(client)).thenReturn(ImmutableSet.of(sanitizedFirstSecret));
+
+    secretsDeliveryResource.watchSecrets(client, new EntityTag(current.toString()).toString(), 30,
+        asyncResponse);
+    verify(asyncResponse, never()).resume(any(Response.class));
+
+    when(aclDAO.getSecretsFingerprintFor(client)).thenReturn(HashCode.fromLong(2));
+    change.complete(true);
+
+    ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+    verify(asyncResponse).resume(response.capture());
+    assertThat(response.getValue().getEntityTag())
+        .isEqualTo(new EntityTag(HashCode.fromLong(2).toString()));
+  }
+
+  @Test public void watchAuditsTimeoutAsNotModified() throws Exception {
+    when(changeBus.nextChange(anyLong(), anyLong())).thenReturn(new CompletableFuture<>());
+    when(asyncResponse.resume(any(Response.class))).thenReturn(true);
+    String current = new EntityTag(HashCode.fromLong(1).toString()).toString();
+
+    secretsDeliveryResource.watchSecrets(client, current, 30, asyncResponse);
+    ArgumentCaptor<TimeoutHandler> timeoutHandler = ArgumentCaptor.forClass(TimeoutHandler.class);
+    verify(asyncResponse).setTimeoutHandler(timeoutHandler.capture());
+    timeoutHandler.getValue().handleTimeout(asyncResponse);
+
+    ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+    verify(asyncResponse).resume(response.capture());
+    assertThat(response.getValue().getStatus()).isEqualTo(304);
+    verify(auditLog).record(client.getName(), Action.LIST, "", Outcome.NOT_MODIFIED);
+    verify(auditLog, never()).record(client.getName(), Action.LIST, "", Outcome.GRANTED);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<SecretDeliveryResponse> getSecrets() {
+    Response response = secretsDeliveryResource.getSecrets(request, client);
+    assertThat(response.getEntityTag()).isEqualTo(new EntityTag(HashCode.fromLong(1).toString()));
+    return (List<SecretDeliveryResponse>) response.getEntity();
+  }
 }
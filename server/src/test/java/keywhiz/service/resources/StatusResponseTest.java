@@ -2,29 +2,35 @@ package keywhiz.service.resources;
 
 import com.codahale.metrics.health.HealthCheck;
 import com.codahale.metrics.health.HealthCheckRegistry;
-import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import java.time.Clock;
 import java.util.TreeMap;
-import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.core.Response;
+import keywhiz.CachedHealthChecks;
+import keywhiz.service.config.HealthChecksConfig;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class StatusResponseTest {
   HealthCheckRegistry registry;
-  Environment environment;
+  Clock clock;
   StatusResource status;
 
   @Before
   public void setUp() throws Exception {
     this.registry = mock(HealthCheckRegistry.class);
-    this.environment = mock(Environment.class);
-    this.status = new StatusResource(environment);
+    this.clock = mock(Clock.class);
+    HealthChecksConfig config = new HealthChecksConfig();
+    config.setMaxAge(Duration.seconds(30));
+    this.status = new StatusResource(new CachedHealthChecks(registry, config, clock));
 
-    when(environment.healthChecks()).thenReturn(registry);
+    when(clock.millis()).thenReturn(1000L);
   }
 
   @Test
@@ -43,4 +49,26 @@ public class StatusResponseTest {
     Response r = status.get();
     assertThat(r.getStatus()).isEqualTo(500);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testStatusServesCachedResults() throws Exception {
+    when(registry.runHealthChecks()).thenReturn(new TreeMap<>());
+    status.get();
+
+    when(clock.millis()).thenReturn(3000L);
+    Response r = status.get();
+    assertThat(r.getStatus()).isEqualTo(200);
+    assertThat(((StatusResource.StatusResponse) r.getEntity()).getAgeMillis()).isEqualTo(2000);
+    verify(registry, times(1)).runHealthChecks();
+  }
+
+  @Test
+  public void testStatusCriticalWhenStale() throws Exception {
+    when(registry.runHealthChecks()).thenReturn(new TreeMap<>());
+    status.get();
+
+    when(clock.millis()).thenReturn(60_000L);
+    Response r = status.get();
+    assertThat(r.getStatus()).isEqualTo(500);
+  }
+}
@@ -16,12 +16,18 @@
 
 package keywhiz.service.resources.admin;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.LongParam;
+import java.io.ByteArrayOutputStream;
 import java.util.Collections;
-import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.core.Response;
 import keywhiz.api.ApiDate;
@@ -34,6 +40,7 @@ import keywhiz.api.model.Secret;
 import keywhiz.auth.User;
 import keywhiz.service.daos.AclDAO;
 import keywhiz.service.daos.ClientDAO;
+import keywhiz.service.daos.Page;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -41,7 +48,10 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import static keywhiz.api.Paging.NEXT_CURSOR_HEADER;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -55,20 +65,42 @@ public class ClientsResourceTest {
   ApiDate now = ApiDate.now();
   Client client = new Client(1, "client", "1st client", now, "test", now, "test", true, false);
 
+  ObjectMapper mapper = Jackson.newObjectMapper();
   ClientsResource resource;
 
   @Before public void setUp() {
-    resource = new ClientsResource(aclDAO, clientDAO);
+    resource = new ClientsResource(aclDAO, clientDAO, mapper);
   }
 
-  @Test public void listClients() {
+  @SuppressWarnings("unchecked")
+  @Test public void listClients() throws Exception {
     Client client1 = new Client(1, "client", "1st client", now, "test", now, "test", true, false);
     Client client2 = new Client(2, "client2", "2nd client", now, "test", now, "test", true, false);
 
-    when(clientDAO.getClients()).thenReturn(ImmutableSet.of(client1, client2));
+    doAnswer(invocation -> {
+      Consumer<Client> consumer = (Consumer<Client>) invocation.getArguments()[0];
+      consumer.accept(client1);
+      consumer.accept(client2);
+      return null;
+    }).when(clientDAO).streamClients(any());
+
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    resource.listClients(user).write(response);
+    assertThat(response.toString("UTF-8"))
+        .isEqualTo(mapper.writeValueAsString(ImmutableList.of(client1, client2)));
+  }
+
+  @Test public void pagesClients() {
+    when(clientDAO.getClients(0, 1)).thenReturn(Page.of(ImmutableList.of(client), Optional.of("1")));
+
+    Response response = resource.findClients(user, "", new IntParam("1"), new LongParam("0"));
+    assertThat(response.getEntity()).isEqualTo(ImmutableList.of(client));
+    assertThat(response.getHeaderString(NEXT_CURSOR_HEADER)).isEqualTo("1");
+  }
 
-    List<Client> response = resource.listClients(user);
-    assertThat(response).containsOnly(client1, client2);
+  @Test(expected = BadRequestException.class)
+  public void rejectsOversizedPages() {
+    resource.findClients(user, "", new IntParam("1001"), new LongParam("0"));
   }
 
   @Test public void createsClient() {
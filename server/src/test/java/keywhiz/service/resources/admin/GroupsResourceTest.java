@@ -15,10 +15,14 @@
  */
 package keywhiz.service.resources.admin;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import io.dropwizard.jackson.Jackson;
 import io.dropwizard.jersey.params.LongParam;
-import java.util.List;
+import java.io.ByteArrayOutputStream;
 import java.util.Optional;
+import java.util.function.Consumer;
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.core.Response;
@@ -39,6 +43,8 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -52,19 +58,28 @@ public class GroupsResourceTest {
   ApiDate now = ApiDate.now();
   Group group = new Group(1, "group", "desc", now, "creator", now, "creator");
 
+  ObjectMapper mapper = Jackson.newObjectMapper();
   GroupsResource resource;
 
   @Before public void setUp() {
-    resource = new GroupsResource(aclDAO, groupDAO);
+    resource = new GroupsResource(aclDAO, groupDAO, mapper);
   }
 
-  @Test public void listingOfGroups() {
+  @SuppressWarnings("unchecked")
+  @Test public void listingOfGroups() throws Exception {
     Group group1 = new Group(1, "group1", "desc", now, "creator", now, "updater");
     Group group2 = new Group(2, "group2", "desc", now, "creator", now, "updater");
-    when(groupDAO.getGroups()).thenReturn(ImmutableSet.of(group1, group2));
-
-    List<Group> response = resource.listGroups(user);
-    assertThat(response).containsOnly(group1, group2);
+    doAnswer(invocation -> {
+      Consumer<Group> consumer = (Consumer<Group>) invocation.getArguments()[0];
+      consumer.accept(group1);
+      consumer.accept(group2);
+      return null;
+    }).when(groupDAO).streamGroups(any());
+
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    resource.listGroups(user).write(response);
+    assertThat(response.toString("UTF-8"))
+        .isEqualTo(mapper.writeValueAsString(ImmutableList.of(group1, group2)));
   }
 
   @Test public void createsGroup() {
@@ -16,14 +16,17 @@
 
 package keywhiz.service.resources.admin;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
+import io.dropwizard.jackson.Jackson;
 import io.dropwizard.jersey.params.LongParam;
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.util.Collections;
-import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
@@ -48,6 +51,8 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -68,23 +73,32 @@ public class SecretsResourceTest {
   Secret secret = new Secret(22, "name", "version", "desc", "secret", NOW, "creator", NOW,
       "updater", emptyMap, null, null);
 
+  ObjectMapper mapper = Jackson.newObjectMapper();
   SecretsResource resource;
 
   @Before
   public void setUp() {
-    resource = new SecretsResource(secretController, aclDAO, secretSeriesDAO);
+    resource = new SecretsResource(secretController, aclDAO, secretSeriesDAO, mapper);
   }
 
+  @SuppressWarnings("unchecked")
   @Test
-  public void listSecrets() {
+  public void listSecrets() throws Exception {
     SanitizedSecret secret1 = SanitizedSecret.of(1, "name1", "", "desc", NOW, "user", NOW, "user",
         emptyMap, null, null);
     SanitizedSecret secret2 = SanitizedSecret.of(2, "name2", "", "desc", NOW, "user", NOW, "user",
         emptyMap, null, null);
-    when(secretController.getSanitizedSecrets()).thenReturn(ImmutableList.of(secret1, secret2));
-
-    List<SanitizedSecret> response = resource.listSecrets(user);
-    assertThat(response).containsOnly(secret1, secret2);
+    doAnswer(invocation -> {
+      Consumer<SanitizedSecret> consumer = (Consumer<SanitizedSecret>) invocation.getArguments()[0];
+      consumer.accept(secret1);
+      consumer.accept(secret2);
+      return null;
+    }).when(secretController).streamSanitizedSecrets(any());
+
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    resource.listSecrets(user).write(response);
+    assertThat(response.toString("UTF-8"))
+        .isEqualTo(mapper.writeValueAsString(ImmutableList.of(secret1, secret2)));
   }
 
   @Test
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.resources.automation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.inject.Inject;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import keywhiz.KeywhizTestRunner;
+import keywhiz.api.ApiDate;
+import keywhiz.api.model.AutomationClient;
+import keywhiz.api.model.Client;
+import keywhiz.service.daos.AclDAO.AclDAOFactory;
+import keywhiz.service.daos.GroupDAO.GroupDAOFactory;
+import keywhiz.service.daos.SecretController;
+import keywhiz.service.daos.SecretController.SecretBuilder;
+import keywhiz.service.daos.SecretSeriesDAO.SecretSeriesDAOFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(KeywhizTestRunner.class)
+public class AutomationSecretResourceListingTest {
+  private static final ApiDate NOW = ApiDate.now();
+
+  @Inject ObjectMapper mapper;
+  @Inject SecretController secretController;
+  @Inject SecretSeriesDAOFactory secretSeriesDAOFactory;
+  @Inject AclDAOFactory aclDAOFactory;
+  @Inject GroupDAOFactory groupDAOFactory;
+
+  AutomationClient automation = AutomationClient.of(
+      new Client(1, "automation", "Automation client", NOW, "test", NOW, "test", true, true));
+
+  @Test public void listsEverySecretWithGroupsAndContent() throws Exception {
+    groupDAOFactory.readwrite().createGroup("listingGroup", "test", "");
+    int count = 2 * SecretController.STREAM_BATCH_SIZE + 1;
+    List<SecretBuilder> builders = new ArrayList<>();
+    List<Set<String>> groups = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      builders.add(secretController.builder("listing" + i, content(i), "test", 0));
+      groups.add(i % 2 == 0 ? ImmutableSet.of("listingGroup") : ImmutableSet.<String>of());
+    }
+    secretController.createSecrets(builders, groups);
+
+    AutomationSecretResource resource = new AutomationSecretResource(secretController,
+        secretSeriesDAOFactory, aclDAOFactory, mapper);
+    Response response = resource.readSecrets(automation, null);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ((StreamingOutput) response.getEntity()).write(output);
+
+    JsonNode secrets = mapper.readTree(output.toByteArray());
+    assertThat(secrets.size()).isEqualTo(count);
+    Set<String> names = new HashSet<>();
+    for (JsonNode secret : secrets) {
+      String name = secret.get("name").asText();
+      int i = Integer.parseInt(name.substring("listing".length()));
+      assertThat(names.add(name)).isTrue();
+      assertThat(secret.get("secret").asText()).isEqualTo(content(i));
+      List<String> groupNames = new ArrayList<>();
+      secret.get("groups").forEach(group -> groupNames.add(group.get("name").asText()));
+      if (i % 2 == 0) {
+        assertThat(groupNames).containsOnly("listingGroup");
+      } else {
+        assertThat(groupNames).isEmpty();
+      }
+    }
+  }
+
+  private static String content(int i) {
+    return Base64.getEncoder().encodeToString(("content" + i).getBytes(UTF_8));
+  }
+}
@@ -16,6 +16,7 @@
 package keywhiz.service.resources.automation;
 
 import com.google.common.collect.ImmutableMap;
+import io.dropwizard.jackson.Jackson;
 import java.util.Base64;
 import java.util.Optional;
 import keywhiz.api.ApiDate;
@@ -64,7 +65,8 @@ public class AutomationSecretResourceTest {
 
   @Before
   public void setUp() {
-    resource = new AutomationSecretResource(secretController, secretSeriesDAO, aclDAO);
+    resource = new AutomationSecretResource(secretController, secretSeriesDAO, aclDAO,
+        Jackson.newObjectMapper());
 
     when(secretController.builder(anyString(), anyString(), anyString(), anyLong())).thenReturn(secretBuilder);
     when(secretBuilder.withDescription(anyString())).thenReturn(secretBuilder);
@@ -0,0 +1,94 @@
+package keywhiz.service.resources.automation.v2;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import io.dropwizard.jackson.Jackson;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Base64.Encoder;
+import java.util.List;
+import keywhiz.IntegrationTestRule;
+import keywhiz.KeywhizService;
+import keywhiz.TestClients;
+import keywhiz.api.automation.v2.BatchCreateSecretsResponseV2;
+import keywhiz.api.automation.v2.BatchCreateSecretsResponseV2.Item;
+import keywhiz.api.automation.v2.CreateGroupRequestV2;
+import keywhiz.api.automation.v2.CreateSecretRequestV2;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static keywhiz.TestClients.clientRequest;
+import static keywhiz.client.KeywhizClient.JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchSecretResourceTest {
+  private static final ObjectMapper mapper = KeywhizService.customizeObjectMapper(Jackson.newObjectMapper());
+  private static final Encoder encoder = Base64.getEncoder();
+
+  OkHttpClient mutualSslClient;
+
+  @ClassRule public static final RuleChain chain = IntegrationTestRule.rule();
+
+  @Before public void setUp() {
+    mutualSslClient = TestClients.mutualSslClient();
+  }
+
+  @Test public void createSecrets_perSecretResults() throws Exception {
+    GroupResourceTest groupResourceTest = new GroupResourceTest();
+    groupResourceTest.mutualSslClient = mutualSslClient;
+    groupResourceTest.create(CreateGroupRequestV2.builder().name("batchGroup1").build());
+
+    List<CreateSecretRequestV2> requests = ImmutableList.of(
+        secret("batchSecret1", false).groups("batchGroup1").build(),
+        secret("batchSecret2", true).build(),
+        secret("batchSecret1", false).build(),
+        CreateSecretRequestV2.builder().name("batchSecret3").content("").build());
+
+    BatchCreateSecretsResponseV2 response = create(requests);
+    assertThat(response.secrets()).extracting(Item::status).containsExactly(201, 201, 409, 400);
+    assertThat(response.secrets().get(1).version()).matches("[a-z0-9]{16}");
+
+    SecretResourceTest secretResourceTest = new SecretResourceTest();
+    secretResourceTest.mutualSslClient = mutualSslClient;
+    assertThat(secretResourceTest.listing()).contains("batchSecret1", "batchSecret2");
+    assertThat(secretResourceTest.groupsListing("batchSecret1")).containsOnly("batchGroup1");
+
+    // Creating an existing unversioned secret again conflicts, as a single create does.
+    response = create(ImmutableList.of(secret("batchSecret1", false).build()));
+    assertThat(response.secrets()).extracting(Item::status).containsExactly(409);
+  }
+
+  @Test public void createSecrets_tooMany() throws Exception {
+    ImmutableList.Builder<CreateSecretRequestV2> requests = ImmutableList.builder();
+    for (int i = 0; i <= BatchSecretResource.MAX_SECRETS; i++) {
+      requests.add(secret("batchTooMany" + i, false).build());
+    }
+    assertThat(post(requests.build()).code()).isEqualTo(400);
+  }
+
+  private static CreateSecretRequestV2.Builder secret(String name, boolean versioned) {
+    return CreateSecretRequestV2.builder()
+        .name(name)
+        .content(encoder.encodeToString(("content of " + name).getBytes(UTF_8)))
+        .versioned(versioned);
+  }
+
+  BatchCreateSecretsResponseV2 create(List<CreateSecretRequestV2> requests) throws IOException {
+    Response httpResponse = post(requests);
+    assertThat(httpResponse.code()).isEqualTo(200);
+    return mapper.readValue(httpResponse.body().byteStream(), BatchCreateSecretsResponseV2.class);
+  }
+
+  Response post(List<CreateSecretRequestV2> requests) throws IOException {
+    RequestBody body = RequestBody.create(JSON, mapper.writeValueAsString(requests));
+    Request post = clientRequest("/automation/v2/batch/secrets").post(body).build();
+    return mutualSslClient.newCall(post).execute();
+  }
+}
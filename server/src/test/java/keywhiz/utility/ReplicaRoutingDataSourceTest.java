@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.utility;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.util.Duration;
+import java.sql.Connection;
+import java.time.Clock;
+import keywhiz.service.config.ReadReplicasConfig;
+import keywhiz.service.config.ReadReplicasConfig.Selection;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReplicaRoutingDataSourceTest {
+  private static final long NOW = 1_000_000L;
+
+  @Rule public MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock ManagedDataSource primary;
+  @Mock ManagedDataSource replica0;
+  @Mock ManagedDataSource replica1;
+  @Mock Connection connection;
+  @Mock Clock clock;
+
+  ReadReplicasConfig config;
+
+  @Before public void setUp() throws Exception {
+    config = new ReadReplicasConfig();
+    config.setMaxLag(Duration.seconds(5));
+    when(clock.millis()).thenReturn(NOW);
+    when(primary.getConnection()).thenReturn(connection);
+    when(replica0.getConnection()).thenReturn(connection);
+    when(replica1.getConnection()).thenReturn(connection);
+  }
+
+  @Test public void usesPrimaryUntilLagMeasured() throws Exception {
+    ReplicaRoutingDataSource dataSource = routing();
+    dataSource.getConnection();
+    verify(primary).getConnection();
+  }
+
+  @Test public void takesTurnsAmongRecentReplicas() throws Exception {
+    ReplicaRoutingDataSource dataSource = routing();
+    dataSource.recordLag(0, 100);
+    dataSource.recordLag(1, 200);
+
+    for (int i = 0; i < 4; i++) {
+      dataSource.getConnection();
+    }
+    verify(replica0, times(2)).getConnection();
+    verify(replica1, times(2)).getConnection();
+    verify(primary, never()).getConnection();
+  }
+
+  @Test public void skipsLaggingReplicas() throws Exception {
+    ReplicaRoutingDataSource dataSource = routing();
+    dataSource.recordLag(0, 100);
+    dataSource.recordLag(1, 10_000);
+
+    dataSource.getConnection();
+    dataSource.getConnection();
+    verify(replica0, times(2)).getConnection();
+
+    dataSource.recordLag(0, 10_000);
+    dataSource.getConnection();
+    verify(primary).getConnection();
+  }
+
+  @Test public void skipsReplicasOnceMeasurementAges() throws Exception {
+    ReplicaRoutingDataSource dataSource = routing();
+    dataSource.recordLag(0, 1_000);
+    dataSource.recordLag(1, 10_000);
+
+    // 1s behind when measured, so at most 5s behind another 4s later.
+    when(clock.millis()).thenReturn(NOW + 4_000);
+    dataSource.getConnection();
+    verify(replica0).getConnection();
+
+    when(clock.millis()).thenReturn(NOW + 4_001);
+    dataSource.getConnection();
+    verify(primary).getConnection();
+  }
+
+  @Test public void prefersLeastLoadedReplica() throws Exception {
+    config.setSelection(Selection.LEAST_LOADED);
+    ReplicaRoutingDataSource dataSource = routing();
+    dataSource.recordLag(0, 0);
+    dataSource.recordLag(1, 0);
+
+    Connection first = dataSource.getConnection();
+    dataSource.getConnection();
+    verify(replica0).getConnection();
+    verify(replica1).getConnection();
+
+    first.close();
+    dataSource.getConnection();
+    verify(replica0, times(2)).getConnection();
+    verify(connection).close();
+  }
+
+  private ReplicaRoutingDataSource routing() {
+    return new ReplicaRoutingDataSource(primary, ImmutableList.of(replica0, replica1), config,
+        new MetricRegistry(), clock);
+  }
+}